@@ -0,0 +1,85 @@
+package com.ac.srikar.mylocation.activity;
+
+import android.widget.TextView;
+
+import com.ac.srikar.mylocation.util.FixedFormatter;
+
+import java.util.TimeZone;
+
+/**
+ * Renders one numeric value into a TextView through a reusable char buffer.
+ * The TextView is only touched when the value changes at the displayed precision.
+ */
+class FieldRenderer {
+
+    // Marks that nothing has been rendered yet.
+    private static final long NOT_RENDERED = Long.MIN_VALUE;
+
+    private final TextView mTextView;
+    private final int mDecimals;
+    private final char[] mBuffer = new char[FixedFormatter.MAX_LENGTH];
+
+    // Quantized value currently shown by the TextView.
+    private long mRendered = NOT_RENDERED;
+
+    // Appended to the value, e.g. to mark it stale.
+    private String mSuffix = "";
+
+    FieldRenderer(TextView textView, int decimals) {
+        mTextView = textView;
+        mDecimals = decimals;
+    }
+
+    /**
+     * Show the value with the configured number of decimals.
+     */
+    void render(double value) {
+        long quantized = FixedFormatter.quantize(value, mDecimals);
+        if (quantized == mRendered) {
+            return;
+        }
+        mRendered = quantized;
+        int length = FixedFormatter.formatFixed(value, mDecimals, mBuffer, 0);
+        mTextView.setText(mBuffer, 0, appendSuffix(length));
+    }
+
+    /**
+     * Show the wall clock time of the given epoch milliseconds as HH:mm:ss.
+     */
+    void renderTime(long timeMillis, TimeZone timeZone) {
+        int zoneOffset = timeZone.getOffset(timeMillis);
+        long quantized = (timeMillis + zoneOffset) / 1000;
+        if (quantized == mRendered) {
+            return;
+        }
+        mRendered = quantized;
+        int length = FixedFormatter.formatTime(timeMillis, zoneOffset, mBuffer, 0);
+        mTextView.setText(mBuffer, 0, appendSuffix(length));
+    }
+
+    /**
+     * Text shown after the value, or null for none. Takes effect with the next render.
+     */
+    void setSuffix(String suffix) {
+        if (suffix == null) {
+            suffix = "";
+        }
+        if (!suffix.equals(mSuffix)) {
+            mSuffix = suffix;
+            invalidate();
+        }
+    }
+
+    private int appendSuffix(int length) {
+        int suffixLength = Math.min(mSuffix.length(), mBuffer.length - length);
+        mSuffix.getChars(0, suffixLength, mBuffer, length);
+        return length + suffixLength;
+    }
+
+    /**
+     * Forget the rendered value so the next call always updates the TextView.
+     */
+    void invalidate() {
+        mRendered = NOT_RENDERED;
+    }
+}
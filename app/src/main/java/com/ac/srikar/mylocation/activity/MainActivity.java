@@ -8,7 +8,6 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.IntentSender.SendIntentException;
 import android.content.pm.PackageManager;
-import android.location.Location;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.design.widget.CoordinatorLayout;
@@ -24,19 +23,25 @@ import android.widget.Button;
 import android.widget.TextView;
 
 import com.ac.srikar.mylocation.R;
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FusedLocationSource;
+import com.ac.srikar.mylocation.location.LastLocationCache;
+import com.ac.srikar.mylocation.location.LocationSource;
+import com.ac.srikar.mylocation.recording.LocationTracker;
+import com.ac.srikar.mylocation.recording.RecordingService;
+import com.ac.srikar.mylocation.track.LastFixStore;
+import com.ac.srikar.mylocation.track.TripStats;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
 import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.location.LocationListener;
-import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationServices;
 
-import java.text.DateFormat;
-import java.util.Date;
+import java.io.File;
+import java.io.IOException;
+import java.util.TimeZone;
 
 public class MainActivity extends AppCompatActivity implements
         GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener,
-        LocationListener {
+        LocationTracker.Viewer, TrackerConnection.Callback {
 
     // Logcat Tag.
     protected static final String LOG_TAG = MainActivity.class.getSimpleName();
@@ -44,27 +49,61 @@ public class MainActivity extends AppCompatActivity implements
     // Constant used in Check Play Services Method.
     protected static final int PLAY_SERVICES_RESOLUTION_REQUEST = 9000;
 
-    // The desired interval for location updates.
-    public static final long UPDATE_INTERVAL_IN_MILLISECONDS = 5000;
-
-    // The fastest rate for active location updates.
-    public static final long FASTEST_UPDATE_INTERVAL_IN_MILLISECONDS =
-            UPDATE_INTERVAL_IN_MILLISECONDS / 2;
+    // Intent extras to replay a recorded trace (CSV, NMEA or GPX file) instead of using
+    // the fused location provider, e.g. for profiling.
+    public static final String EXTRA_REPLAY_TRACE = "replay-trace";
+    public static final String EXTRA_REPLAY_SPEED_UP = "replay-speed-up";
 
     // Saved Keys
     private static final String REQUESTING_LOCATION_UPDATES_KEY = "requesting-location-updates";
-    private static final String LOCATION_KEY = "location-value";
-    private static final String LAST_UPDATED_TIME_STRING_KEY = "last-updated-time";
     private static final String STATE_RESOLVING_ERROR_KEY = "state-resolving-error";
 
-    // Provides the entry point to Google Play services.
+    /**
+     * Handed from one instance to the next across configuration changes, in place of the
+     * Bundle, so a rotation neither rebinds nor copies the newest fix.
+     */
+    private static class RetainedState {
+        TrackerConnection connection;
+        Fix lastFix;
+        boolean showingStoredFix;
+        LastLocationCache lastLocationCache;
+        TrackSharer trackSharer;
+    }
+
+    // Binding to the recording service, kept across configuration changes.
+    private TrackerConnection mConnection;
+
+    // Owns the location subscription and the pipeline, null while not bound to the service.
+    protected RecordingService mRecordingService;
+    protected LocationTracker mTracker;
+
+    // Start was tapped before the service was bound.
+    private boolean mStartRecordingPending = false;
+
+    // Provides the entry point to Google Play services, owned by the tracker.
     protected GoogleApiClient mGoogleApiClient;
 
-    // Represents a geographical location.
-    protected Location mLastLocation;
+    // Copy of the tracker's trip statistics shown in the UI.
+    private final TripStats mTripStatsSnapshot = new TripStats();
 
-    // Stores parameters for requests to the FusedLocationProviderApi.
-    protected LocationRequest mLocationRequest;
+    // Exports the track log for the Share action.
+    private TrackSharer mTrackSharer;
+
+    // Newest fix shown in the UI, null until the first fix arrives.
+    private Fix mLastFix;
+
+    // Answers My Location taps while the newest live fix is recent and accurate enough.
+    private LastLocationCache mLastLocationCache;
+
+    // Whether mLastFix came from the snapshot rather than the current session.
+    private boolean mShowingStoredFix = false;
+    private String mStaleSuffix;
+
+    // Delivers fixes to the tracker's pipeline.
+    protected LocationSource mLocationSource;
+
+    // Same as mLocationSource unless a trace is replayed.
+    protected FusedLocationSource mFusedLocationSource;
 
     // UI TextViews
     private TextView mLatitude;
@@ -73,16 +112,29 @@ public class MainActivity extends AppCompatActivity implements
     private TextView mAltitude;
     private TextView mSpeed;
     private TextView mLastUpdateTimeTextView;
+    private TextView mDistance;
+    private TextView mPlace;
+    private TextView mStats;
 
     // UI Buttons
     private Button myLocationButton;
     private Button startUpdatesButton;
     private Button stopUpdatesButton;
 
-    // String variable to store time
-    private String mLastUpdateTime;
+    // Render the fix values into the TextViews without allocating
+    private FieldRenderer mLatitudeRenderer;
+    private FieldRenderer mLongitudeRenderer;
+    private FieldRenderer mAccuracyRenderer;
+    private FieldRenderer mAltitudeRenderer;
+    private FieldRenderer mSpeedRenderer;
+    private FieldRenderer mLastUpdateTimeRenderer;
+    private FieldRenderer mDistanceRenderer;
+    private TripStatsRenderer mTripStatsRenderer;
+
+    // Time zone used to display the fix time, refreshed when the screen is resumed
+    private TimeZone mTimeZone = TimeZone.getDefault();
 
-    // Boolean to check whether the user is requesting Location Updates
+    // Boolean to check whether the tracker is recording
     private boolean mRequestingLocationUpdates = false;
 
     // Boolean to check whether the app is already resolving an error
@@ -115,19 +167,134 @@ public class MainActivity extends AppCompatActivity implements
         mAltitude = (TextView) findViewById(R.id.altitude);
         mSpeed = (TextView) findViewById(R.id.speed);
         mLastUpdateTimeTextView = (TextView) findViewById(R.id.lastUpdateTime);
+        mDistance = (TextView) findViewById(R.id.distance);
+        mPlace = (TextView) findViewById(R.id.place);
+        mStats = (TextView) findViewById(R.id.stats);
+
+        // Initialize Renderers
+        mLatitudeRenderer = new FieldRenderer(mLatitude, 6);
+        mLongitudeRenderer = new FieldRenderer(mLongitude, 6);
+        mAccuracyRenderer = new FieldRenderer(mAccuracy, 1);
+        mAltitudeRenderer = new FieldRenderer(mAltitude, 1);
+        mSpeedRenderer = new FieldRenderer(mSpeed, 1);
+        mLastUpdateTimeRenderer = new FieldRenderer(mLastUpdateTimeTextView, 0);
+        mDistanceRenderer = new FieldRenderer(mDistance, 2);
+        mDistanceRenderer.setSuffix(" km");
+        mTripStatsRenderer = new TripStatsRenderer(mStats);
+        mStaleSuffix = getString(R.string.stale_suffix);
 
         // Initialize Buttons
         myLocationButton = (Button) findViewById(R.id.myLocationButton);
         startUpdatesButton = (Button) findViewById(R.id.startUpdatesButton);
         stopUpdatesButton = (Button) findViewById(R.id.stopUpdatesButton);
 
-        if (checkPlayServices()) {
-            buildGoogleApiClient();
+        RetainedState retained = (RetainedState) getLastCustomNonConfigurationInstance();
+        if (retained != null) {
+            mConnection = retained.connection;
+            mLastFix = retained.lastFix;
+            mShowingStoredFix = retained.showingStoredFix;
+            mLastLocationCache = retained.lastLocationCache;
+            // A running export is offered from this instance
+            mTrackSharer = retained.trackSharer;
+            mTrackSharer.attach(this, coordinatorLayout);
+        } else {
+            mConnection = new TrackerConnection(this);
+            mLastLocationCache = new LastLocationCache();
+            mTrackSharer = new TrackSharer(this, coordinatorLayout,
+                    LocationTracker.getTrackDirectory(this));
+            // Also after the process was killed: the snapshot replaces the Bundle
+            showStoredFix();
         }
-
         updateValuesFromBundle(savedInstanceState);
     }
 
+    /**
+     * Keep the binding, and with it the tracker's subscription, for the next instance.
+     */
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        RetainedState retained = new RetainedState();
+        retained.connection = mConnection;
+        retained.lastFix = mLastFix;
+        retained.showingStoredFix = mShowingStoredFix;
+        retained.lastLocationCache = mLastLocationCache;
+        retained.trackSharer = mTrackSharer;
+        return retained;
+    }
+
+    /**
+     * Attach to the tracker once the service is bound. The first binding completes after the
+     * first frame, which keeps the Play services check and client construction off it; after
+     * a configuration change the service is still bound and this is called from onStart.
+     */
+    @Override
+    public void onTrackerConnected(RecordingService service) {
+        mRecordingService = service;
+        mTracker = mRecordingService.getTracker();
+        if (!mTracker.hasLocationSource()) {
+            createLocationSource();
+        }
+        mGoogleApiClient = mTracker.getGoogleApiClient();
+        mLocationSource = mTracker.getLocationSource();
+        mFusedLocationSource = mTracker.getFusedLocationSource();
+        if (mGoogleApiClient != null) {
+            mGoogleApiClient.registerConnectionCallbacks(this);
+            mGoogleApiClient.registerConnectionFailedListener(this);
+        }
+        mTracker.attach(this);
+        if (mStartRecordingPending) {
+            mStartRecordingPending = false;
+            startLocationUpdates();
+        }
+        onRecordingChanged(mTracker.isRecording());
+        renderTripStats();
+    }
+
+    @Override
+    public void onTrackerDisconnected() {
+        releaseTracker();
+    }
+
+    /**
+     * Forget the tracker and its client, they must not be used once unbound.
+     */
+    private void releaseTracker() {
+        if (mGoogleApiClient != null) {
+            mGoogleApiClient.unregisterConnectionCallbacks(this);
+            mGoogleApiClient.unregisterConnectionFailedListener(this);
+        }
+        mRecordingService = null;
+        mTracker = null;
+        mGoogleApiClient = null;
+        mLocationSource = null;
+        mFusedLocationSource = null;
+    }
+
+    /**
+     * Show the fix saved by the previous session, marked as stale, until a new one arrives.
+     */
+    private void showStoredFix() {
+        Fix fix = new Fix();
+        if (new LastFixStore(LocationTracker.getLastFixFile(this)).load(fix)) {
+            mLastFix = fix;
+            mShowingStoredFix = true;
+            displayLocationUI();
+        }
+    }
+
+    /**
+     * Create the tracker's location source, the first time an activity binds to it.
+     */
+    private void createLocationSource() {
+        if (isFinishing()) {
+            return;
+        }
+        if (checkPlayServices()) {
+            mTracker.createFusedSource();
+        }
+        createReplaySource();
+    }
+
     /**
      * Check whether the Google Play Services is installed on the device or not
      */
@@ -155,68 +322,74 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     /**
-     * Builds a GoogleApiClient. Uses the addApi() method to request the LocationServices API.
+     * Replace the location source with a trace replay if the intent asks for one.
      */
-    protected synchronized void buildGoogleApiClient() {
-        mGoogleApiClient = new GoogleApiClient.Builder(this)
-                .addConnectionCallbacks(this)
-                .addOnConnectionFailedListener(this)
-                .addApi(LocationServices.API)
-                .build();
-        createLocationRequest();
-    }
-
-    /**
-     * Sets up the location request.
-     */
-    protected void createLocationRequest() {
-        mLocationRequest = new LocationRequest();
-        mLocationRequest.setInterval(UPDATE_INTERVAL_IN_MILLISECONDS);
-        mLocationRequest.setFastestInterval(FASTEST_UPDATE_INTERVAL_IN_MILLISECONDS);
-        mLocationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+    private void createReplaySource() {
+        String trace = getIntent().getStringExtra(EXTRA_REPLAY_TRACE);
+        if (trace == null) {
+            return;
+        }
+        double speedUp = getIntent().getDoubleExtra(EXTRA_REPLAY_SPEED_UP, 1);
+        try {
+            mTracker.createReplaySource(new File(trace), speedUp);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Cannot replay " + trace, e);
+        }
     }
 
-
     /**
-     * Connect the Google Api client when the application is started
+     * Bind to the recording service when the activity is started, to view its tracker
      */
     @Override
     protected void onStart() {
         super.onStart();
-        mGoogleApiClient.connect();
+        mConnection.bind();
+        mConnection.setCallback(this);
     }
 
     /**
-     * Start the location updates when the screen is resumed to save battery
+     * Refresh the time zone when the screen is resumed. Updates keep running while paused.
      */
     @Override
     protected void onResume() {
         super.onResume();
-        if (mRequestingLocationUpdates) {
-            startLocationUpdates();
+        TimeZone timeZone = TimeZone.getDefault();
+        if (!timeZone.equals(mTimeZone)) {
+            mTimeZone = timeZone;
+            mLastUpdateTimeRenderer.invalidate();
         }
     }
 
     /**
-     * Stop the location updates when the screen is paused to save battery
+     * Detach from the tracker when the activity is stopped. A recording goes on in the
+     * service, otherwise the service and its client stop once unbound. When the activity is
+     * only recreated, the binding and the updates are left to the next instance.
      */
     @Override
-    protected void onPause() {
-        super.onPause();
-        if (mRequestingLocationUpdates) {
-            stopLocationUpdates();
+    protected void onStop() {
+        super.onStop();
+        mStartRecordingPending = false;
+        mConnection.setCallback(null);
+        if (isChangingConfigurations()) {
+            if (mTracker != null) {
+                mTracker.handOver(this);
+            }
+        } else {
+            if (mTracker != null) {
+                mTracker.detach(this);
+            }
+            mConnection.unbind();
         }
+        releaseTracker();
     }
 
     /**
-     * Disconnect the Google Api client when the application is exited
+     * Detach the sharer, so an export finishing later does not use this instance.
      */
     @Override
-    protected void onStop() {
-        super.onStop();
-        if (mGoogleApiClient.isConnected()) {
-            mGoogleApiClient.disconnect();
-        }
+    protected void onDestroy() {
+        mTrackSharer.detach();
+        super.onDestroy();
     }
 
     /**
@@ -241,10 +414,27 @@ public class MainActivity extends AppCompatActivity implements
      * Update the location when my Location Button is Clicked
      */
     public void myLocationButton(View view) {
-        if (mGoogleApiClient.isConnected()) {
-            mGoogleApiClient.disconnect();
+        // A recent fix answers the tap without asking the provider
+        if (mLastLocationCache.isFresh(System.currentTimeMillis())
+                || mGoogleApiClient == null || mLocationSource != mFusedLocationSource) {
+            displayLocationUI();
+            return;
+        }
+        if (!mGoogleApiClient.isConnected()) {
+            // The tracker delivers the last known location once connected
+            if (!mGoogleApiClient.isConnecting()) {
+                mGoogleApiClient.connect();
+            }
+            return;
+        }
+        if ((ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) && (ActivityCompat.checkSelfPermission(this,
+                Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED)) {
+            requestLocationPermissions();
+            return;
         }
-        mGoogleApiClient.connect();
+        // Repeated taps join the request in flight
+        mTracker.requestSingleUpdate();
     }
 
     /**
@@ -257,47 +447,66 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     /**
-     * Start Location Updates.
+     * Start recording in the service, which keeps it going until stopped.
      */
     private void startLocationUpdates() {
+        if (mRecordingService == null) {
+            // Started once the service is bound
+            mStartRecordingPending = true;
+            return;
+        }
         if ((ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
                 != PackageManager.PERMISSION_GRANTED) && (ActivityCompat.checkSelfPermission(this,
                 Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED)) {
             requestLocationPermissions();
+            mRequestingLocationUpdates = false;
+            setButtonsEnabledState();
+            return;
         }
         // Permission has been granted, continue as usual
-        LocationServices.FusedLocationApi.requestLocationUpdates(mGoogleApiClient, mLocationRequest, this);
+        if (!mRecordingService.startRecording()) {
+            mRequestingLocationUpdates = false;
+            setButtonsEnabledState();
+        }
     }
 
     /**
      * Stop Location Updates when Stop Updates button is clicked.
      */
     public void stopLocationUpdatesButton(View view) {
-        mRequestingLocationUpdates = false;
-        setButtonsEnabledState();
+        stopUpdatesButton.setEnabled(false);
         stopLocationUpdates();
     }
 
     /**
-     * Stop Location Updates.
+     * Stop recording in the service. The buttons follow once the tracker reports the
+     * recording stopped, after its last fixes are in the track log.
      */
     private void stopLocationUpdates() {
-        LocationServices.FusedLocationApi.removeLocationUpdates(mGoogleApiClient, this);
+        mStartRecordingPending = false;
+        if (mTracker != null && mTracker.isRecording()) {
+            mRecordingService.stopRecording();
+        } else {
+            onRecordingChanged(false);
+        }
     }
 
     /**
      * Update the TextViews when Location is found
      */
     private void displayLocationUI() {
-        Log.v(LOG_TAG, "User Location: " + String.valueOf(mLastLocation));
-        mLastUpdateTime = DateFormat.getTimeInstance().format(new Date());
-        if (mLastLocation != null) {
-            mLatitude.setText(String.valueOf(mLastLocation.getLatitude()));
-            mLongitude.setText(String.valueOf(mLastLocation.getLongitude()));
-            mAccuracy.setText(String.valueOf(mLastLocation.getAccuracy()));
-            mAltitude.setText(String.valueOf(mLastLocation.getAltitude()));
-            mSpeed.setText(String.valueOf(mLastLocation.getSpeed()));
-            mLastUpdateTimeTextView.setText(mLastUpdateTime);
+        if (mLastFix != null) {
+            if (Log.isLoggable(LOG_TAG, Log.VERBOSE)) {
+                Log.v(LOG_TAG, "User Location: " + mLastFix);
+            }
+            // Only the fields whose displayed value changed are updated
+            mLastUpdateTimeRenderer.setSuffix(mShowingStoredFix ? mStaleSuffix : null);
+            mLatitudeRenderer.render(mLastFix.latitude);
+            mLongitudeRenderer.render(mLastFix.longitude);
+            mAccuracyRenderer.render(mLastFix.accuracy);
+            mAltitudeRenderer.render(mLastFix.altitude);
+            mSpeedRenderer.render(mLastFix.speed);
+            mLastUpdateTimeRenderer.renderTime(mLastFix.time, mTimeZone);
         } else {
             Snackbar.make(coordinatorLayout, "No Location Found", Snackbar.LENGTH_SHORT).show();
         }
@@ -318,7 +527,14 @@ public class MainActivity extends AppCompatActivity implements
         int id = item.getItemId();
 
         //noinspection SimplifiableIfStatement
-        if (id == R.id.action_share) {
+        if (id == R.id.action_share_gpx) {
+            mTrackSharer.share(TrackSharer.Format.GPX);
+            return true;
+        } else if (id == R.id.action_share_geojson) {
+            mTrackSharer.share(TrackSharer.Format.GEOJSON);
+            return true;
+        } else if (id == R.id.action_share_track) {
+            mTrackSharer.share(TrackSharer.Format.TRACK);
             return true;
         } else if (id == R.id.action_about) {
             return true;
@@ -328,7 +544,9 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     /**
-     * Called when a GoogleApiClient object successfully connects.
+     * Called when a GoogleApiClient object successfully connects, and right away when the
+     * callbacks are registered on the tracker's client after a configuration change. The
+     * tracker delivers the last known location once per connection.
      */
     @Override
     public void onConnected(Bundle bundle) {
@@ -338,9 +556,6 @@ public class MainActivity extends AppCompatActivity implements
             // Check Permissions Now
             requestLocationPermissions();
         }
-        // Permission has been granted, continue as usual
-        mLastLocation = LocationServices.FusedLocationApi.getLastLocation(mGoogleApiClient);
-        displayLocationUI();
     }
 
     private void requestLocationPermissions() {
@@ -373,12 +588,42 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     /**
-     * Called when a new Location is found.
+     * Called on the main thread, at most once per frame, when the pipeline has processed a
+     * new Location.
      */
     @Override
-    public void onLocationChanged(Location location) {
-        mLastLocation = location;
+    public void onFixProcessed(Fix fix) {
+        mLastFix = fix;
+        mLastLocationCache.update(fix);
+        mShowingStoredFix = false;
         displayLocationUI();
+        renderTripStats();
+    }
+
+    private void renderTripStats() {
+        if (mTracker == null) {
+            return;
+        }
+        mTracker.getTripStats().copyTo(mTripStatsSnapshot);
+        mDistanceRenderer.render(mTripStatsSnapshot.getDistance() / 1000);
+        mTripStatsRenderer.render(mTripStatsSnapshot);
+    }
+
+    /**
+     * Called on the main thread when the tracker starts or stops recording.
+     */
+    @Override
+    public void onRecordingChanged(boolean recording) {
+        mRequestingLocationUpdates = recording;
+        setButtonsEnabledState();
+    }
+
+    /**
+     * Called on the main thread when the newest fix is in another place, rarely.
+     */
+    @Override
+    public void onPlaceChanged(String label) {
+        mPlace.setText(label);
     }
 
     /**
@@ -464,7 +709,7 @@ public class MainActivity extends AppCompatActivity implements
             mResolvingError = false;
             if (resultCode == RESULT_OK) {
                 // Make sure the app is not already connected or attempting to connect
-                if (!mGoogleApiClient.isConnecting() &&
+                if (mGoogleApiClient != null && !mGoogleApiClient.isConnecting() &&
                         !mGoogleApiClient.isConnected()) {
                     mGoogleApiClient.connect();
                 }
@@ -476,9 +721,9 @@ public class MainActivity extends AppCompatActivity implements
      * Save the activity state
      */
     public void onSaveInstanceState(Bundle savedInstanceState) {
+        // Only flags: the newest fix is retained across configuration changes and stored by
+        // the tracker for a new process
         savedInstanceState.putBoolean(REQUESTING_LOCATION_UPDATES_KEY, mRequestingLocationUpdates);
-        savedInstanceState.putParcelable(LOCATION_KEY, mLastLocation);
-        savedInstanceState.putString(LAST_UPDATED_TIME_STRING_KEY, mLastUpdateTime);
         savedInstanceState.putBoolean(STATE_RESOLVING_ERROR_KEY, mResolvingError);
         super.onSaveInstanceState(savedInstanceState);
     }
@@ -494,20 +739,6 @@ public class MainActivity extends AppCompatActivity implements
                 setButtonsEnabledState();
             }
 
-            // Update the value of mLastLocation from the Bundle and update the
-            // UI to show the correct latitude and longitude.
-            if (savedInstanceState.keySet().contains(LOCATION_KEY)) {
-                // Since LOCATION_KEY was found in the Bundle, we can be sure that
-                // mCurrentLocation is not null.
-                mLastLocation = savedInstanceState.getParcelable(LOCATION_KEY);
-            }
-
-            // Update the value of mLastUpdateTime from the Bundle and update the UI.
-            if (savedInstanceState.keySet().contains(LAST_UPDATED_TIME_STRING_KEY)) {
-                mLastUpdateTime = savedInstanceState.getString(
-                        LAST_UPDATED_TIME_STRING_KEY);
-            }
-
             if (savedInstanceState.keySet().contains(STATE_RESOLVING_ERROR_KEY)) {
                 mResolvingError = savedInstanceState.getBoolean(STATE_RESOLVING_ERROR_KEY, false);
             }
@@ -0,0 +1,178 @@
+package com.ac.srikar.mylocation.activity;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.design.widget.Snackbar;
+import android.support.v4.content.FileProvider;
+import android.util.Log;
+import android.view.View;
+
+import com.ac.srikar.mylocation.R;
+import com.ac.srikar.mylocation.track.GeoJsonWriter;
+import com.ac.srikar.mylocation.track.GpxWriter;
+import com.ac.srikar.mylocation.track.TrackEncoder;
+import com.ac.srikar.mylocation.track.TrackLogReader;
+import com.ac.srikar.mylocation.track.TrackTextWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Exports the recorded track in one of the {@link Format}s on a background thread and offers
+ * the file to other apps through the FileProvider.
+ * <p>
+ * The sharer may outlive its activity: an activity recreated for a configuration change
+ * {@link #attach(Activity, View)}es to it, so an export still running then is offered from
+ * the new activity. The result of an export finishing while detached is dropped. All
+ * methods must be called on the main thread.
+ */
+class TrackSharer {
+
+    /**
+     * Export formats, with the file name and MIME type of the shared file.
+     */
+    enum Format {
+
+        // Compact binary encoding, see TrackEncoder.
+        TRACK("track.mlt", "application/octet-stream"),
+        GPX("track.gpx", GpxWriter.MIME_TYPE),
+        GEOJSON("track.geojson", GeoJsonWriter.MIME_TYPE);
+
+        final String fileName;
+        final String mimeType;
+
+        Format(String fileName, String mimeType) {
+            this.fileName = fileName;
+            this.mimeType = mimeType;
+        }
+    }
+
+    private static final String LOG_TAG = TrackSharer.class.getSimpleName();
+
+    // Must match the provider declared in AndroidManifest.xml.
+    static final String FILE_PROVIDER_AUTHORITY = "com.ac.srikar.mylocation.fileprovider";
+
+    // Under the cache directory, must match res/xml/file_paths.xml.
+    private static final String SHARE_DIRECTORY = "shared";
+
+    private final File mTrackDirectory;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Only touched on the main thread. The activity is null while detached.
+    private Activity mActivity;
+    private View mSnackbarView;
+    private boolean mExporting = false;
+
+    TrackSharer(Activity activity, View snackbarView, File trackDirectory) {
+        mTrackDirectory = trackDirectory;
+        attach(activity, snackbarView);
+    }
+
+    /**
+     * Offer exports from this activity from now on.
+     */
+    void attach(Activity activity, View snackbarView) {
+        mActivity = activity;
+        mSnackbarView = snackbarView;
+    }
+
+    /**
+     * Forget the activity, e.g. when it is destroyed.
+     */
+    void detach() {
+        mActivity = null;
+        mSnackbarView = null;
+    }
+
+    /**
+     * Export the track and show the share chooser. Does nothing while an export is running.
+     */
+    void share(final Format format) {
+        if (mExporting) {
+            return;
+        }
+        mExporting = true;
+        final File file = new File(new File(mActivity.getCacheDir(), SHARE_DIRECTORY),
+                format.fileName);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long count;
+                try {
+                    count = export(file, format);
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Cannot export the track", e);
+                    count = -1;
+                }
+                final long exported = count;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mExporting = false;
+                        onExported(file, format, exported);
+                    }
+                });
+            }
+        }, "TrackExport");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Write the whole track log into {@code file}.
+     *
+     * @return the number of fixes written
+     */
+    private long export(File file, Format format) throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        // The log is read through its own mappings, the pipeline keeps appending meanwhile.
+        TrackLogReader reader = TrackLogReader.open(mTrackDirectory);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            if (format == Format.TRACK) {
+                TrackEncoder encoder = new TrackEncoder(out);
+                long count = encoder.writeAll(reader);
+                encoder.flush();
+                return count;
+            }
+            // Text formats stream through the channel, whatever the length of the track
+            TrackTextWriter writer = format == Format.GPX
+                    ? new GpxWriter(out.getChannel())
+                    : new GeoJsonWriter(out.getChannel());
+            long count = writer.writeAll(reader);
+            writer.finish();
+            return count;
+        } finally {
+            out.close();
+        }
+    }
+
+    private void onExported(File file, Format format, long count) {
+        if (mActivity == null || mActivity.isFinishing()) {
+            return;
+        }
+        if (count < 0) {
+            Snackbar.make(mSnackbarView, R.string.share_failed, Snackbar.LENGTH_SHORT).show();
+            return;
+        }
+        if (count == 0) {
+            Snackbar.make(mSnackbarView, R.string.nothing_to_share, Snackbar.LENGTH_SHORT).show();
+            return;
+        }
+        Uri uri = FileProvider.getUriForFile(mActivity, FILE_PROVIDER_AUTHORITY, file);
+        Intent intent = new Intent(Intent.ACTION_SEND)
+                .setType(format.mimeType)
+                .putExtra(Intent.EXTRA_STREAM, uri)
+                .putExtra(Intent.EXTRA_SUBJECT, mActivity.getString(R.string.share_track_subject))
+                .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        mActivity.startActivity(Intent.createChooser(intent,
+                mActivity.getString(R.string.share_track_chooser)));
+    }
+}
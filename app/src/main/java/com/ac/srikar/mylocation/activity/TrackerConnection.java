@@ -0,0 +1,94 @@
+package com.ac.srikar.mylocation.activity;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
+
+import com.ac.srikar.mylocation.recording.RecordingService;
+
+/**
+ * Binding to the {@link RecordingService} that outlives the activity using it.
+ * <p>
+ * The service is bound through the application context, so an activity recreated after a
+ * configuration change can take over the binding, and with it the tracker and its location
+ * subscription, instead of unbinding and binding again. Only one {@link Callback} is notified
+ * at a time. All methods must be called on the main thread.
+ */
+class TrackerConnection implements ServiceConnection {
+
+    /**
+     * Receives the service of the connection on the main thread.
+     */
+    interface Callback {
+
+        /**
+         * Called once the service is bound, or right away by {@link #setCallback(Callback)}
+         * if it already is.
+         */
+        void onTrackerConnected(RecordingService service);
+
+        /**
+         * Called if the service is lost; it must not be used anymore.
+         */
+        void onTrackerDisconnected();
+    }
+
+    private final Context mContext;
+    private Callback mCallback;
+    private RecordingService mService;
+    private boolean mBound = false;
+
+    TrackerConnection(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Bind to the service unless already bound.
+     */
+    void bind() {
+        if (!mBound) {
+            mBound = mContext.bindService(new Intent(mContext, RecordingService.class), this,
+                    Context.BIND_AUTO_CREATE);
+        }
+    }
+
+    /**
+     * Unbind from the service. Unless it is recording, the service then stops.
+     */
+    void unbind() {
+        if (mBound) {
+            mBound = false;
+            mService = null;
+            mContext.unbindService(this);
+        }
+    }
+
+    /**
+     * Replace the callback, null to stop notifying any.
+     */
+    void setCallback(Callback callback) {
+        mCallback = callback;
+        if (callback != null && mService != null) {
+            callback.onTrackerConnected(mService);
+        }
+    }
+
+    @Override
+    public void onServiceConnected(ComponentName name, IBinder service) {
+        mService = ((RecordingService.LocalBinder) service).getService();
+        if (mCallback != null) {
+            mCallback.onTrackerConnected(mService);
+        }
+    }
+
+    @Override
+    public void onServiceDisconnected(ComponentName name) {
+        // Only happens if the service process dies, which is also ours
+        mService = null;
+        if (mCallback != null) {
+            mCallback.onTrackerDisconnected();
+        }
+    }
+}
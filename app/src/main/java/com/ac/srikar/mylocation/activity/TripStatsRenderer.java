@@ -0,0 +1,84 @@
+package com.ac.srikar.mylocation.activity;
+
+import android.widget.TextView;
+
+import com.ac.srikar.mylocation.track.TripStats;
+import com.ac.srikar.mylocation.util.FixedFormatter;
+
+/**
+ * Renders the trip summary line, moving time, average and max speed, elevation gain and
+ * loss and pace, into a TextView through a reusable char buffer. The TextView is only
+ * touched when the displayed text changes.
+ */
+class TripStatsRenderer {
+
+    private static final double KMH_PER_MS = 3.6;
+
+    private static final char[] AVERAGE = "  avg ".toCharArray();
+    private static final char[] MAX = "  max ".toCharArray();
+    private static final char[] SPEED_UNIT = " km/h".toCharArray();
+    private static final char[] ELEVATION_UNIT = " m".toCharArray();
+    private static final char[] PACE_UNIT = " /km".toCharArray();
+
+    private final TextView mTextView;
+    private final char[] mBuffer = new char[4 * FixedFormatter.MAX_LENGTH];
+
+    // Displayed values, quantized to their printed precision.
+    private long mMovingSeconds = -1;
+    private long mAverage = -1;
+    private long mMax = -1;
+    private long mGain = -1;
+    private long mLoss = -1;
+    private long mPaceSeconds = -1;
+
+    TripStatsRenderer(TextView textView) {
+        mTextView = textView;
+    }
+
+    void render(TripStats stats) {
+        long movingSeconds = stats.getMovingTime() / 1000;
+        long average = FixedFormatter.quantize(stats.getAverageSpeed() * KMH_PER_MS, 1);
+        long max = FixedFormatter.quantize(stats.getMaxSpeed() * KMH_PER_MS, 1);
+        long gain = FixedFormatter.quantize(stats.getElevationGain(), 0);
+        long loss = FixedFormatter.quantize(stats.getElevationLoss(), 0);
+        long paceSeconds = stats.getPace() / 1000;
+        if (movingSeconds == mMovingSeconds && average == mAverage && max == mMax
+                && gain == mGain && loss == mLoss && paceSeconds == mPaceSeconds) {
+            return;
+        }
+        mMovingSeconds = movingSeconds;
+        mAverage = average;
+        mMax = max;
+        mGain = gain;
+        mLoss = loss;
+        mPaceSeconds = paceSeconds;
+
+        char[] out = mBuffer;
+        int pos = FixedFormatter.formatDuration(stats.getMovingTime(), out, 0);
+        pos = append(AVERAGE, pos);
+        pos += FixedFormatter.formatFixed(stats.getAverageSpeed() * KMH_PER_MS, 1, out, pos);
+        pos = append(MAX, pos);
+        pos += FixedFormatter.formatFixed(stats.getMaxSpeed() * KMH_PER_MS, 1, out, pos);
+        pos = append(SPEED_UNIT, pos);
+        out[pos++] = ' ';
+        out[pos++] = ' ';
+        out[pos++] = '+';
+        pos += FixedFormatter.formatLong(gain, out, pos);
+        out[pos++] = ' ';
+        out[pos++] = '-';
+        pos += FixedFormatter.formatLong(loss, out, pos);
+        pos = append(ELEVATION_UNIT, pos);
+        if (paceSeconds > 0) {
+            out[pos++] = ' ';
+            out[pos++] = ' ';
+            pos += FixedFormatter.formatDuration(stats.getPace(), out, pos);
+            pos = append(PACE_UNIT, pos);
+        }
+        mTextView.setText(out, 0, pos);
+    }
+
+    private int append(char[] text, int pos) {
+        System.arraycopy(text, 0, mBuffer, pos, text.length);
+        return pos + text.length;
+    }
+}
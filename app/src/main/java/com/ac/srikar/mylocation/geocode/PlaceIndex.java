@@ -0,0 +1,197 @@
+package com.ac.srikar.mylocation.geocode;
+
+import com.ac.srikar.mylocation.util.GeoMath;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Read-only, memory-mapped grid of named places for offline reverse geocoding.
+ * <p>
+ * The file, built by {@link PlaceIndexWriter}, is little endian:
+ * <ul>
+ * <li>header of {@link #HEADER_SIZE} bytes: magic, version, cell size in microdegrees, row
+ * and column of the first cell, rows, columns, place count and label bytes</li>
+ * <li>the index of the first place of every cell, row by row, then the place count</li>
+ * <li>places sorted by cell, {@link #PLACE_SIZE} bytes each: latitude and longitude in
+ * microdegrees and the offset of the label</li>
+ * <li>the UTF-8 labels, back to back</li>
+ * </ul>
+ * Only the cells around a query are touched, so the pages of a country sized dataset stay
+ * on disk until needed and lookups neither parse nor allocate. Labels are only decoded by
+ * {@link #getLabel(int)}. The grid does not wrap around the antimeridian. May be used from
+ * any thread.
+ */
+public class PlaceIndex {
+
+    static final int MAGIC = 0x49504C4D; // "MLPI" when read as bytes
+    static final int VERSION = 1;
+
+    // Magic, version, cell size, first row, first column, rows, columns, places, label bytes.
+    static final int HEADER_SIZE = 9 * 4;
+
+    // Latitude, longitude, label offset.
+    static final int PLACE_SIZE = 3 * 4;
+
+    static final double SCALE = 1e6;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static final int NO_PLACE = -1;
+
+    private final MappedByteBuffer mBuffer;
+    private final int mCellMicrodegrees;
+    private final double mCellDegrees;
+    private final int mFirstRow;
+    private final int mFirstColumn;
+    private final int mRows;
+    private final int mColumns;
+    private final int mSize;
+    private final int mLabelBytes;
+    private final int mPlacesOffset;
+    private final int mLabelsOffset;
+
+    private PlaceIndex(MappedByteBuffer buffer) throws IOException {
+        mBuffer = buffer;
+        mCellMicrodegrees = buffer.getInt(8);
+        mCellDegrees = mCellMicrodegrees / SCALE;
+        mFirstRow = buffer.getInt(12);
+        mFirstColumn = buffer.getInt(16);
+        mRows = buffer.getInt(20);
+        mColumns = buffer.getInt(24);
+        mSize = buffer.getInt(28);
+        mLabelBytes = buffer.getInt(32);
+        mPlacesOffset = HEADER_SIZE + (mRows * mColumns + 1) * 4;
+        mLabelsOffset = mPlacesOffset + mSize * PLACE_SIZE;
+        if (mCellMicrodegrees <= 0 || mRows < 0 || mColumns < 0 || mSize < 0
+                || (long) mLabelsOffset + mLabelBytes > buffer.capacity()) {
+            throw new IOException("Corrupt place index");
+        }
+    }
+
+    /**
+     * Map a place index file.
+     */
+    public static PlaceIndex open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            if (length < HEADER_SIZE) {
+                throw new IOException("Not a place index: " + file);
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                    length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a place index: " + file);
+            }
+            return new PlaceIndex(buffer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Number of places.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public double getCellDegrees() {
+        return mCellDegrees;
+    }
+
+    /**
+     * Id of the place nearest to the given position, searching rings of cells outwards.
+     *
+     * @return the id, or {@link #NO_PLACE} if no place is within {@code maxDistanceMeters}
+     */
+    public int nearest(double latitude, double longitude, double maxDistanceMeters) {
+        if (mSize == 0) {
+            return NO_PLACE;
+        }
+        // Cell of the position relative to the grid, possibly outside of it
+        int centerRow = (int) Math.floor((latitude + 90) / mCellDegrees) - mFirstRow;
+        int centerColumn = (int) Math.floor((longitude + 180) / mCellDegrees) - mFirstColumn;
+        // Rings before the first one reaching the grid are empty, rings after the last one too
+        int firstRing = Math.max(Math.max(-centerRow, centerRow - (mRows - 1)),
+                Math.max(-centerColumn, centerColumn - (mColumns - 1)));
+        int lastRing = Math.max(Math.max(centerRow, mRows - 1 - centerRow),
+                Math.max(centerColumn, mColumns - 1 - centerColumn));
+        int best = NO_PLACE;
+        double bestDistance = maxDistanceMeters;
+        for (int ring = Math.max(0, firstRing); ring <= lastRing; ring++) {
+            // Places in this ring are at least `ring - 1` cells away along one axis.
+            if ((ring - 1) * cellMeters(latitude, ring) > bestDistance) {
+                break;
+            }
+            int fromRow = Math.max(0, centerRow - ring);
+            int toRow = Math.min(mRows - 1, centerRow + ring);
+            for (int row = fromRow; row <= toRow; row++) {
+                // Inner rows of the ring only have their two edge cells.
+                boolean edge = row == centerRow - ring || row == centerRow + ring;
+                int step = edge ? 1 : Math.max(1, 2 * ring);
+                for (int column = centerColumn - ring; column <= centerColumn + ring;
+                     column += step) {
+                    if (column < 0 || column >= mColumns) {
+                        continue;
+                    }
+                    int cell = HEADER_SIZE + (row * mColumns + column) * 4;
+                    int end = mBuffer.getInt(cell + 4);
+                    for (int id = mBuffer.getInt(cell); id < end; id++) {
+                        double distance = distance(id, latitude, longitude);
+                        if (distance <= bestDistance) {
+                            best = id;
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Smallest side of the cells up to {@code ring} cells from the latitude, in meters.
+     */
+    private double cellMeters(double latitude, int ring) {
+        double edgeLatitude = Math.min(90, Math.abs(latitude) + (ring + 1) * mCellDegrees);
+        return mCellDegrees * Math.min(GeoMath.METERS_PER_DEGREE,
+                GeoMath.metersPerDegreeLongitude(edgeLatitude));
+    }
+
+    private double distance(int id, double latitude, double longitude) {
+        return GeoMath.fastDistance(latitude, longitude, getLatitude(id), getLongitude(id));
+    }
+
+    private int position(int id) {
+        return mPlacesOffset + id * PLACE_SIZE;
+    }
+
+    public double getLatitude(int id) {
+        return mBuffer.getInt(position(id)) / SCALE;
+    }
+
+    public double getLongitude(int id) {
+        return mBuffer.getInt(position(id) + 4) / SCALE;
+    }
+
+    /**
+     * Label of the place, decoded from the mapping on every call.
+     */
+    public String getLabel(int id) {
+        int start = mBuffer.getInt(position(id) + 8);
+        int end = id + 1 < mSize ? mBuffer.getInt(position(id + 1) + 8) : mLabelBytes;
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = mBuffer.get(mLabelsOffset + start + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,143 @@
+package com.ac.srikar.mylocation.geocode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Builds a {@link PlaceIndex} file from a list of named places, e.g. to package a dataset of
+ * towns or administrative areas with the app, or in tests.
+ */
+public class PlaceIndexWriter {
+
+    // About 11 km, a handful of towns per cell in populated areas.
+    public static final double DEFAULT_CELL_DEGREES = 0.1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final int mCellMicrodegrees;
+
+    private int[] mLatitude = new int[64];
+    private int[] mLongitude = new int[64];
+    private byte[][] mLabel = new byte[64][];
+    private int mSize = 0;
+
+    public PlaceIndexWriter() {
+        this(DEFAULT_CELL_DEGREES);
+    }
+
+    public PlaceIndexWriter(double cellDegrees) {
+        mCellMicrodegrees = (int) Math.round(cellDegrees * PlaceIndex.SCALE);
+        if (mCellMicrodegrees <= 0) {
+            throw new IllegalArgumentException("Invalid cell size: " + cellDegrees);
+        }
+    }
+
+    public void add(double latitude, double longitude, String label) {
+        if (mSize == mLatitude.length) {
+            mLatitude = Arrays.copyOf(mLatitude, mSize * 2);
+            mLongitude = Arrays.copyOf(mLongitude, mSize * 2);
+            mLabel = Arrays.copyOf(mLabel, mSize * 2);
+        }
+        mLatitude[mSize] = (int) Math.round(latitude * PlaceIndex.SCALE);
+        mLongitude[mSize] = (int) Math.round(longitude * PlaceIndex.SCALE);
+        mLabel[mSize] = label.getBytes(UTF_8);
+        mSize++;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    private int row(int latitude) {
+        return (int) Math.floor((latitude + 90 * PlaceIndex.SCALE) / mCellMicrodegrees);
+    }
+
+    private int column(int longitude) {
+        return (int) Math.floor((longitude + 180 * PlaceIndex.SCALE) / mCellMicrodegrees);
+    }
+
+    /**
+     * Write the places added so far, replacing the file.
+     */
+    public void write(File file) throws IOException {
+        int firstRow = 0;
+        int firstColumn = 0;
+        int rows = 0;
+        int columns = 0;
+        if (mSize > 0) {
+            int lastRow = Integer.MIN_VALUE;
+            int lastColumn = Integer.MIN_VALUE;
+            firstRow = Integer.MAX_VALUE;
+            firstColumn = Integer.MAX_VALUE;
+            for (int i = 0; i < mSize; i++) {
+                firstRow = Math.min(firstRow, row(mLatitude[i]));
+                lastRow = Math.max(lastRow, row(mLatitude[i]));
+                firstColumn = Math.min(firstColumn, column(mLongitude[i]));
+                lastColumn = Math.max(lastColumn, column(mLongitude[i]));
+            }
+            rows = lastRow - firstRow + 1;
+            columns = lastColumn - firstColumn + 1;
+        }
+
+        // Counting sort of the places by cell
+        int[] cellStart = new int[rows * columns + 1];
+        int[] cells = new int[mSize];
+        for (int i = 0; i < mSize; i++) {
+            cells[i] = (row(mLatitude[i]) - firstRow) * columns
+                    + column(mLongitude[i]) - firstColumn;
+            cellStart[cells[i] + 1]++;
+        }
+        for (int cell = 0; cell < rows * columns; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        int[] order = new int[mSize];
+        int[] next = Arrays.copyOf(cellStart, rows * columns);
+        for (int i = 0; i < mSize; i++) {
+            order[next[cells[i]]++] = i;
+        }
+
+        int labelBytes = 0;
+        for (int i = 0; i < mSize; i++) {
+            labelBytes += mLabel[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(PlaceIndex.HEADER_SIZE + cellStart.length * 4
+                + mSize * PlaceIndex.PLACE_SIZE + labelBytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(PlaceIndex.MAGIC)
+                .putInt(PlaceIndex.VERSION)
+                .putInt(mCellMicrodegrees)
+                .putInt(firstRow)
+                .putInt(firstColumn)
+                .putInt(rows)
+                .putInt(columns)
+                .putInt(mSize)
+                .putInt(labelBytes);
+        for (int start : cellStart) {
+            buffer.putInt(start);
+        }
+        int labelOffset = 0;
+        for (int i : order) {
+            buffer.putInt(mLatitude[i]).putInt(mLongitude[i]).putInt(labelOffset);
+            labelOffset += mLabel[i].length;
+        }
+        for (int i : order) {
+            buffer.put(mLabel[i]);
+        }
+        buffer.flip();
+
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.ac.srikar.mylocation.geocode;
+
+import android.util.Log;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixEventBus;
+import com.ac.srikar.mylocation.location.FixStage;
+import com.ac.srikar.mylocation.util.LongIntLruCache;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Names the place of every fix from an offline {@link PlaceIndex}, as a {@link FixEventBus}
+ * consumer.
+ * <p>
+ * Positions are quantized to cells of {@link #QUANTUM_DEGREES}, and the place found for the
+ * center of a cell is kept in an LRU cache keyed by the cell, so the fixes of a device moving
+ * within a few cells cost a hash lookup and no allocation. The label is only decoded and
+ * reported when the place changes. Without an index file every fix is ignored; no network is
+ * ever used.
+ */
+public class ReverseGeocoder implements FixStage, FixEventBus.Lifecycle {
+
+    private static final String LOG_TAG = "ReverseGeocoder";
+
+    /**
+     * Receives place changes on the consumer thread.
+     */
+    public interface Listener {
+
+        /**
+         * @param label the new place, or null if no place is near enough
+         */
+        void onPlaceChanged(String label);
+    }
+
+    // Cell of the cache, about 110 m of latitude.
+    public static final double QUANTUM_DEGREES = 0.001;
+
+    // Quantized cells remembered, a few hours of driving.
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    // Farther than this from any place the position has no label.
+    public static final double DEFAULT_MAX_DISTANCE_METERS = 20000;
+
+    private static final int NOT_CACHED = -2;
+
+    private final File mFile;
+    private final double mMaxDistanceMeters;
+    private final Listener mListener;
+    private final LongIntLruCache mCache;
+
+    // Only touched on the consumer thread.
+    private PlaceIndex mIndex;
+    private int mPlace = PlaceIndex.NO_PLACE;
+
+    public ReverseGeocoder(File file, Listener listener) {
+        this(file, DEFAULT_MAX_DISTANCE_METERS, DEFAULT_CACHE_SIZE, listener);
+    }
+
+    public ReverseGeocoder(File file, double maxDistanceMeters, int cacheSize,
+                           Listener listener) {
+        mFile = file;
+        mMaxDistanceMeters = maxDistanceMeters;
+        mCache = new LongIntLruCache(cacheSize);
+        mListener = listener;
+    }
+
+    @Override
+    public void onStart() {
+        if (!mFile.exists()) {
+            Log.i(LOG_TAG, "No place index at " + mFile);
+            return;
+        }
+        try {
+            mIndex = PlaceIndex.open(mFile);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Cannot open the place index", e);
+        }
+    }
+
+    static long cell(double latitude, double longitude) {
+        long row = (long) Math.floor((latitude + 90) / QUANTUM_DEGREES);
+        long column = (long) Math.floor((longitude + 180) / QUANTUM_DEGREES);
+        return (row << 32) | column;
+    }
+
+    @Override
+    public boolean onFix(Fix fix) {
+        if (mIndex == null) {
+            return true;
+        }
+        long cell = cell(fix.latitude, fix.longitude);
+        int place = mCache.get(cell, NOT_CACHED);
+        if (place == NOT_CACHED) {
+            // Look up the center, so the cached place does not depend on the first fix
+            double latitude = ((cell >>> 32) + 0.5) * QUANTUM_DEGREES - 90;
+            double longitude = ((cell & 0xFFFFFFFFL) + 0.5) * QUANTUM_DEGREES - 180;
+            place = mIndex.nearest(latitude, longitude, mMaxDistanceMeters);
+            mCache.put(cell, place);
+        }
+        if (place != mPlace) {
+            mPlace = place;
+            mListener.onPlaceChanged(place == PlaceIndex.NO_PLACE ? null
+                    : mIndex.getLabel(place));
+        }
+        return true;
+    }
+
+    @Override
+    public void onShutdown() {
+        // The mapping goes away with the index
+        mIndex = null;
+        mCache.clear();
+    }
+}
@@ -0,0 +1,333 @@
+package com.ac.srikar.mylocation.geofence;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixEventBus;
+import com.ac.srikar.mylocation.location.FixStage;
+import com.ac.srikar.mylocation.util.GeoMath;
+import com.ac.srikar.mylocation.util.LongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates large numbers of circular and polygonal geofences against every fix.
+ * <p>
+ * Each fence is registered in the grid cells its bounding box overlaps, so a fix only tests
+ * the fences of its own cell plus the fences it is currently inside. All fence data lives in
+ * primitive arrays indexed by fence id; inside and dwell state are bit sets. Evaluating a fix
+ * does not allocate.
+ * <p>
+ * Transitions follow the platform geofencing API: {@link #TRANSITION_ENTER} when a fix is
+ * inside a fence the previous one was not, {@link #TRANSITION_EXIT} the other way round, and
+ * {@link #TRANSITION_DWELL} once after staying inside for the dwell delay.
+ * <p>
+ * Fixes are evaluated on the thread of the {@link FixEventBus} consumer the engine is
+ * subscribed as, which must not drop fixes, or a skipped fix could miss a transition.
+ * Fences may be added from any thread: every method holds the engine's lock, which is also
+ * held while the listener runs. Fence bounding boxes must not cross the antimeridian.
+ */
+public class GeofenceEngine implements FixStage {
+
+    /**
+     * Receives fence transitions on the thread evaluating fixes, holding the engine's lock.
+     */
+    public interface Listener {
+
+        /**
+         * @param transition one of the TRANSITION_ constants
+         */
+        void onGeofenceTransition(int fenceId, int transition, Fix fix);
+    }
+
+    public static final int TRANSITION_ENTER = 1;
+    public static final int TRANSITION_EXIT = 2;
+    public static final int TRANSITION_DWELL = 4;
+
+    // Default grid cell size, about 1.1 km of latitude.
+    public static final double DEFAULT_CELL_DEGREES = 0.01;
+
+    // Default time inside a fence before a dwell transition.
+    public static final long DEFAULT_DWELL_MILLIS = 5 * 60 * 1000;
+
+    private static final int NONE = -1;
+
+    private final Listener mListener;
+    private final double mCellDegrees;
+    private final long mDwellMillis;
+
+    // Fence columns, indexed by fence id. Circles have no vertices.
+    private int mFenceCount = 0;
+    private double[] mCenterLatitude = new double[64];
+    private double[] mCenterLongitude = new double[64];
+    private double[] mRadius = new double[64];
+    private int[] mVertexStart = new int[64];
+    private int[] mVertexCount = new int[64];
+    private double[] mMinLatitude = new double[64];
+    private double[] mMaxLatitude = new double[64];
+    private double[] mMinLongitude = new double[64];
+    private double[] mMaxLongitude = new double[64];
+    private long[] mEnterTime = new long[64];
+
+    // Polygon vertices of all fences.
+    private double[] mVertexLatitude = new double[256];
+    private double[] mVertexLongitude = new double[256];
+    private int mVertexTotal = 0;
+
+    // Grid: cell to first entry, entries chain fence ids of a cell.
+    private final LongIntHashMap mCells = new LongIntHashMap(1024);
+    private int[] mEntryFence = new int[256];
+    private int[] mEntryNext = new int[256];
+    private int mEntryCount = 0;
+
+    // One bit per fence.
+    private long[] mInside = new long[1];
+    private long[] mDwelled = new long[1];
+
+    // Ids of the fences the last fix was inside.
+    private int[] mActive = new int[16];
+    private int mActiveCount = 0;
+
+    public GeofenceEngine(Listener listener) {
+        this(listener, DEFAULT_CELL_DEGREES, DEFAULT_DWELL_MILLIS);
+    }
+
+    public GeofenceEngine(Listener listener, double cellDegrees, long dwellMillis) {
+        if (!(cellDegrees > 0)) {
+            throw new IllegalArgumentException("Invalid cell size: " + cellDegrees);
+        }
+        mListener = listener;
+        mCellDegrees = cellDegrees;
+        mDwellMillis = dwellMillis;
+    }
+
+    /**
+     * Add a circular fence.
+     *
+     * @return the fence id
+     */
+    public synchronized int addCircle(double latitude, double longitude, double radiusMeters) {
+        if (!(radiusMeters > 0) || Double.isInfinite(radiusMeters)) {
+            throw new IllegalArgumentException("Invalid radius: " + radiusMeters);
+        }
+        double latitudeSpan = radiusMeters / GeoMath.METERS_PER_DEGREE;
+        double longitudeSpan = radiusMeters / GeoMath.metersPerDegreeLongitude(
+                Math.min(89.9, Math.abs(latitude) + latitudeSpan));
+        int id = newFence(latitude - latitudeSpan, latitude + latitudeSpan,
+                longitude - longitudeSpan, longitude + longitudeSpan);
+        mCenterLatitude[id] = latitude;
+        mCenterLongitude[id] = longitude;
+        mRadius[id] = radiusMeters;
+        mVertexCount[id] = 0;
+        register(id);
+        return id;
+    }
+
+    /**
+     * Add a polygonal fence. The polygon is closed implicitly and may be concave; edges are
+     * straight in latitude/longitude, which is accurate for fences up to a few kilometers.
+     *
+     * @return the fence id
+     */
+    public synchronized int addPolygon(double[] latitudes, double[] longitudes) {
+        int count = latitudes.length;
+        if (count < 3 || longitudes.length != count) {
+            throw new IllegalArgumentException("A polygon needs at least 3 vertices");
+        }
+        double minLatitude = Double.POSITIVE_INFINITY;
+        double maxLatitude = Double.NEGATIVE_INFINITY;
+        double minLongitude = Double.POSITIVE_INFINITY;
+        double maxLongitude = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            minLatitude = Math.min(minLatitude, latitudes[i]);
+            maxLatitude = Math.max(maxLatitude, latitudes[i]);
+            minLongitude = Math.min(minLongitude, longitudes[i]);
+            maxLongitude = Math.max(maxLongitude, longitudes[i]);
+        }
+        int id = newFence(minLatitude, maxLatitude, minLongitude, maxLongitude);
+        if (mVertexTotal + count > mVertexLatitude.length) {
+            int capacity = Math.max(mVertexTotal + count, mVertexLatitude.length * 2);
+            mVertexLatitude = Arrays.copyOf(mVertexLatitude, capacity);
+            mVertexLongitude = Arrays.copyOf(mVertexLongitude, capacity);
+        }
+        System.arraycopy(latitudes, 0, mVertexLatitude, mVertexTotal, count);
+        System.arraycopy(longitudes, 0, mVertexLongitude, mVertexTotal, count);
+        mVertexStart[id] = mVertexTotal;
+        mVertexCount[id] = count;
+        mVertexTotal += count;
+        register(id);
+        return id;
+    }
+
+    private int newFence(double minLatitude, double maxLatitude, double minLongitude,
+                         double maxLongitude) {
+        int id = mFenceCount++;
+        if (id == mRadius.length) {
+            int capacity = id * 2;
+            mCenterLatitude = Arrays.copyOf(mCenterLatitude, capacity);
+            mCenterLongitude = Arrays.copyOf(mCenterLongitude, capacity);
+            mRadius = Arrays.copyOf(mRadius, capacity);
+            mVertexStart = Arrays.copyOf(mVertexStart, capacity);
+            mVertexCount = Arrays.copyOf(mVertexCount, capacity);
+            mMinLatitude = Arrays.copyOf(mMinLatitude, capacity);
+            mMaxLatitude = Arrays.copyOf(mMaxLatitude, capacity);
+            mMinLongitude = Arrays.copyOf(mMinLongitude, capacity);
+            mMaxLongitude = Arrays.copyOf(mMaxLongitude, capacity);
+            mEnterTime = Arrays.copyOf(mEnterTime, capacity);
+        }
+        if ((id >> 6) == mInside.length) {
+            mInside = Arrays.copyOf(mInside, mInside.length * 2);
+            mDwelled = Arrays.copyOf(mDwelled, mDwelled.length * 2);
+        }
+        mMinLatitude[id] = minLatitude;
+        mMaxLatitude[id] = maxLatitude;
+        mMinLongitude[id] = minLongitude;
+        mMaxLongitude[id] = maxLongitude;
+        return id;
+    }
+
+    /**
+     * Add the fence to every cell its bounding box overlaps.
+     */
+    private void register(int id) {
+        int minRow = row(mMinLatitude[id]);
+        int maxRow = row(mMaxLatitude[id]);
+        int minColumn = column(mMinLongitude[id]);
+        int maxColumn = column(mMaxLongitude[id]);
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                if (mEntryCount == mEntryFence.length) {
+                    mEntryFence = Arrays.copyOf(mEntryFence, mEntryCount * 2);
+                    mEntryNext = Arrays.copyOf(mEntryNext, mEntryCount * 2);
+                }
+                long cell = cell(column, row);
+                int entry = mEntryCount++;
+                mEntryFence[entry] = id;
+                mEntryNext[entry] = mCells.get(cell, NONE);
+                mCells.put(cell, entry);
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean onFix(Fix fix) {
+        double latitude = fix.latitude;
+        double longitude = fix.longitude;
+        // Enter fences of this cell.
+        for (int entry = mCells.get(cell(column(longitude), row(latitude)), NONE);
+             entry != NONE; entry = mEntryNext[entry]) {
+            int id = mEntryFence[entry];
+            if (!isSet(mInside, id) && contains(id, latitude, longitude)) {
+                set(mInside, id);
+                mEnterTime[id] = fix.time;
+                addActive(id);
+                mListener.onGeofenceTransition(id, TRANSITION_ENTER, fix);
+            }
+        }
+        // Exit or dwell in the fences the device was inside, whatever their cell.
+        for (int i = mActiveCount - 1; i >= 0; i--) {
+            int id = mActive[i];
+            if (!contains(id, latitude, longitude)) {
+                clear(mInside, id);
+                clear(mDwelled, id);
+                mActive[i] = mActive[--mActiveCount];
+                mListener.onGeofenceTransition(id, TRANSITION_EXIT, fix);
+            } else if (!isSet(mDwelled, id) && fix.time - mEnterTime[id] >= mDwellMillis) {
+                set(mDwelled, id);
+                mListener.onGeofenceTransition(id, TRANSITION_DWELL, fix);
+            }
+        }
+        return true;
+    }
+
+    private void addActive(int id) {
+        if (mActiveCount == mActive.length) {
+            mActive = Arrays.copyOf(mActive, mActiveCount * 2);
+        }
+        mActive[mActiveCount++] = id;
+    }
+
+    /**
+     * Whether the position is inside the fence.
+     */
+    public synchronized boolean contains(int id, double latitude, double longitude) {
+        if (latitude < mMinLatitude[id] || latitude > mMaxLatitude[id]
+                || longitude < mMinLongitude[id] || longitude > mMaxLongitude[id]) {
+            return false;
+        }
+        int count = mVertexCount[id];
+        if (count == 0) {
+            return GeoMath.fastDistance(latitude, longitude, mCenterLatitude[id],
+                    mCenterLongitude[id]) <= mRadius[id];
+        }
+        // Even-odd rule: count the edges crossed by a ray towards east.
+        boolean inside = false;
+        int start = mVertexStart[id];
+        int end = start + count;
+        for (int i = start, j = end - 1; i < end; j = i++) {
+            double latI = mVertexLatitude[i];
+            double latJ = mVertexLatitude[j];
+            if ((latI > latitude) != (latJ > latitude)) {
+                double crossing = mVertexLongitude[i] + (latitude - latI)
+                        * (mVertexLongitude[j] - mVertexLongitude[i]) / (latJ - latI);
+                if (longitude < crossing) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Whether the last fix was inside the fence.
+     */
+    public synchronized boolean isInside(int id) {
+        return isSet(mInside, id);
+    }
+
+    /**
+     * Number of fences the last fix was inside.
+     */
+    public synchronized int getInsideCount() {
+        return mActiveCount;
+    }
+
+    public synchronized int getFenceCount() {
+        return mFenceCount;
+    }
+
+    /**
+     * Remove all fences. No exit transitions are reported.
+     */
+    public synchronized void clear() {
+        mFenceCount = 0;
+        mVertexTotal = 0;
+        mEntryCount = 0;
+        mCells.clear();
+        Arrays.fill(mInside, 0);
+        Arrays.fill(mDwelled, 0);
+        mActiveCount = 0;
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor((latitude + 90) / mCellDegrees);
+    }
+
+    private int column(double longitude) {
+        return (int) Math.floor((longitude + 180) / mCellDegrees);
+    }
+
+    private static long cell(int column, int row) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    private static boolean isSet(long[] bits, int id) {
+        return (bits[id >> 6] & (1L << id)) != 0;
+    }
+
+    private static void set(long[] bits, int id) {
+        bits[id >> 6] |= 1L << id;
+    }
+
+    private static void clear(long[] bits, int id) {
+        bits[id >> 6] &= ~(1L << id);
+    }
+}
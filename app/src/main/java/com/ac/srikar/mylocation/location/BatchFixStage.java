@@ -0,0 +1,16 @@
+package com.ac.srikar.mylocation.location;
+
+/**
+ * A {@link FixStage} that can also process a burst of fixes in one call. The
+ * {@link LocationPipeline} uses {@link #onFixes(FixBatch)} for batches and falls back to
+ * {@link #onFix(Fix)} per fix for stages without this interface. Both must have the same
+ * effect.
+ */
+public interface BatchFixStage extends FixStage {
+
+    /**
+     * Process the fixes of the batch in order, in place. Dropped fixes are removed by moving
+     * the kept ones to the front, preserving their order, and truncating the batch.
+     */
+    void onFixes(FixBatch batch);
+}
@@ -0,0 +1,48 @@
+package com.ac.srikar.mylocation.location;
+
+/**
+ * Mutable, primitive-only copy of a location fix.
+ * <p>
+ * Pipeline stages receive and modify one reused instance instead of allocating a
+ * {@link android.location.Location} per fix, so the fields are public and plain.
+ */
+public class Fix {
+
+    // Degrees, WGS84.
+    public double latitude;
+    public double longitude;
+
+    // Estimated horizontal accuracy in meters.
+    public float accuracy;
+
+    // Meters above the WGS84 ellipsoid.
+    public double altitude;
+
+    // Meters per second over ground.
+    public float speed;
+
+    // UTC time of the fix in milliseconds since the epoch.
+    public long time;
+
+    public Fix set(double latitude, double longitude, float accuracy, double altitude,
+                   float speed, long time) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracy = accuracy;
+        this.altitude = altitude;
+        this.speed = speed;
+        this.time = time;
+        return this;
+    }
+
+    public Fix set(Fix other) {
+        return set(other.latitude, other.longitude, other.accuracy, other.altitude,
+                other.speed, other.time);
+    }
+
+    @Override
+    public String toString() {
+        return "Fix[" + latitude + "," + longitude + " acc=" + accuracy + " alt=" + altitude
+                + " speed=" + speed + " time=" + time + "]";
+    }
+}
@@ -0,0 +1,97 @@
+package com.ac.srikar.mylocation.location;
+
+import java.util.Arrays;
+
+/**
+ * Growable batch of fixes stored as parallel primitive arrays, oldest first.
+ * <p>
+ * Sources that receive fixes in bursts deliver them as one batch so that
+ * {@link BatchFixStage}s can process the whole burst in a single call. Like {@link Fix} the
+ * columns are public for tight loops; they may be replaced when the batch grows, so read
+ * them again after adding fixes.
+ */
+public class FixBatch {
+
+    public double[] latitude;
+    public double[] longitude;
+    public float[] accuracy;
+    public double[] altitude;
+    public float[] speed;
+    public long[] time;
+
+    private int mSize = 0;
+
+    public FixBatch() {
+        this(16);
+    }
+
+    public FixBatch(int capacity) {
+        latitude = new double[capacity];
+        longitude = new double[capacity];
+        accuracy = new float[capacity];
+        altitude = new double[capacity];
+        speed = new float[capacity];
+        time = new long[capacity];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Keep only the first {@code size} fixes, e.g. after a stage compacted the batch.
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > mSize) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+        mSize = size;
+    }
+
+    public void add(double latitude, double longitude, float accuracy, double altitude,
+                    float speed, long time) {
+        if (mSize == this.time.length) {
+            int capacity = Math.max(16, mSize * 2);
+            this.latitude = Arrays.copyOf(this.latitude, capacity);
+            this.longitude = Arrays.copyOf(this.longitude, capacity);
+            this.accuracy = Arrays.copyOf(this.accuracy, capacity);
+            this.altitude = Arrays.copyOf(this.altitude, capacity);
+            this.speed = Arrays.copyOf(this.speed, capacity);
+            this.time = Arrays.copyOf(this.time, capacity);
+        }
+        set(mSize++, latitude, longitude, accuracy, altitude, speed, time);
+    }
+
+    public void add(Fix fix) {
+        add(fix.latitude, fix.longitude, fix.accuracy, fix.altitude, fix.speed, fix.time);
+    }
+
+    /**
+     * Copy the fix at {@code index} into {@code fix}.
+     *
+     * @return {@code fix}
+     */
+    public Fix get(int index, Fix fix) {
+        return fix.set(latitude[index], longitude[index], accuracy[index], altitude[index],
+                speed[index], time[index]);
+    }
+
+    public void set(int index, Fix fix) {
+        set(index, fix.latitude, fix.longitude, fix.accuracy, fix.altitude, fix.speed,
+                fix.time);
+    }
+
+    private void set(int index, double latitude, double longitude, float accuracy,
+                     double altitude, float speed, long time) {
+        this.latitude[index] = latitude;
+        this.longitude[index] = longitude;
+        this.accuracy[index] = accuracy;
+        this.altitude[index] = altitude;
+        this.speed[index] = speed;
+        this.time[index] = time;
+    }
+}
@@ -0,0 +1,411 @@
+package com.ac.srikar.mylocation.location;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fans processed fixes out to independent consumers through a preallocated ring buffer.
+ * <p>
+ * A single producer writes each fix into the next slot of the ring, stored as primitive
+ * columns, and publishes it by advancing the cursor. Publishing takes no lock and does not
+ * allocate. Every consumer runs on its own thread, copies published fixes out of the ring
+ * and tracks the last sequence it consumed, so a slow consumer only delays itself.
+ * <p>
+ * When the ring is full the producer applies each consumer's {@link Backpressure}: it waits
+ * for {@link Backpressure#BLOCK} consumers, and moves {@link Backpressure#DROP} consumers
+ * forward, dropping the fixes they did not get to. A consumer claims each fix with a CAS on
+ * its sequence after copying it, so a copy the producer overwrote in the meantime is
+ * detected and discarded, never delivered torn.
+ * <p>
+ * Tasks posted to a subscription run on its consumer thread between fixes, once it consumed
+ * every fix published before, e.g. to reset or flush the consumer without locking it.
+ */
+public class FixEventBus {
+
+    public enum Backpressure {
+
+        // The producer waits until the consumer caught up. For consumers that must see
+        // every fix, like storage.
+        BLOCK,
+
+        // The consumer loses its oldest unread fixes. For consumers that only care about
+        // recent fixes.
+        DROP
+    }
+
+    /**
+     * Optional callbacks for consumers that own resources, run on the consumer thread.
+     */
+    public interface Lifecycle {
+
+        /**
+         * Called before the first fix.
+         */
+        void onStart();
+
+        /**
+         * Called after the last fix, once the bus was shut down or the consumer removed.
+         */
+        void onShutdown();
+    }
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // Longest a waiting consumer sleeps before looking at the cursor again.
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Fix columns, indexed by (sequence & mMask).
+    private final double[] mLatitude;
+    private final double[] mLongitude;
+    private final float[] mAccuracy;
+    private final double[] mAltitude;
+    private final float[] mSpeed;
+    private final long[] mTime;
+    private final int mMask;
+
+    // Last published sequence.
+    private final AtomicLong mCursor = new AtomicLong(-1);
+
+    // Producer state, only touched on the publishing thread.
+    private long mNextSequence = 0;
+    private long mGatingSequence = -1;
+
+    private volatile Subscription[] mSubscriptions = new Subscription[0];
+    private volatile boolean mShutdown = false;
+
+    /**
+     * A task waiting for its consumer to reach a sequence.
+     */
+    private static final class Task {
+
+        final long sequence;
+        final Runnable runnable;
+
+        Task(long sequence, Runnable runnable) {
+            this.sequence = sequence;
+            this.runnable = runnable;
+        }
+    }
+
+    /**
+     * A consumer attached to the bus.
+     */
+    public final class Subscription implements Runnable {
+
+        private final FixStage mConsumer;
+        private final Backpressure mBackpressure;
+        private final Thread mThread;
+
+        // Last consumed sequence. BLOCK consumers are the only writer, DROP consumers share
+        // it with the producer through CAS.
+        private final AtomicLong mSequence;
+        private volatile long mDropped = 0;
+        private volatile boolean mWaiting = false;
+        private volatile boolean mRemoved = false;
+
+        // Posted tasks, in the order of their sequences.
+        private final ConcurrentLinkedQueue<Task> mTasks = new ConcurrentLinkedQueue<Task>();
+
+        Subscription(String name, FixStage consumer, Backpressure backpressure) {
+            mConsumer = consumer;
+            mBackpressure = backpressure;
+            mSequence = new AtomicLong(mCursor.get());
+            mThread = new Thread(this, "FixEventBus-" + name);
+            mThread.setPriority(Thread.NORM_PRIORITY - 1);
+        }
+
+        @Override
+        public void run() {
+            Lifecycle lifecycle = mConsumer instanceof Lifecycle ? (Lifecycle) mConsumer : null;
+            if (lifecycle != null) {
+                lifecycle.onStart();
+            }
+            Fix fix = new Fix();
+            while (true) {
+                long consumed = mSequence.get();
+                runTasks(consumed);
+                long next = consumed + 1;
+                if (mCursor.get() < next) {
+                    if (mShutdown || mRemoved) {
+                        break;
+                    }
+                    mWaiting = true;
+                    if (mCursor.get() < next && mTasks.isEmpty() && !mShutdown && !mRemoved) {
+                        LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                    }
+                    mWaiting = false;
+                    continue;
+                }
+                if (mRemoved) {
+                    break;
+                }
+                int i = (int) (next & mMask);
+                fix.set(mLatitude[i], mLongitude[i], mAccuracy[i], mAltitude[i], mSpeed[i],
+                        mTime[i]);
+                if (mBackpressure == Backpressure.DROP) {
+                    if (!mSequence.compareAndSet(consumed, next)) {
+                        // Lapped by the producer while copying, the copy may be torn.
+                        continue;
+                    }
+                } else {
+                    mSequence.lazySet(next);
+                }
+                mConsumer.onFix(fix);
+            }
+            runTasks(Long.MAX_VALUE);
+            if (lifecycle != null) {
+                lifecycle.onShutdown();
+            }
+        }
+
+        private void runTasks(long consumed) {
+            Task task;
+            while ((task = mTasks.peek()) != null && task.sequence <= consumed) {
+                mTasks.poll();
+                task.runnable.run();
+            }
+        }
+
+        /**
+         * Run a task on the consumer thread once it consumed every fix published so far, and
+         * before any fix published later. Tasks run in the order they were posted, the last
+         * ones before {@link Lifecycle#onShutdown()}. Tasks posted once the consumer stopped
+         * never run.
+         */
+        public void post(Runnable task) {
+            // Queued in the order of their sequences
+            synchronized (mTasks) {
+                mTasks.add(new Task(mCursor.get(), task));
+            }
+            LockSupport.unpark(mThread);
+        }
+
+        /**
+         * Last sequence this consumer consumed or skipped.
+         */
+        public long getSequence() {
+            return mSequence.get();
+        }
+
+        /**
+         * Number of fixes published but not consumed yet.
+         */
+        public long getBacklog() {
+            return Math.max(0, mCursor.get() - mSequence.get());
+        }
+
+        /**
+         * Number of fixes this DROP consumer lost because it fell a full ring behind.
+         */
+        public long getDroppedCount() {
+            return mDropped;
+        }
+
+        public Backpressure getBackpressure() {
+            return mBackpressure;
+        }
+
+        /**
+         * Wait until the consumer thread finished.
+         *
+         * @return false if it is still running after the timeout
+         */
+        public boolean awaitTermination(long timeoutMillis) throws InterruptedException {
+            mThread.join(timeoutMillis);
+            return !mThread.isAlive();
+        }
+
+        private void wake() {
+            if (mWaiting) {
+                LockSupport.unpark(mThread);
+            }
+        }
+    }
+
+    public FixEventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a bus whose ring holds at least {@code capacity} fixes, rounded up to a power
+     * of two.
+     */
+    public FixEventBus(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mMask = size - 1;
+        mLatitude = new double[size];
+        mLongitude = new double[size];
+        mAccuracy = new float[size];
+        mAltitude = new double[size];
+        mSpeed = new float[size];
+        mTime = new long[size];
+    }
+
+    /**
+     * Start a consumer thread that receives every fix published from now on. The consumer
+     * may ignore the return value of {@link FixStage#onFix(Fix)}; it cannot drop fixes for
+     * other consumers. If it implements {@link Lifecycle} the callbacks run on its thread.
+     */
+    public synchronized Subscription subscribe(String name, FixStage consumer,
+                                               Backpressure backpressure) {
+        if (mShutdown) {
+            throw new IllegalStateException("Bus shut down");
+        }
+        Subscription subscription = new Subscription(name, consumer, backpressure);
+        Subscription[] subscriptions = new Subscription[mSubscriptions.length + 1];
+        System.arraycopy(mSubscriptions, 0, subscriptions, 0, mSubscriptions.length);
+        subscriptions[mSubscriptions.length] = subscription;
+        subscription.mThread.start();
+        mSubscriptions = subscriptions;
+        return subscription;
+    }
+
+    /**
+     * Stop a consumer. Fixes it did not consume yet are not delivered.
+     */
+    public synchronized void unsubscribe(Subscription subscription) {
+        Subscription[] old = mSubscriptions;
+        int count = 0;
+        Subscription[] subscriptions = new Subscription[old.length];
+        for (Subscription s : old) {
+            if (s != subscription) {
+                subscriptions[count++] = s;
+            }
+        }
+        if (count == old.length) {
+            return;
+        }
+        Subscription[] trimmed = new Subscription[count];
+        System.arraycopy(subscriptions, 0, trimmed, 0, count);
+        mSubscriptions = trimmed;
+        subscription.mRemoved = true;
+        LockSupport.unpark(subscription.mThread);
+    }
+
+    /**
+     * Publish a fix. Must only be called from one thread at a time.
+     *
+     * @return the sequence of the fix
+     */
+    public long publish(Fix fix) {
+        return publish(fix.latitude, fix.longitude, fix.accuracy, fix.altitude, fix.speed,
+                fix.time);
+    }
+
+    /**
+     * Publish every fix of the batch in order. Must only be called from one thread at a time.
+     */
+    public void publish(FixBatch batch) {
+        for (int i = 0, n = batch.size(); i < n; i++) {
+            publish(batch.latitude[i], batch.longitude[i], batch.accuracy[i],
+                    batch.altitude[i], batch.speed[i], batch.time[i]);
+        }
+    }
+
+    private long publish(double latitude, double longitude, float accuracy, double altitude,
+                         float speed, long time) {
+        long sequence = mNextSequence;
+        Subscription[] subscriptions = mSubscriptions;
+        awaitCapacity(sequence, subscriptions);
+        int i = (int) (sequence & mMask);
+        mLatitude[i] = latitude;
+        mLongitude[i] = longitude;
+        mAccuracy[i] = accuracy;
+        mAltitude[i] = altitude;
+        mSpeed[i] = speed;
+        mTime[i] = time;
+        mNextSequence = sequence + 1;
+        mCursor.set(sequence);
+        for (Subscription subscription : subscriptions) {
+            subscription.wake();
+        }
+        return sequence;
+    }
+
+    /**
+     * Make sure every consumer is done with the slot {@code sequence} is about to reuse.
+     */
+    private void awaitCapacity(long sequence, Subscription[] subscriptions) {
+        long wrapSequence = sequence - (mMask + 1);
+        if (wrapSequence <= mGatingSequence) {
+            return;
+        }
+        long gating = sequence - 1;
+        for (Subscription subscription : subscriptions) {
+            int attempts = 0;
+            long consumed;
+            while ((consumed = subscription.mSequence.get()) < wrapSequence) {
+                if (subscription.mRemoved || !subscription.mThread.isAlive()) {
+                    // A consumer that is gone cannot hold the producer back.
+                    consumed = wrapSequence;
+                    break;
+                }
+                if (subscription.mBackpressure == Backpressure.DROP) {
+                    if (subscription.mSequence.compareAndSet(consumed, wrapSequence)) {
+                        subscription.mDropped += wrapSequence - consumed;
+                        consumed = wrapSequence;
+                        break;
+                    }
+                } else {
+                    subscription.wake();
+                    backOff(attempts++);
+                }
+            }
+            gating = Math.min(gating, consumed);
+        }
+        mGatingSequence = gating;
+    }
+
+    private static void backOff(int attempts) {
+        if (attempts < 100) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    /**
+     * Last published sequence, -1 before the first fix.
+     */
+    public long getCursor() {
+        return mCursor.get();
+    }
+
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * Let every consumer drain the fixes published so far and stop. Does not wait for them.
+     */
+    public void shutdown() {
+        mShutdown = true;
+        for (Subscription subscription : mSubscriptions) {
+            LockSupport.unpark(subscription.mThread);
+        }
+    }
+
+    /**
+     * Wait until every consumer thread finished after {@link #shutdown()}.
+     *
+     * @return false if some are still running after the timeout
+     */
+    public boolean awaitTermination(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Subscription subscription : mSubscriptions) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || !subscription.awaitTermination(remaining)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
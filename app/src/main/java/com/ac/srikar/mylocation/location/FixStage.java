@@ -0,0 +1,15 @@
+package com.ac.srikar.mylocation.location;
+
+/**
+ * One step of the {@link LocationPipeline}. Stages run in registration order on the
+ * pipeline thread and may modify the fix in place.
+ */
+public interface FixStage {
+
+    /**
+     * Process the fix.
+     *
+     * @return false to drop the fix so that later stages and the UI never see it
+     */
+    boolean onFix(Fix fix);
+}
@@ -0,0 +1,216 @@
+package com.ac.srikar.mylocation.location;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationListener;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+
+import java.util.List;
+
+/**
+ * LocationSource backed by the FusedLocationProviderApi of Google Play services.
+ * <p>
+ * Fixes are delivered on the looper given to the constructor. The caller is responsible
+ * for connecting the GoogleApiClient and for holding the location permission.
+ * <p>
+ * With a max wait time, see {@link #setBatchWindow(long)} and
+ * {@link UpdatePolicy#maxWaitMillis}, the provider delivers fixes in bursts, which are
+ * handed to the callback as one {@link FixBatch}. Without a batch window fixes are always
+ * delivered live.
+ */
+public class FusedLocationSource implements LocationSource, LocationListener {
+
+    // A single update that did not arrive by then is given up.
+    public static final long SINGLE_UPDATE_TIMEOUT_MILLIS = 30000;
+
+    private final GoogleApiClient mGoogleApiClient;
+    private final LocationRequest mLocationRequest;
+    private final Handler mHandler;
+    private final Fix mFix = new Fix();
+    private final FixBatch mBatch = new FixBatch();
+    private Callback mCallback;
+    private volatile boolean mStarted = false;
+
+    // Max wait time asked for by the policy and by the app, guarded by this.
+    private long mPolicyMaxWaitMillis = 0;
+    private long mBatchWindowMillis = 0;
+
+    private final LocationCallback mLocationCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(LocationResult result) {
+            List<Location> locations = result.getLocations();
+            int count = locations.size();
+            if (count == 1) {
+                onLocationChanged(locations.get(0));
+                return;
+            }
+            mBatch.clear();
+            for (int i = 0; i < count; i++) {
+                Location location = locations.get(i);
+                mBatch.add(location.getLatitude(), location.getLongitude(),
+                        location.getAccuracy(), location.getAltitude(), location.getSpeed(),
+                        location.getTime());
+            }
+            mCallback.onFixes(mBatch);
+        }
+    };
+
+    // One-shot high accuracy request, guarded by this.
+    private final LocationRequest mSingleUpdateRequest = new LocationRequest()
+            .setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY)
+            .setInterval(0)
+            .setFastestInterval(0)
+            .setNumUpdates(1);
+    private boolean mSingleUpdatePending = false;
+
+    private final LocationListener mSingleUpdateListener = new LocationListener() {
+        @Override
+        public void onLocationChanged(Location location) {
+            synchronized (FusedLocationSource.this) {
+                mSingleUpdatePending = false;
+                mHandler.removeCallbacks(mSingleUpdateTimeout);
+            }
+            FusedLocationSource.this.onLocationChanged(location);
+        }
+    };
+
+    private final Runnable mSingleUpdateTimeout = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (FusedLocationSource.this) {
+                if (mSingleUpdatePending) {
+                    mSingleUpdatePending = false;
+                    if (mGoogleApiClient.isConnected()) {
+                        LocationServices.FusedLocationApi.removeLocationUpdates(
+                                mGoogleApiClient, mSingleUpdateListener);
+                    }
+                }
+            }
+        }
+    };
+
+    public FusedLocationSource(GoogleApiClient googleApiClient, LocationRequest locationRequest,
+                               Looper looper) {
+        mGoogleApiClient = googleApiClient;
+        mLocationRequest = locationRequest;
+        mHandler = new Handler(looper);
+    }
+
+    @Override
+    public void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    @Override
+    public synchronized void start() {
+        mStarted = true;
+        LocationServices.FusedLocationApi.requestLocationUpdates(mGoogleApiClient,
+                mLocationRequest, mLocationCallback, mHandler.getLooper());
+    }
+
+    @Override
+    public synchronized void stop() {
+        mStarted = false;
+        LocationServices.FusedLocationApi.removeLocationUpdates(mGoogleApiClient,
+                mLocationCallback);
+    }
+
+    /**
+     * Let the provider hold fixes for up to {@code maxWaitMillis} and deliver them in a burst,
+     * e.g. while recording in the background. The longer of this and the wait of the current
+     * policy applies. 0 asks for live delivery, whatever the policy, e.g. while somebody
+     * watches the fixes.
+     */
+    public synchronized void setBatchWindow(long maxWaitMillis) {
+        mBatchWindowMillis = maxWaitMillis;
+        updateMaxWaitTime();
+    }
+
+    private void updateMaxWaitTime() {
+        // The policy only stretches a window that allows batching in the first place
+        mLocationRequest.setMaxWaitTime(mBatchWindowMillis == 0 ? 0
+                : Math.max(mPolicyMaxWaitMillis, mBatchWindowMillis));
+        reRequest();
+    }
+
+    /**
+     * Re-issue the request if updates are running, which replaces the previous one.
+     */
+    private void reRequest() {
+        if (mStarted && mGoogleApiClient.isConnected()) {
+            LocationServices.FusedLocationApi.requestLocationUpdates(mGoogleApiClient,
+                    mLocationRequest, mLocationCallback, mHandler.getLooper());
+        }
+    }
+
+    /**
+     * Change the interval, priority and max wait time of the location request. If updates
+     * are running, the request is re-issued, which replaces the previous one.
+     */
+    public synchronized void applyPolicy(UpdatePolicy policy) {
+        mLocationRequest.setInterval(policy.intervalMillis);
+        mLocationRequest.setFastestInterval(policy.fastestIntervalMillis);
+        mLocationRequest.setPriority(policy.highAccuracy
+                ? LocationRequest.PRIORITY_HIGH_ACCURACY
+                : LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY);
+        mPolicyMaxWaitMillis = policy.maxWaitMillis;
+        updateMaxWaitTime();
+    }
+
+    /**
+     * Ask for one high accuracy fix over the existing connection, delivered as a regular fix.
+     * Calls made while a request is in flight join it instead of issuing another one.
+     *
+     * @return false if the client is not connected
+     */
+    public synchronized boolean requestSingleUpdate() {
+        if (mSingleUpdatePending) {
+            return true;
+        }
+        if (!mGoogleApiClient.isConnected()) {
+            return false;
+        }
+        mSingleUpdatePending = true;
+        mSingleUpdateRequest.setExpirationDuration(SINGLE_UPDATE_TIMEOUT_MILLIS);
+        LocationServices.FusedLocationApi.requestLocationUpdates(mGoogleApiClient,
+                mSingleUpdateRequest, mSingleUpdateListener, mHandler.getLooper());
+        mHandler.postDelayed(mSingleUpdateTimeout, SINGLE_UPDATE_TIMEOUT_MILLIS);
+        return true;
+    }
+
+    /**
+     * Deliver the last known location, if any, as a regular fix.
+     *
+     * @return false if the provider has no last known location
+     */
+    public boolean deliverLastLocation() {
+        final Location location =
+                LocationServices.FusedLocationApi.getLastLocation(mGoogleApiClient);
+        if (location == null) {
+            return false;
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                onLocationChanged(location);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Called on the delivery looper when a single new Location is found.
+     */
+    @Override
+    public void onLocationChanged(Location location) {
+        mFix.set(location.getLatitude(), location.getLongitude(), location.getAccuracy(),
+                location.getAltitude(), location.getSpeed(), location.getTime());
+        mCallback.onFix(mFix);
+    }
+}
@@ -0,0 +1,170 @@
+package com.ac.srikar.mylocation.location;
+
+import com.ac.srikar.mylocation.util.GeoMath;
+
+/**
+ * Chooses the {@link UpdatePolicy} from the observed fixes.
+ * <p>
+ * The scheduler smooths speed (median of three, then a moving average) and accuracy,
+ * detects when the device stays within a small radius, and maps the result to a policy.
+ * Thresholds are hysteretic and a new policy must be confirmed by several consecutive fixes
+ * and respect a minimum hold time, so noisy fixes do not make the location request flap.
+ * The listener only hears about actual changes.
+ * <p>
+ * All decisions use fix times, not the wall clock, so the scheduler behaves the same during
+ * a trace replay. Runs as a {@link FixStage} on the pipeline thread and never drops fixes.
+ */
+public class IntervalScheduler implements FixStage {
+
+    /**
+     * Notified on the pipeline thread when the policy changes.
+     */
+    public interface Listener {
+        void onPolicyChanged(UpdatePolicy policy);
+    }
+
+    // Speeds in m/s above which the next faster policy is chosen: SLOW->MOVING, MOVING->FAST.
+    private static final float[] SPEED_UP_THRESHOLDS = {0f, 2.5f, 12f};
+
+    // Speeds in m/s below which the next slower policy is chosen, lower than the above.
+    private static final float[] SPEED_DOWN_THRESHOLDS = {0f, 1.5f, 9f};
+
+    // Smoothed accuracy in meters above which SLOW is the fastest policy used.
+    private static final float POOR_ACCURACY_METERS = 50f;
+
+    // The device is stationary after staying this long within the stationary radius.
+    private static final long STATIONARY_AFTER_MILLIS = 120000;
+
+    // Smallest radius in meters within which the device counts as not moving.
+    private static final float MIN_STATIONARY_RADIUS_METERS = 15f;
+
+    // Consecutive fixes that must agree on a new policy before it is applied.
+    private static final int CONFIRMATIONS = 3;
+
+    // Minimum time between two policy changes.
+    private static final long MIN_HOLD_MILLIS = 30000;
+
+    // Weight of the newest sample in the exponential moving averages.
+    private static final float SMOOTHING = 0.3f;
+
+    private static final UpdatePolicy[] POLICIES = UpdatePolicy.values();
+
+    private final Listener mListener;
+    private UpdatePolicy mPolicy;
+
+    private boolean mHasFix = false;
+    private double mPreviousLatitude;
+    private double mPreviousLongitude;
+    private long mPreviousTime;
+    private float mSmoothedSpeed;
+
+    // Last two raw speed samples, for the median filter.
+    private float mSpeed1;
+    private float mSpeed2;
+    private float mSmoothedAccuracy;
+
+    // Center and start time of the current stationary candidate.
+    private double mAnchorLatitude;
+    private double mAnchorLongitude;
+    private long mAnchorTime;
+
+    private UpdatePolicy mCandidate;
+    private int mCandidateCount = 0;
+    private long mLastChangeTime;
+
+    public IntervalScheduler(UpdatePolicy initialPolicy, Listener listener) {
+        mPolicy = initialPolicy;
+        mCandidate = initialPolicy;
+        mListener = listener;
+    }
+
+    public UpdatePolicy getPolicy() {
+        return mPolicy;
+    }
+
+    @Override
+    public boolean onFix(Fix fix) {
+        if (!mHasFix) {
+            mHasFix = true;
+            mSmoothedSpeed = fix.speed;
+            mSpeed1 = fix.speed;
+            mSpeed2 = fix.speed;
+            mSmoothedAccuracy = fix.accuracy;
+            mLastChangeTime = fix.time;
+            resetAnchor(fix);
+        } else if (fix.time > mPreviousTime) {
+            float speed = fix.speed;
+            if (speed <= 0f) {
+                // Providers without a speed estimate: derive it from the displacement.
+                speed = (float) (GeoMath.fastDistance(mPreviousLatitude, mPreviousLongitude,
+                        fix.latitude, fix.longitude) * 1000.0 / (fix.time - mPreviousTime));
+            }
+            // The median drops single speed spikes before they reach the average.
+            float median = median(speed, mSpeed1, mSpeed2);
+            mSpeed2 = mSpeed1;
+            mSpeed1 = speed;
+            mSmoothedSpeed += SMOOTHING * (median - mSmoothedSpeed);
+            mSmoothedAccuracy += SMOOTHING * (fix.accuracy - mSmoothedAccuracy);
+            float radius = Math.max(MIN_STATIONARY_RADIUS_METERS, fix.accuracy);
+            double distance = GeoMath.fastDistance(mAnchorLatitude, mAnchorLongitude,
+                    fix.latitude, fix.longitude);
+            if (distance > radius) {
+                resetAnchor(fix);
+            }
+        }
+        mPreviousLatitude = fix.latitude;
+        mPreviousLongitude = fix.longitude;
+        mPreviousTime = fix.time;
+
+        confirm(target(fix.time), fix.time);
+        return true;
+    }
+
+    private void resetAnchor(Fix fix) {
+        mAnchorLatitude = fix.latitude;
+        mAnchorLongitude = fix.longitude;
+        mAnchorTime = fix.time;
+    }
+
+    /**
+     * Policy the current observations call for, before confirmation.
+     */
+    private UpdatePolicy target(long time) {
+        if (time - mAnchorTime >= STATIONARY_AFTER_MILLIS) {
+            return UpdatePolicy.STATIONARY;
+        }
+        // Leaving STATIONARY means the anchor moved, so start from SLOW.
+        int level = Math.max(mPolicy.ordinal(), UpdatePolicy.SLOW.ordinal());
+        while (level < UpdatePolicy.FAST.ordinal()
+                && mSmoothedSpeed > SPEED_UP_THRESHOLDS[level]) {
+            level++;
+        }
+        while (level > UpdatePolicy.SLOW.ordinal()
+                && mSmoothedSpeed < SPEED_DOWN_THRESHOLDS[level - 1]) {
+            level--;
+        }
+        if (mSmoothedAccuracy > POOR_ACCURACY_METERS) {
+            level = UpdatePolicy.SLOW.ordinal();
+        }
+        return POLICIES[level];
+    }
+
+    private void confirm(UpdatePolicy target, long time) {
+        if (target != mCandidate) {
+            mCandidate = target;
+            mCandidateCount = 0;
+        }
+        mCandidateCount++;
+        if (target == mPolicy || mCandidateCount < CONFIRMATIONS
+                || time - mLastChangeTime < MIN_HOLD_MILLIS) {
+            return;
+        }
+        mPolicy = target;
+        mLastChangeTime = time;
+        mListener.onPolicyChanged(target);
+    }
+
+    private static float median(float a, float b, float c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+}
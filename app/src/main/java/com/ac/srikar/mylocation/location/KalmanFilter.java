@@ -0,0 +1,273 @@
+package com.ac.srikar.mylocation.location;
+
+import com.ac.srikar.mylocation.util.GeoMath;
+
+/**
+ * Smooths fixes with a constant-velocity Kalman filter.
+ * <p>
+ * Positions are projected to east/north meters around a local origin and each axis is
+ * filtered independently with a 2x2 position/velocity state. The measurement noise is the
+ * reported accuracy, the process noise a white acceleration of {@link #mAccelerationNoise}.
+ * The state is a handful of doubles, so every fix is processed in constant time and memory
+ * without allocating.
+ * <p>
+ * As a {@link FixStage} the filter replaces the position of each fix with the estimate,
+ * the accuracy with the estimated standard deviation, and a missing speed with the filtered
+ * one. It never drops fixes. Batches are filtered straight on their columns.
+ */
+public class KalmanFilter implements BatchFixStage {
+
+    // Default white acceleration noise in m/s^2, suits pedestrians and urban driving.
+    public static final double DEFAULT_ACCELERATION_NOISE = 3.0;
+
+    // Restart from the measurement after a gap this long, the old velocity is meaningless.
+    private static final long MAX_GAP_MILLIS = 60000;
+
+    // Restart when a measurement is this many standard deviations away from the estimate.
+    private static final double MAX_INNOVATION_SIGMAS = 10.0;
+
+    // Move the projection origin once the estimate is this far away, to bound distortion.
+    private static final double MAX_ORIGIN_DISTANCE_METERS = 50000.0;
+
+    // Accuracy assumed for fixes that report none.
+    private static final double MIN_ACCURACY_METERS = 1.0;
+
+    private final double mAccelerationNoise;
+
+    private boolean mInitialized = false;
+    private long mTime;
+
+    // Projection origin.
+    private double mOriginLatitude;
+    private double mOriginLongitude;
+    private double mMetersPerDegreeLongitude;
+
+    // East axis: position, velocity and covariance [[pp, pv], [pv, vv]].
+    private double mEast;
+    private double mEastVelocity;
+    private double mEastPp;
+    private double mEastPv;
+    private double mEastVv;
+
+    // North axis.
+    private double mNorth;
+    private double mNorthVelocity;
+    private double mNorthPp;
+    private double mNorthPv;
+    private double mNorthVv;
+
+    public KalmanFilter() {
+        this(DEFAULT_ACCELERATION_NOISE);
+    }
+
+    public KalmanFilter(double accelerationNoise) {
+        mAccelerationNoise = accelerationNoise;
+    }
+
+    @Override
+    public boolean onFix(Fix fix) {
+        update(fix.latitude, fix.longitude, fix.accuracy, fix.time);
+        fix.latitude = getLatitude();
+        fix.longitude = getLongitude();
+        fix.accuracy = (float) getAccuracy();
+        if (fix.speed <= 0f) {
+            fix.speed = (float) getSpeed();
+        }
+        return true;
+    }
+
+    @Override
+    public void onFixes(FixBatch batch) {
+        double[] latitude = batch.latitude;
+        double[] longitude = batch.longitude;
+        float[] accuracy = batch.accuracy;
+        float[] speed = batch.speed;
+        long[] time = batch.time;
+        for (int i = 0, n = batch.size(); i < n; i++) {
+            update(latitude[i], longitude[i], accuracy[i], time[i]);
+            latitude[i] = getLatitude();
+            longitude[i] = getLongitude();
+            accuracy[i] = (float) getAccuracy();
+            if (speed[i] <= 0f) {
+                speed[i] = (float) getSpeed();
+            }
+        }
+    }
+
+    /**
+     * Apply one measurement.
+     */
+    private void update(double latitude, double longitude, float reportedAccuracy, long time) {
+        double accuracy = Math.max(reportedAccuracy, MIN_ACCURACY_METERS);
+        double variance = accuracy * accuracy;
+        long dtMillis = time - mTime;
+        if (!mInitialized || dtMillis > MAX_GAP_MILLIS) {
+            reset(latitude, longitude, time, variance);
+        } else {
+            double east = (longitude - mOriginLongitude) * mMetersPerDegreeLongitude;
+            double north = (latitude - mOriginLatitude) * GeoMath.METERS_PER_DEGREE;
+            // Fixes out of order are applied as measurements at the current time.
+            predict(Math.max(0, dtMillis) / 1000.0);
+            if (isOutlier(east, mEast, mEastPp + variance)
+                    || isOutlier(north, mNorth, mNorthPp + variance)) {
+                // A jump the model cannot explain, e.g. after a tunnel: trust the measurement.
+                reset(latitude, longitude, time, variance);
+            } else {
+                updateEast(east, variance);
+                updateNorth(north, variance);
+                if (dtMillis > 0) {
+                    mTime = time;
+                }
+                recenter();
+            }
+        }
+    }
+
+    private void reset(double latitude, double longitude, long time, double variance) {
+        mInitialized = true;
+        mTime = time;
+        setOrigin(latitude, longitude);
+        mEast = 0;
+        mNorth = 0;
+        mEastVelocity = 0;
+        mNorthVelocity = 0;
+        // Unknown velocity: a large variance lets the first updates set it.
+        double velocityVariance = 100.0;
+        mEastPp = variance;
+        mEastPv = 0;
+        mEastVv = velocityVariance;
+        mNorthPp = variance;
+        mNorthPv = 0;
+        mNorthVv = velocityVariance;
+    }
+
+    private void setOrigin(double latitude, double longitude) {
+        mOriginLatitude = latitude;
+        mOriginLongitude = longitude;
+        mMetersPerDegreeLongitude = GeoMath.metersPerDegreeLongitude(latitude);
+    }
+
+    private static boolean isOutlier(double measurement, double estimate, double variance) {
+        double innovation = measurement - estimate;
+        return innovation * innovation
+                > MAX_INNOVATION_SIGMAS * MAX_INNOVATION_SIGMAS * variance;
+    }
+
+    /**
+     * Advance both axes by dt seconds: x += v * dt, P = F P F' + Q.
+     */
+    private void predict(double dt) {
+        if (dt <= 0) {
+            return;
+        }
+        double q = mAccelerationNoise * mAccelerationNoise;
+        double qpp = q * dt * dt * dt / 3;
+        double qpv = q * dt * dt / 2;
+        double qvv = q * dt;
+
+        mEast += mEastVelocity * dt;
+        mEastPp += dt * (2 * mEastPv + dt * mEastVv) + qpp;
+        mEastPv += dt * mEastVv + qpv;
+        mEastVv += qvv;
+
+        mNorth += mNorthVelocity * dt;
+        mNorthPp += dt * (2 * mNorthPv + dt * mNorthVv) + qpp;
+        mNorthPv += dt * mNorthVv + qpv;
+        mNorthVv += qvv;
+    }
+
+    private void updateEast(double measurement, double variance) {
+        double s = mEastPp + variance;
+        double kp = mEastPp / s;
+        double kv = mEastPv / s;
+        double innovation = measurement - mEast;
+        mEast += kp * innovation;
+        mEastVelocity += kv * innovation;
+        mEastVv -= kv * mEastPv;
+        mEastPv -= kv * mEastPp;
+        mEastPp -= kp * mEastPp;
+    }
+
+    private void updateNorth(double measurement, double variance) {
+        double s = mNorthPp + variance;
+        double kp = mNorthPp / s;
+        double kv = mNorthPv / s;
+        double innovation = measurement - mNorth;
+        mNorth += kp * innovation;
+        mNorthVelocity += kv * innovation;
+        mNorthVv -= kv * mNorthPv;
+        mNorthPv -= kv * mNorthPp;
+        mNorthPp -= kp * mNorthPp;
+    }
+
+    /**
+     * Move the origin to the estimate when it drifted too far for the flat projection.
+     */
+    private void recenter() {
+        if (Math.abs(mEast) < MAX_ORIGIN_DISTANCE_METERS
+                && Math.abs(mNorth) < MAX_ORIGIN_DISTANCE_METERS) {
+            return;
+        }
+        setOrigin(getLatitude(), getLongitude());
+        mEast = 0;
+        mNorth = 0;
+    }
+
+    public boolean isInitialized() {
+        return mInitialized;
+    }
+
+    public double getLatitude() {
+        return mOriginLatitude + mNorth / GeoMath.METERS_PER_DEGREE;
+    }
+
+    public double getLongitude() {
+        return mOriginLongitude + mEast / mMetersPerDegreeLongitude;
+    }
+
+    /**
+     * Velocity towards east in m/s.
+     */
+    public double getVelocityEast() {
+        return mEastVelocity;
+    }
+
+    /**
+     * Velocity towards north in m/s.
+     */
+    public double getVelocityNorth() {
+        return mNorthVelocity;
+    }
+
+    public double getSpeed() {
+        return Math.sqrt(mEastVelocity * mEastVelocity + mNorthVelocity * mNorthVelocity);
+    }
+
+    /**
+     * Variance of the east position in m^2.
+     */
+    public double getEastVariance() {
+        return mEastPp;
+    }
+
+    /**
+     * Variance of the north position in m^2.
+     */
+    public double getNorthVariance() {
+        return mNorthPp;
+    }
+
+    /**
+     * Variance of the east and north velocity, averaged, in (m/s)^2.
+     */
+    public double getVelocityVariance() {
+        return (mEastVv + mNorthVv) / 2;
+    }
+
+    /**
+     * Horizontal standard deviation of the position estimate in meters.
+     */
+    public double getAccuracy() {
+        return Math.sqrt((mEastPp + mNorthPp) / 2);
+    }
+}
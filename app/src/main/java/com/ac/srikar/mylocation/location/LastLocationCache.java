@@ -0,0 +1,66 @@
+package com.ac.srikar.mylocation.location;
+
+/**
+ * Newest fix together with the policy deciding whether it is still good enough to answer
+ * a request for the current location without asking the provider.
+ * <p>
+ * A fix is fresh while it is at most {@link #getMaxAgeMillis()} old and its accuracy is
+ * within {@link #getMaxAccuracyMeters()}. The cache is not thread safe.
+ */
+public class LastLocationCache {
+
+    public static final long DEFAULT_MAX_AGE_MILLIS = 30000;
+    public static final float DEFAULT_MAX_ACCURACY_METERS = 50f;
+
+    private final long mMaxAgeMillis;
+    private final float mMaxAccuracyMeters;
+    private final Fix mFix = new Fix();
+    private boolean mHasFix = false;
+
+    public LastLocationCache() {
+        this(DEFAULT_MAX_AGE_MILLIS, DEFAULT_MAX_ACCURACY_METERS);
+    }
+
+    public LastLocationCache(long maxAgeMillis, float maxAccuracyMeters) {
+        mMaxAgeMillis = maxAgeMillis;
+        mMaxAccuracyMeters = maxAccuracyMeters;
+    }
+
+    /**
+     * Remember the fix if it is not older than the cached one.
+     */
+    public void update(Fix fix) {
+        if (!mHasFix || fix.time >= mFix.time) {
+            mFix.set(fix);
+            mHasFix = true;
+        }
+    }
+
+    /**
+     * Whether the cached fix may be used at {@code nowMillis}, in the time base of
+     * {@link Fix#time}.
+     */
+    public boolean isFresh(long nowMillis) {
+        return mHasFix && nowMillis - mFix.time <= mMaxAgeMillis
+                && mFix.accuracy <= mMaxAccuracyMeters;
+    }
+
+    /**
+     * The cached fix, or null. The instance is reused by later updates.
+     */
+    public Fix get() {
+        return mHasFix ? mFix : null;
+    }
+
+    public void clear() {
+        mHasFix = false;
+    }
+
+    public long getMaxAgeMillis() {
+        return mMaxAgeMillis;
+    }
+
+    public float getMaxAccuracyMeters() {
+        return mMaxAccuracyMeters;
+    }
+}
@@ -0,0 +1,238 @@
+package com.ac.srikar.mylocation.location;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+
+/**
+ * Processes location fixes off the UI thread.
+ * <p>
+ * The pipeline owns a background thread; sources that need a looper, like
+ * {@link FusedLocationSource}, should deliver on {@link #getLooper()}. Other sources may
+ * deliver from their own thread, as long as only one thread delivers at a time.
+ * Every fix runs through the registered {@link FixStage}s in order; fixes
+ * that survive all stages are handed to the UI as a snapshot. Batches run through each
+ * stage as a whole, see {@link BatchFixStage}. UI dispatches are coalesced
+ * so the {@link Listener} runs at most once per frame with the newest fix.
+ * <p>
+ * Surviving fixes are also published on a {@link FixEventBus}. Consumers that only observe
+ * fixes and may be slow, like storage, should subscribe there instead of adding a stage, so
+ * they run on their own thread and do not hold back the pipeline.
+ * <p>
+ * Arrival, per stage and render latencies are recorded in {@link PipelineMetrics}.
+ */
+public class LocationPipeline implements LocationSource.Callback {
+
+    /**
+     * Receives processed fixes on the main thread.
+     */
+    public interface Listener {
+
+        /**
+         * Called with the newest processed fix. The instance is reused for every call, so
+         * copy the values that have to outlive the call.
+         */
+        void onFixProcessed(Fix fix);
+    }
+
+    // Minimum time between two UI dispatches, about one frame at 60 fps.
+    public static final long FRAME_INTERVAL_MILLIS = 16;
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final Handler mUiHandler = new Handler(Looper.getMainLooper());
+    private final Listener mListener;
+    private final FixEventBus mEventBus = new FixEventBus();
+    private final PipelineMetrics mMetrics = new PipelineMetrics();
+
+    // Stages and their metrics, replaced as a whole whenever one is added. The metrics are
+    // replaced first, so they are never shorter than the stages.
+    private volatile PipelineMetrics.Stage[] mStageMetrics = new PipelineMetrics.Stage[0];
+    private volatile FixStage[] mStages = new FixStage[0];
+
+    // Newest processed fix waiting for the UI, guarded by this.
+    private final Fix mPendingFix = new Fix();
+    private boolean mUiDispatchPending = false;
+    private long mLastUiDispatchTime = 0;
+    private boolean mQuit = false;
+
+    // Scratch fix for stages that process batches one fix at a time, only touched on the
+    // delivering thread.
+    private final Fix mBatchFix = new Fix();
+
+    // Fix handed to the listener, only touched on the main thread.
+    private final Fix mUiFix = new Fix();
+
+    private final Runnable mDispatchToUi = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (LocationPipeline.this) {
+                mUiFix.set(mPendingFix);
+                mUiDispatchPending = false;
+                mLastUiDispatchTime = SystemClock.uptimeMillis();
+            }
+            long fixTime = mUiFix.time;
+            long start = System.nanoTime();
+            mListener.onFixProcessed(mUiFix);
+            mMetrics.recordRender(System.nanoTime() - start,
+                    System.currentTimeMillis() - fixTime);
+        }
+    };
+
+    /**
+     * Starts the pipeline thread.
+     */
+    public LocationPipeline(Listener listener) {
+        mListener = listener;
+        mThread = new HandlerThread("LocationPipeline", Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Looper of the pipeline thread.
+     */
+    public Looper getLooper() {
+        return mThread.getLooper();
+    }
+
+    /**
+     * Bus receiving every fix that survives the stages. The pipeline shuts it down on quit.
+     */
+    public FixEventBus getEventBus() {
+        return mEventBus;
+    }
+
+    /**
+     * Latency instrumentation, see {@link PipelineMetrics}.
+     */
+    public PipelineMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Run a task on the pipeline thread, e.g. to open storage used by a stage.
+     */
+    public void post(Runnable task) {
+        mHandler.post(task);
+    }
+
+    /**
+     * Append a stage. Stages run in the order they were added.
+     */
+    public synchronized void addStage(FixStage stage) {
+        PipelineMetrics.Stage metrics = mMetrics.addStage(stage.getClass().getSimpleName());
+        PipelineMetrics.Stage[] stageMetrics = new PipelineMetrics.Stage[mStages.length + 1];
+        System.arraycopy(mStageMetrics, 0, stageMetrics, 0, mStages.length);
+        stageMetrics[mStages.length] = metrics;
+        mStageMetrics = stageMetrics;
+        FixStage[] stages = new FixStage[mStages.length + 1];
+        System.arraycopy(mStages, 0, stages, 0, mStages.length);
+        stages[mStages.length] = stage;
+        mStages = stages;
+    }
+
+    /**
+     * Called on the delivering thread of the LocationSource when a new fix is found.
+     */
+    @Override
+    public void onFix(Fix fix) {
+        mMetrics.onArrival(SystemClock.elapsedRealtime());
+        mMetrics.recordFixAge(System.currentTimeMillis(), fix.time);
+        FixStage[] stages = mStages;
+        PipelineMetrics.Stage[] stageMetrics = mStageMetrics;
+        long start = System.nanoTime();
+        for (int i = 0; i < stages.length; i++) {
+            boolean keep = stages[i].onFix(fix);
+            long end = System.nanoTime();
+            stageMetrics[i].time.record((end - start) / 1000);
+            start = end;
+            if (!keep) {
+                stageMetrics[i].dropped.incrementAndGet();
+                return;
+            }
+        }
+        mEventBus.publish(fix);
+        publish(fix);
+    }
+
+    /**
+     * Called on the delivering thread of the LocationSource when it received a burst of fixes.
+     * Only the newest surviving fix is handed to the UI.
+     */
+    @Override
+    public void onFixes(FixBatch batch) {
+        mMetrics.onArrival(SystemClock.elapsedRealtime());
+        long now = System.currentTimeMillis();
+        for (int i = 0, n = batch.size(); i < n; i++) {
+            mMetrics.recordFixAge(now, batch.time[i]);
+        }
+        FixStage[] stages = mStages;
+        PipelineMetrics.Stage[] stageMetrics = mStageMetrics;
+        long start = System.nanoTime();
+        for (int i = 0; i < stages.length && batch.size() > 0; i++) {
+            FixStage stage = stages[i];
+            int size = batch.size();
+            if (stage instanceof BatchFixStage) {
+                ((BatchFixStage) stage).onFixes(batch);
+            } else {
+                int kept = 0;
+                for (int j = 0; j < batch.size(); j++) {
+                    batch.get(j, mBatchFix);
+                    if (stage.onFix(mBatchFix)) {
+                        batch.set(kept++, mBatchFix);
+                    }
+                }
+                batch.truncate(kept);
+            }
+            // Recorded per fix, as the average over the batch
+            long end = System.nanoTime();
+            stageMetrics[i].time.record((end - start) / 1000 / size, size);
+            stageMetrics[i].dropped.addAndGet(size - batch.size());
+            start = end;
+        }
+        if (batch.size() > 0) {
+            mEventBus.publish(batch);
+            publish(batch.get(batch.size() - 1, mBatchFix));
+        }
+    }
+
+    /**
+     * Hand the fix to the UI, coalescing with any dispatch that has not run yet.
+     */
+    private synchronized void publish(Fix fix) {
+        mPendingFix.set(fix);
+        if (mUiDispatchPending) {
+            mMetrics.recordCoalesced();
+            return;
+        }
+        if (mQuit) {
+            return;
+        }
+        mUiDispatchPending = true;
+        long now = SystemClock.uptimeMillis();
+        long dispatchTime = Math.max(now, mLastUiDispatchTime + FRAME_INTERVAL_MILLIS);
+        mUiHandler.postAtTime(mDispatchToUi, dispatchTime);
+    }
+
+    /**
+     * Stop the pipeline thread once the tasks already posted have run, and drop pending UI
+     * dispatches. Event bus consumers drain the fixes published until then and stop. The
+     * LocationSource must be stopped before calling this.
+     */
+    public void quit() {
+        synchronized (this) {
+            mQuit = true;
+        }
+        mUiHandler.removeCallbacks(mDispatchToUi);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mEventBus.shutdown();
+                mThread.quit();
+            }
+        });
+    }
+}
@@ -0,0 +1,38 @@
+package com.ac.srikar.mylocation.location;
+
+/**
+ * Produces location fixes, e.g. from the fused location provider or a recorded trace.
+ * <p>
+ * A source delivers fixes to its callback from a single thread at a time. The {@link Fix}
+ * passed to the callback is reused by the source, so callbacks must copy what they keep.
+ */
+public interface LocationSource {
+
+    /**
+     * Receives fixes produced by a LocationSource.
+     */
+    interface Callback {
+        void onFix(Fix fix);
+
+        /**
+         * Called instead of {@link #onFix(Fix)} when the source received several fixes at
+         * once. The batch is reused by the source as well.
+         */
+        void onFixes(FixBatch batch);
+    }
+
+    /**
+     * Set the callback that receives fixes. Must be called before {@link #start()}.
+     */
+    void setCallback(Callback callback);
+
+    /**
+     * Start delivering fixes.
+     */
+    void start();
+
+    /**
+     * Stop delivering fixes. Fixes already in flight may still be delivered.
+     */
+    void stop();
+}
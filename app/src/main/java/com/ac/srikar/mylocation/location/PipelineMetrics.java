@@ -0,0 +1,152 @@
+package com.ac.srikar.mylocation.location;
+
+import com.ac.srikar.mylocation.util.LatencyHistogram;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency instrumentation of the {@link LocationPipeline}, from the provider to the screen.
+ * <p>
+ * Records, in {@link LatencyHistogram}s:
+ * <ul>
+ * <li>fix age: wall clock at arrival minus the fix time, in ms</li>
+ * <li>arrival interval: time between two arriving fixes, in ms, to compare with the
+ * requested interval</li>
+ * <li>per stage processing time, in microseconds, and the fixes each stage dropped</li>
+ * <li>render time of the UI listener, in microseconds, and the fix age once displayed</li>
+ * <li>fixes coalesced because the UI had not shown the previous one yet</li>
+ * </ul>
+ * Everything is recorded without locks or allocation; {@link #dump(PrintWriter)} prints a
+ * summary, e.g. for {@code adb shell dumpsys}.
+ */
+public class PipelineMetrics {
+
+    /**
+     * Metrics of one stage.
+     */
+    public static class Stage {
+
+        public final String name;
+
+        // Processing time per fix in microseconds.
+        public final LatencyHistogram time = new LatencyHistogram();
+
+        public final AtomicLong dropped = new AtomicLong();
+
+        Stage(String name) {
+            this.name = name;
+        }
+    }
+
+    private final LatencyHistogram mFixAge = new LatencyHistogram();
+    private final LatencyHistogram mArrivalInterval = new LatencyHistogram();
+    private final LatencyHistogram mRenderTime = new LatencyHistogram();
+    private final LatencyHistogram mDisplayedAge = new LatencyHistogram();
+    private final AtomicLong mCoalesced = new AtomicLong();
+
+    // Replaced as a whole whenever a stage is added.
+    private volatile Stage[] mStages = new Stage[0];
+
+    // Only touched on the delivering thread.
+    private long mLastArrivalMillis = -1;
+
+    private volatile long mRequestedIntervalMillis = 0;
+
+    synchronized Stage addStage(String name) {
+        Stage stage = new Stage(name);
+        Stage[] stages = new Stage[mStages.length + 1];
+        System.arraycopy(mStages, 0, stages, 0, mStages.length);
+        stages[mStages.length] = stage;
+        mStages = stages;
+        return stage;
+    }
+
+    /**
+     * Called on the delivering thread for every fix or batch entering the pipeline.
+     *
+     * @param elapsedMillis monotonic arrival time, e.g. SystemClock.elapsedRealtime()
+     */
+    void onArrival(long elapsedMillis) {
+        if (mLastArrivalMillis >= 0) {
+            mArrivalInterval.record(elapsedMillis - mLastArrivalMillis);
+        }
+        mLastArrivalMillis = elapsedMillis;
+    }
+
+    void recordFixAge(long nowMillis, long fixTime) {
+        mFixAge.record(nowMillis - fixTime);
+    }
+
+    void recordCoalesced() {
+        mCoalesced.incrementAndGet();
+    }
+
+    void recordRender(long renderNanos, long displayedAgeMillis) {
+        mRenderTime.record(renderNanos / 1000);
+        mDisplayedAge.record(displayedAgeMillis);
+    }
+
+    /**
+     * The interval currently asked from the provider, shown next to the arrival intervals.
+     */
+    public void setRequestedInterval(long intervalMillis) {
+        mRequestedIntervalMillis = intervalMillis;
+    }
+
+    public LatencyHistogram getFixAge() {
+        return mFixAge;
+    }
+
+    public LatencyHistogram getArrivalInterval() {
+        return mArrivalInterval;
+    }
+
+    public LatencyHistogram getRenderTime() {
+        return mRenderTime;
+    }
+
+    public LatencyHistogram getDisplayedAge() {
+        return mDisplayedAge;
+    }
+
+    public long getCoalescedCount() {
+        return mCoalesced.get();
+    }
+
+    /**
+     * Stages in pipeline order.
+     */
+    public Stage[] getStages() {
+        return mStages.clone();
+    }
+
+    /**
+     * Forget everything recorded so far, e.g. before comparing another setting.
+     */
+    public void reset() {
+        mFixAge.reset();
+        mArrivalInterval.reset();
+        mRenderTime.reset();
+        mDisplayedAge.reset();
+        mCoalesced.set(0);
+        for (Stage stage : mStages) {
+            stage.time.reset();
+            stage.dropped.set(0);
+        }
+    }
+
+    public void dump(PrintWriter writer) {
+        writer.println("Location pipeline metrics");
+        writer.println("  requested interval (ms): " + mRequestedIntervalMillis);
+        writer.println("  arrival interval (ms): " + mArrivalInterval.summary());
+        writer.println("  fix age (ms): " + mFixAge.summary());
+        for (Stage stage : mStages) {
+            writer.println("  stage " + stage.name + " (us): " + stage.time.summary()
+                    + " dropped=" + stage.dropped.get());
+        }
+        writer.println("  render (us): " + mRenderTime.summary());
+        writer.println("  displayed age (ms): " + mDisplayedAge.summary());
+        writer.println("  coalesced: " + mCoalesced.get());
+    }
+}
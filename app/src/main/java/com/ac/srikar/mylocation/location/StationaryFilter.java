@@ -0,0 +1,238 @@
+package com.ac.srikar.mylocation.location;
+
+import com.ac.srikar.mylocation.util.GeoMath;
+
+/**
+ * Rejects outliers and collapses the redundant fixes of a parked device, before any other
+ * stage sees them.
+ * <p>
+ * A fix is an outlier when it is not newer than the last accepted fix, when its accuracy is a
+ * spike compared to the smoothed accuracy, or when reaching it from the last accepted fix
+ * takes an impossible speed even after allowing for both accuracies. Several outliers in a
+ * row mean the situation really changed, e.g. after a tunnel, so the filter then starts over
+ * from the next fix.
+ * <p>
+ * The device is stationary once several slow fixes in a row stay within their accuracy of
+ * the dwell center, the accuracy weighted mean of those fixes. While stationary, fixes are
+ * dropped except for one every refresh interval, which is passed on moved to the dwell
+ * center, or one asked for with {@link #passNext()}. When the device leaves, the whole
+ * dwell is reported to the {@link Listener} as one record. Decisions use fix times, so
+ * replays behave the same.
+ */
+public class StationaryFilter implements FixStage {
+
+    /**
+     * Notified on the pipeline thread when a dwell ends.
+     */
+    public interface Listener {
+
+        /**
+         * @param fixCount number of fixes that made up the dwell, including suppressed ones
+         */
+        void onDwell(double latitude, double longitude, long startTime, long endTime,
+                     int fixCount);
+    }
+
+    // Pass one fix on this often while stationary, so later stages know the device is alive.
+    public static final long DEFAULT_REFRESH_MILLIS = 15000;
+
+    // Faster than any car or train, in m/s.
+    public static final float DEFAULT_MAX_SPEED = 70f;
+
+    // Fixes within the jitter radius that make the device stationary.
+    private static final int STATIONARY_MIN_FIXES = 3;
+
+    // Reported speed in m/s above which a fix never counts as stationary.
+    private static final float STATIONARY_MAX_SPEED = 0.5f;
+
+    // Smallest jitter radius, for fixes that report an unrealistically small accuracy.
+    private static final float MIN_JITTER_METERS = 5f;
+
+    // An accuracy this many times the smoothed one, and above the minimum, is a spike.
+    private static final float ACCURACY_SPIKE_FACTOR = 4f;
+    private static final float MIN_ACCURACY_SPIKE_METERS = 50f;
+
+    // Outliers in a row after which the filter starts over.
+    private static final int MAX_OUTLIERS_IN_ROW = 3;
+
+    // Weight of the newest accuracy in the smoothed accuracy.
+    private static final float SMOOTHING = 0.2f;
+
+    private final Listener mListener;
+    private final long mRefreshMillis;
+    private final float mMaxSpeed;
+
+    // Last accepted fix, as reported.
+    private boolean mHasFix = false;
+    private double mLastLatitude;
+    private double mLastLongitude;
+    private float mLastAccuracy;
+    private long mLastTime;
+    private float mSmoothedAccuracy;
+    private int mOutliersInRow = 0;
+
+    // Current dwell: accuracy weighted sums of the positions, and its extent.
+    private double mDwellLatitudeSum;
+    private double mDwellLongitudeSum;
+    private double mDwellWeight;
+    private long mDwellStartTime;
+    private long mDwellEndTime;
+    private int mDwellFixCount;
+    private long mLastPassTime;
+    private boolean mPassNext = false;
+
+    private long mSuppressedCount = 0;
+    private long mRejectedCount = 0;
+
+    public StationaryFilter(Listener listener) {
+        this(listener, DEFAULT_REFRESH_MILLIS, DEFAULT_MAX_SPEED);
+    }
+
+    /**
+     * @param listener may be null
+     */
+    public StationaryFilter(Listener listener, long refreshMillis, float maxSpeed) {
+        mListener = listener;
+        mRefreshMillis = refreshMillis;
+        mMaxSpeed = maxSpeed;
+    }
+
+    @Override
+    public boolean onFix(Fix fix) {
+        if (mHasFix && isOutlier(fix)) {
+            if (++mOutliersInRow <= MAX_OUTLIERS_IN_ROW) {
+                mRejectedCount++;
+                return false;
+            }
+            endDwell();
+            mHasFix = false;
+        }
+        mOutliersInRow = 0;
+        boolean forced = mPassNext;
+        mPassNext = false;
+        if (!mHasFix) {
+            mHasFix = true;
+            mSmoothedAccuracy = fix.accuracy;
+            startDwell(fix);
+        } else {
+            mSmoothedAccuracy += SMOOTHING * (fix.accuracy - mSmoothedAccuracy);
+            if (isInDwell(fix)) {
+                addToDwell(fix);
+                if (isStationary()) {
+                    if (!forced && fix.time - mLastPassTime < mRefreshMillis) {
+                        mSuppressedCount++;
+                        return false;
+                    }
+                    fix.latitude = getDwellLatitude();
+                    fix.longitude = getDwellLongitude();
+                }
+            } else {
+                endDwell();
+                startDwell(fix);
+            }
+        }
+        mLastPassTime = fix.time;
+        return true;
+    }
+
+    /**
+     * Pass the next fix that is not an outlier even while stationary, e.g. one the user asked
+     * for. Call on the pipeline thread.
+     */
+    public void passNext() {
+        mPassNext = true;
+    }
+
+    private boolean isOutlier(Fix fix) {
+        if (fix.time <= mLastTime) {
+            return true;
+        }
+        if (fix.accuracy > MIN_ACCURACY_SPIKE_METERS
+                && fix.accuracy > ACCURACY_SPIKE_FACTOR * mSmoothedAccuracy) {
+            return true;
+        }
+        double excess = GeoMath.fastDistance(mLastLatitude, mLastLongitude, fix.latitude,
+                fix.longitude) - fix.accuracy - mLastAccuracy;
+        return excess > 0 && excess * 1000 / (fix.time - mLastTime) > mMaxSpeed;
+    }
+
+    private boolean isInDwell(Fix fix) {
+        if (fix.speed > STATIONARY_MAX_SPEED) {
+            return false;
+        }
+        double radius = Math.max(MIN_JITTER_METERS, fix.accuracy);
+        return GeoMath.fastDistance(getDwellLatitude(), getDwellLongitude(), fix.latitude,
+                fix.longitude) <= radius;
+    }
+
+    private void startDwell(Fix fix) {
+        mDwellLatitudeSum = 0;
+        mDwellLongitudeSum = 0;
+        mDwellWeight = 0;
+        mDwellFixCount = 0;
+        mDwellStartTime = fix.time;
+        addToDwell(fix);
+    }
+
+    private void addToDwell(Fix fix) {
+        double accuracy = Math.max(MIN_JITTER_METERS, fix.accuracy);
+        double weight = 1 / (accuracy * accuracy);
+        mDwellLatitudeSum += weight * fix.latitude;
+        mDwellLongitudeSum += weight * fix.longitude;
+        mDwellWeight += weight;
+        mDwellFixCount++;
+        mDwellEndTime = fix.time;
+        mLastLatitude = fix.latitude;
+        mLastLongitude = fix.longitude;
+        mLastAccuracy = fix.accuracy;
+        mLastTime = fix.time;
+    }
+
+    private void endDwell() {
+        if (isStationary() && mListener != null) {
+            mListener.onDwell(getDwellLatitude(), getDwellLongitude(), mDwellStartTime,
+                    mDwellEndTime, mDwellFixCount);
+        }
+        mDwellFixCount = 0;
+    }
+
+    /**
+     * Whether the newest accepted fixes show a parked device.
+     */
+    public boolean isStationary() {
+        return mDwellFixCount >= STATIONARY_MIN_FIXES;
+    }
+
+    public double getDwellLatitude() {
+        return mDwellLatitudeSum / mDwellWeight;
+    }
+
+    public double getDwellLongitude() {
+        return mDwellLongitudeSum / mDwellWeight;
+    }
+
+    public long getDwellStartTime() {
+        return mDwellStartTime;
+    }
+
+    /**
+     * Number of fixes in the current dwell, 1 while moving.
+     */
+    public int getDwellFixCount() {
+        return mDwellFixCount;
+    }
+
+    /**
+     * Number of redundant fixes dropped while stationary.
+     */
+    public long getSuppressedCount() {
+        return mSuppressedCount;
+    }
+
+    /**
+     * Number of outliers dropped.
+     */
+    public long getRejectedCount() {
+        return mRejectedCount;
+    }
+}
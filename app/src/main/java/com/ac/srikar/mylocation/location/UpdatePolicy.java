@@ -0,0 +1,38 @@
+package com.ac.srikar.mylocation.location;
+
+/**
+ * Location request parameters chosen by the {@link IntervalScheduler}, ordered from the
+ * least to the most frequent updates.
+ * <p>
+ * A non-zero {@link #maxWaitMillis} lets the provider collect fixes and deliver them in
+ * bursts, so the device can sleep in between. It only applies while nobody watches the
+ * fixes, see {@link FusedLocationSource#setBatchWindow(long)}.
+ */
+public enum UpdatePolicy {
+
+    // Device is parked; poll rarely with the balanced power provider, in batches while in
+    // the background.
+    STATIONARY(60000, 30000, false, 5 * 60000),
+
+    // Walking pace, or fixes too inaccurate to be worth sampling quickly.
+    SLOW(10000, 5000, true, 0),
+
+    // The historical default of the app.
+    MOVING(5000, 2500, true, 0),
+
+    // Vehicle speeds; sample often so the track does not cut corners.
+    FAST(2000, 1000, true, 0);
+
+    public final long intervalMillis;
+    public final long fastestIntervalMillis;
+    public final boolean highAccuracy;
+    public final long maxWaitMillis;
+
+    UpdatePolicy(long intervalMillis, long fastestIntervalMillis, boolean highAccuracy,
+                 long maxWaitMillis) {
+        this.intervalMillis = intervalMillis;
+        this.fastestIntervalMillis = fastestIntervalMillis;
+        this.highAccuracy = highAccuracy;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+}
@@ -0,0 +1,91 @@
+package com.ac.srikar.mylocation.location.replay;
+
+import com.ac.srikar.mylocation.location.Fix;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads traces stored as comma separated values, one fix per line:
+ * <pre>
+ * time,latitude,longitude[,accuracy[,altitude[,speed]]]
+ * </pre>
+ * The time is either epoch milliseconds or an ISO 8601 timestamp. Blank lines, lines
+ * starting with '#' and a header line starting with a letter are skipped.
+ */
+public class CsvTraceReader implements TraceReader {
+
+    private static final int MAX_COLUMNS = 6;
+
+    private final TraceInput mInput;
+    private final int[] mColumnStart = new int[MAX_COLUMNS];
+    private final int[] mColumnEnd = new int[MAX_COLUMNS];
+
+    public CsvTraceReader(Reader reader) {
+        mInput = new TraceInput(reader);
+    }
+
+    @Override
+    public boolean next(Fix fix) throws IOException {
+        while (mInput.readLine()) {
+            if (parseLine(mInput.line, mInput.lineLength, fix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean parseLine(char[] line, int length, Fix fix) throws IOException {
+        if (length == 0 || line[0] == '#' || Character.isLetter(line[0])) {
+            return false;
+        }
+        int columns = 0;
+        int start = 0;
+        for (int i = 0; i <= length && columns < MAX_COLUMNS; i++) {
+            if (i == length || line[i] == ',') {
+                mColumnStart[columns] = start;
+                mColumnEnd[columns] = i;
+                columns++;
+                start = i + 1;
+            }
+        }
+        if (columns < 3) {
+            throw new IOException("Expected time,latitude,longitude in: "
+                    + new String(line, 0, length));
+        }
+        long time = parseTime(line, mColumnStart[0], mColumnEnd[0]);
+        double latitude = column(line, 1);
+        double longitude = column(line, 2);
+        if (time == TraceParser.INVALID_TIME || Double.isNaN(latitude)
+                || Double.isNaN(longitude)) {
+            throw new IOException("Invalid fix: " + new String(line, 0, length));
+        }
+        double accuracy = columns > 3 ? column(line, 3) : Double.NaN;
+        double altitude = columns > 4 ? column(line, 4) : Double.NaN;
+        double speed = columns > 5 ? column(line, 5) : Double.NaN;
+        fix.set(latitude, longitude,
+                Double.isNaN(accuracy) ? DEFAULT_ACCURACY : (float) accuracy,
+                Double.isNaN(altitude) ? 0 : altitude,
+                Double.isNaN(speed) ? 0f : (float) speed,
+                time);
+        return true;
+    }
+
+    private double column(char[] line, int index) {
+        return TraceParser.parseDouble(line, mColumnStart[index], mColumnEnd[index]);
+    }
+
+    private static long parseTime(char[] line, int start, int end) {
+        long time = TraceParser.parseIsoTime(line, start, end);
+        if (time != TraceParser.INVALID_TIME) {
+            return time;
+        }
+        double millis = TraceParser.parseDouble(line, start, end);
+        return Double.isNaN(millis) ? TraceParser.INVALID_TIME : (long) millis;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mInput.close();
+    }
+}
@@ -0,0 +1,224 @@
+package com.ac.srikar.mylocation.location.replay;
+
+import com.ac.srikar.mylocation.location.Fix;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the track points of a GPX file. Each {@code <trkpt>} becomes a fix; its
+ * {@code <ele>}, {@code <time>}, {@code <speed>} and {@code <hdop>} children are used when
+ * present. Points without a time are skipped since they cannot be replayed.
+ * <p>
+ * This is a small streaming scanner rather than a full XML parser: comments, CDATA and
+ * entities inside the elements above are not supported.
+ */
+public class GpxTraceReader implements TraceReader {
+
+    // Meters of horizontal error per unit of HDOP.
+    private static final float METERS_PER_HDOP = 5f;
+
+    private static final int NONE = 0;
+    private static final int ELE = 1;
+    private static final int TIME = 2;
+    private static final int SPEED = 3;
+    private static final int HDOP = 4;
+
+    private final TraceInput mInput;
+    private char[] mTag = new char[256];
+    private int mTagLength;
+    private char[] mText = new char[64];
+    private int mTextLength;
+
+    // State of the track point being read.
+    private boolean mInPoint = false;
+    private int mElement = NONE;
+    private double mLatitude;
+    private double mLongitude;
+    private double mAltitude;
+    private double mSpeed;
+    private double mHdop;
+    private long mTime;
+
+    public GpxTraceReader(Reader reader) {
+        mInput = new TraceInput(reader);
+    }
+
+    @Override
+    public boolean next(Fix fix) throws IOException {
+        int c = mInput.read();
+        while (c != -1) {
+            if (c != '<') {
+                if (mElement != NONE) {
+                    appendText((char) c);
+                }
+                c = mInput.read();
+                continue;
+            }
+            readTag();
+            if (onTag(fix)) {
+                return true;
+            }
+            c = mInput.read();
+        }
+        return false;
+    }
+
+    private void readTag() throws IOException {
+        mTagLength = 0;
+        int c = mInput.read();
+        while (c != -1 && c != '>') {
+            if (mTagLength == mTag.length) {
+                char[] grown = new char[mTag.length * 2];
+                System.arraycopy(mTag, 0, grown, 0, mTagLength);
+                mTag = grown;
+            }
+            mTag[mTagLength++] = (char) c;
+            c = mInput.read();
+        }
+    }
+
+    private void appendText(char c) {
+        if (mTextLength < mText.length) {
+            mText[mTextLength++] = c;
+        }
+    }
+
+    /**
+     * Handle the tag in {@link #mTag}.
+     *
+     * @return true when a complete track point was written to {@code fix}
+     */
+    private boolean onTag(Fix fix) {
+        boolean closing = mTagLength > 0 && mTag[0] == '/';
+        int nameStart = closing ? 1 : 0;
+        int nameEnd = nameStart;
+        while (nameEnd < mTagLength && mTag[nameEnd] > ' ' && mTag[nameEnd] != '/') {
+            nameEnd++;
+        }
+        // Ignore namespace prefixes such as "gpx:trkpt".
+        for (int i = nameEnd - 1; i >= nameStart; i--) {
+            if (mTag[i] == ':') {
+                nameStart = i + 1;
+                break;
+            }
+        }
+        boolean selfClosing = mTagLength > 0 && mTag[mTagLength - 1] == '/';
+
+        if (nameIs(nameStart, nameEnd, "trkpt")) {
+            if (closing) {
+                mInPoint = false;
+                return emit(fix);
+            }
+            startPoint();
+            if (selfClosing) {
+                mInPoint = false;
+                return emit(fix);
+            }
+            return false;
+        }
+        if (!mInPoint) {
+            return false;
+        }
+        if (closing) {
+            endElement();
+            return false;
+        }
+        if (!selfClosing) {
+            mElement = nameIs(nameStart, nameEnd, "ele") ? ELE
+                    : nameIs(nameStart, nameEnd, "time") ? TIME
+                    : nameIs(nameStart, nameEnd, "speed") ? SPEED
+                    : nameIs(nameStart, nameEnd, "hdop") ? HDOP
+                    : NONE;
+            mTextLength = 0;
+        }
+        return false;
+    }
+
+    private boolean nameIs(int start, int end, String name) {
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (mTag[start + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void startPoint() {
+        mInPoint = true;
+        mElement = NONE;
+        mLatitude = attribute("lat");
+        mLongitude = attribute("lon");
+        mAltitude = Double.NaN;
+        mSpeed = Double.NaN;
+        mHdop = Double.NaN;
+        mTime = TraceParser.INVALID_TIME;
+    }
+
+    private void endElement() {
+        switch (mElement) {
+            case ELE:
+                mAltitude = TraceParser.parseDouble(mText, 0, mTextLength);
+                break;
+            case TIME:
+                mTime = TraceParser.parseIsoTime(mText, 0, mTextLength);
+                break;
+            case SPEED:
+                mSpeed = TraceParser.parseDouble(mText, 0, mTextLength);
+                break;
+            case HDOP:
+                mHdop = TraceParser.parseDouble(mText, 0, mTextLength);
+                break;
+        }
+        mElement = NONE;
+    }
+
+    private boolean emit(Fix fix) {
+        if (Double.isNaN(mLatitude) || Double.isNaN(mLongitude)
+                || mTime == TraceParser.INVALID_TIME) {
+            return false;
+        }
+        fix.set(mLatitude, mLongitude,
+                Double.isNaN(mHdop) ? DEFAULT_ACCURACY : (float) (mHdop * METERS_PER_HDOP),
+                Double.isNaN(mAltitude) ? 0 : mAltitude,
+                Double.isNaN(mSpeed) ? 0f : (float) mSpeed,
+                mTime);
+        return true;
+    }
+
+    /**
+     * Value of a numeric attribute of the current tag, or NaN if it is missing.
+     */
+    private double attribute(String name) {
+        int n = name.length();
+        for (int i = 0; i + n + 2 < mTagLength; i++) {
+            if (mTag[i] > ' ' || !nameIs(i + 1, i + 1 + n, name)) {
+                continue;
+            }
+            int j = i + 1 + n;
+            while (j < mTagLength && mTag[j] <= ' ') j++;
+            if (j >= mTagLength || mTag[j] != '=') {
+                continue;
+            }
+            j++;
+            while (j < mTagLength && mTag[j] <= ' ') j++;
+            if (j >= mTagLength || (mTag[j] != '"' && mTag[j] != '\'')) {
+                continue;
+            }
+            char quote = mTag[j];
+            int start = j + 1;
+            int end = start;
+            while (end < mTagLength && mTag[end] != quote) end++;
+            return TraceParser.parseDouble(mTag, start, end);
+        }
+        return Double.NaN;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mInput.close();
+    }
+}
@@ -0,0 +1,183 @@
+package com.ac.srikar.mylocation.location.replay;
+
+import com.ac.srikar.mylocation.location.Fix;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads NMEA 0183 logs. A fix is produced for every valid RMC sentence, which carries the
+ * date, time, position and speed. Altitude and accuracy are taken from the most recent GGA
+ * sentence, the accuracy being estimated from its horizontal dilution of precision.
+ * Sentences with a wrong checksum are skipped.
+ */
+public class NmeaTraceReader implements TraceReader {
+
+    // Meters of horizontal error per unit of HDOP.
+    private static final float METERS_PER_HDOP = 5f;
+
+    private static final double METERS_PER_SECOND_PER_KNOT = 0.514444;
+
+    private static final int MAX_FIELDS = 20;
+
+    private final TraceInput mInput;
+    private final int[] mFieldStart = new int[MAX_FIELDS];
+    private final int[] mFieldEnd = new int[MAX_FIELDS];
+    private int mFieldCount;
+
+    // Values of the last GGA sentence.
+    private double mAltitude = 0;
+    private float mAccuracy = DEFAULT_ACCURACY;
+
+    public NmeaTraceReader(Reader reader) {
+        mInput = new TraceInput(reader);
+    }
+
+    @Override
+    public boolean next(Fix fix) throws IOException {
+        while (mInput.readLine()) {
+            char[] line = mInput.line;
+            int length = stripChecksum(line, mInput.lineLength);
+            if (length < 7 || line[0] != '$') {
+                continue;
+            }
+            split(line, length);
+            if (isSentence(line, 'G', 'G', 'A')) {
+                parseGga(line);
+            } else if (isSentence(line, 'R', 'M', 'C') && parseRmc(line, fix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Verify and remove the "*hh" checksum suffix.
+     *
+     * @return the length of the sentence without checksum, or -1 if the checksum is wrong
+     */
+    private static int stripChecksum(char[] line, int length) {
+        int star = -1;
+        for (int i = length - 1; i > 0 && i >= length - 4; i--) {
+            if (line[i] == '*') {
+                star = i;
+                break;
+            }
+        }
+        if (star < 0) {
+            return length;
+        }
+        int checksum = 0;
+        for (int i = 1; i < star; i++) {
+            checksum ^= line[i];
+        }
+        int expected = 0;
+        for (int i = star + 1; i < length; i++) {
+            int digit = Character.digit(line[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            expected = expected * 16 + digit;
+        }
+        return checksum == expected ? star : -1;
+    }
+
+    private void split(char[] line, int length) {
+        mFieldCount = 0;
+        int start = 0;
+        for (int i = 0; i <= length && mFieldCount < MAX_FIELDS; i++) {
+            if (i == length || line[i] == ',') {
+                mFieldStart[mFieldCount] = start;
+                mFieldEnd[mFieldCount] = i;
+                mFieldCount++;
+                start = i + 1;
+            }
+        }
+    }
+
+    private boolean isSentence(char[] line, char a, char b, char c) {
+        // "$GPRMC", "$GNRMC", ... the talker id is ignored.
+        return mFieldEnd[0] == 6 && line[3] == a && line[4] == b && line[5] == c;
+    }
+
+    private void parseGga(char[] line) {
+        if (mFieldCount < 12) {
+            return;
+        }
+        double hdop = field(line, 8);
+        double altitude = field(line, 9);
+        double geoidSeparation = field(line, 11);
+        if (!Double.isNaN(hdop)) {
+            mAccuracy = (float) (hdop * METERS_PER_HDOP);
+        }
+        if (!Double.isNaN(altitude)) {
+            // Location altitudes are relative to the ellipsoid, GGA to mean sea level.
+            mAltitude = altitude + (Double.isNaN(geoidSeparation) ? 0 : geoidSeparation);
+        }
+    }
+
+    private boolean parseRmc(char[] line, Fix fix) {
+        if (mFieldCount < 10 || mFieldEnd[2] - mFieldStart[2] != 1
+                || line[mFieldStart[2]] != 'A') {
+            return false;
+        }
+        double latitude = coordinate(line, 3, 'S');
+        double longitude = coordinate(line, 5, 'W');
+        long time = time(line, mFieldStart[1], mFieldEnd[1], mFieldStart[9], mFieldEnd[9]);
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)
+                || time == TraceParser.INVALID_TIME) {
+            return false;
+        }
+        double knots = field(line, 7);
+        float speed = Double.isNaN(knots) ? 0f : (float) (knots * METERS_PER_SECOND_PER_KNOT);
+        fix.set(latitude, longitude, mAccuracy, mAltitude, speed, time);
+        return true;
+    }
+
+    private double field(char[] line, int index) {
+        return TraceParser.parseDouble(line, mFieldStart[index], mFieldEnd[index]);
+    }
+
+    /**
+     * Convert a "ddmm.mmmm" field followed by a hemisphere field to signed degrees.
+     */
+    private double coordinate(char[] line, int index, char negativeHemisphere) {
+        double value = field(line, index);
+        if (Double.isNaN(value) || mFieldEnd[index + 1] - mFieldStart[index + 1] != 1) {
+            return Double.NaN;
+        }
+        double degrees = Math.floor(value / 100);
+        double result = degrees + (value - degrees * 100) / 60;
+        return line[mFieldStart[index + 1]] == negativeHemisphere ? -result : result;
+    }
+
+    /**
+     * Combine an "hhmmss.ss" time field and a "ddmmyy" date field into epoch milliseconds.
+     */
+    private static long time(char[] line, int timeStart, int timeEnd, int dateStart,
+                             int dateEnd) {
+        if (timeEnd - timeStart < 6 || dateEnd - dateStart != 6) {
+            return TraceParser.INVALID_TIME;
+        }
+        int hour = TraceParser.parseDigits(line, timeStart, timeStart + 2);
+        int minute = TraceParser.parseDigits(line, timeStart + 2, timeStart + 4);
+        double second = TraceParser.parseDouble(line, timeStart + 4, timeEnd);
+        int day = TraceParser.parseDigits(line, dateStart, dateStart + 2);
+        int month = TraceParser.parseDigits(line, dateStart + 2, dateStart + 4);
+        int year = TraceParser.parseDigits(line, dateStart + 4, dateStart + 6);
+        if (hour < 0 || minute < 0 || Double.isNaN(second) || day < 1 || month < 1
+                || month > 12 || year < 0) {
+            return TraceParser.INVALID_TIME;
+        }
+        // Two digit years: 80-99 are 19xx, the rest 20xx.
+        year += year < 80 ? 2000 : 1900;
+        long days = TraceParser.daysFromCivil(year, month, day);
+        return (days * 86400L + hour * 3600L + minute * 60L) * 1000L
+                + Math.round(second * 1000);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mInput.close();
+    }
+}
@@ -0,0 +1,178 @@
+package com.ac.srikar.mylocation.location.replay;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.LocationSource;
+
+import java.io.IOException;
+
+/**
+ * LocationSource that replays a recorded trace.
+ * <p>
+ * Fixes are delivered with the time gaps of the recording divided by the speed-up factor,
+ * or back to back with {@link #AS_FAST_AS_POSSIBLE}. The replay is deterministic: the same
+ * trace always produces the same fixes in the same order, which makes it usable for load
+ * tests and profiling on a plain JVM.
+ * <p>
+ * {@link #start()} replays on a background thread; {@link #replay()} replays on the calling
+ * thread. Stopping pauses the replay, starting again resumes after the last delivered fix.
+ */
+public class ReplayLocationSource implements LocationSource {
+
+    /**
+     * Receives the outcome of a background replay.
+     */
+    public interface CompletionListener {
+
+        /**
+         * Called on the replay thread after the last fix, or when reading the trace failed.
+         * Not called when the replay is stopped before the end of the trace.
+         *
+         * @param error null if the whole trace was replayed
+         */
+        void onReplayFinished(long fixCount, IOException error);
+    }
+
+    // Speed-up factor that delivers fixes without waiting.
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    private final TraceReader mReader;
+    private final double mSpeedUp;
+    private final Fix mFix = new Fix();
+    private Callback mCallback;
+    private CompletionListener mCompletionListener;
+    private Thread mThread;
+    private volatile boolean mStopped = false;
+    private volatile boolean mFinished = false;
+
+    // Whether mFix was read from the trace but not delivered yet.
+    private boolean mHasPendingFix = false;
+
+    /**
+     * @param speedUp how many times faster than recorded to replay, e.g. 1 for real time
+     */
+    public ReplayLocationSource(TraceReader reader, double speedUp) {
+        if (!(speedUp > 0)) {
+            throw new IllegalArgumentException("Invalid speed-up: " + speedUp);
+        }
+        mReader = reader;
+        mSpeedUp = speedUp;
+    }
+
+    @Override
+    public void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    public void setCompletionListener(CompletionListener listener) {
+        mCompletionListener = listener;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (mThread != null) {
+            // Still running, or stopped and about to exit.
+            joinQuietly(mThread);
+        }
+        mStopped = false;
+        mThread = new Thread("LocationReplay") {
+            @Override
+            public void run() {
+                long count = 0;
+                IOException error = null;
+                try {
+                    count = replay();
+                } catch (IOException e) {
+                    error = e;
+                } catch (InterruptedException e) {
+                    // Stopped while waiting for the next fix.
+                    return;
+                }
+                if (mCompletionListener != null && (error != null || mFinished)) {
+                    mCompletionListener.onReplayFinished(count, error);
+                }
+            }
+        };
+        mThread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        mStopped = true;
+        if (mThread != null) {
+            mThread.interrupt();
+        }
+    }
+
+    private static void joinQuietly(Thread thread) {
+        thread.interrupt();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Whether the whole trace has been replayed.
+     */
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * Replay the trace on the calling thread until it ends or {@link #stop()} is called.
+     * The reader is closed at the end of the trace or when reading fails.
+     *
+     * @return the number of fixes delivered by this call
+     */
+    public long replay() throws IOException, InterruptedException {
+        long count = 0;
+        long firstFixTime = 0;
+        long startNanos = 0;
+        boolean closeReader = true;
+        try {
+            while (!mStopped) {
+                if (!mHasPendingFix) {
+                    if (!mReader.next(mFix)) {
+                        mFinished = true;
+                        break;
+                    }
+                    mHasPendingFix = true;
+                }
+                if (count == 0) {
+                    firstFixTime = mFix.time;
+                    startNanos = System.nanoTime();
+                } else if (mSpeedUp != AS_FAST_AS_POSSIBLE) {
+                    long dueNanos = startNanos
+                            + (long) ((mFix.time - firstFixTime) * 1e6 / mSpeedUp);
+                    long waitNanos = dueNanos - System.nanoTime();
+                    if (waitNanos > 0) {
+                        Thread.sleep(waitNanos / 1000000, (int) (waitNanos % 1000000));
+                    }
+                }
+                mHasPendingFix = false;
+                mCallback.onFix(mFix);
+                count++;
+            }
+            closeReader = mFinished;
+            return count;
+        } catch (InterruptedException e) {
+            // Paused by stop(), the pending fix is delivered when the replay resumes.
+            closeReader = false;
+            if (mStopped) {
+                return count;
+            }
+            throw e;
+        } finally {
+            if (closeReader) {
+                mReader.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.ac.srikar.mylocation.location.replay;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Buffered character input with line and character access that does not allocate per read.
+ */
+class TraceInput {
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[8192];
+    private int mPosition = 0;
+    private int mLimit = 0;
+
+    // Current line, valid after readLine() returned true.
+    char[] line = new char[256];
+    int lineLength = 0;
+
+    TraceInput(Reader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * Next character, or -1 at the end of the input.
+     */
+    int read() throws IOException {
+        if (mPosition == mLimit) {
+            mLimit = mReader.read(mBuffer, 0, mBuffer.length);
+            mPosition = 0;
+            if (mLimit <= 0) {
+                mLimit = 0;
+                return -1;
+            }
+        }
+        return mBuffer[mPosition++];
+    }
+
+    /**
+     * Read the next line into {@link #line}, without the line terminator.
+     *
+     * @return false at the end of the input
+     */
+    boolean readLine() throws IOException {
+        lineLength = 0;
+        int c = read();
+        if (c == -1) {
+            return false;
+        }
+        while (c != -1 && c != '\n') {
+            if (c != '\r') {
+                append((char) c);
+            }
+            c = read();
+        }
+        return true;
+    }
+
+    private void append(char c) {
+        if (lineLength == line.length) {
+            char[] grown = new char[line.length * 2];
+            System.arraycopy(line, 0, grown, 0, lineLength);
+            line = grown;
+        }
+        line[lineLength++] = c;
+    }
+
+    void close() throws IOException {
+        mReader.close();
+    }
+}
@@ -0,0 +1,179 @@
+package com.ac.srikar.mylocation.location.replay;
+
+/**
+ * Allocation-free parsing of the numbers and timestamps found in trace files.
+ */
+final class TraceParser {
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Returned by parseIsoTime() when the text is not a timestamp.
+    static final long INVALID_TIME = Long.MIN_VALUE;
+
+    private TraceParser() {
+    }
+
+    /**
+     * Parse a decimal number such as "-122.0840575" or "1.5e3" in {@code s[start, end)}.
+     * Surrounding blanks are ignored.
+     *
+     * @return the value, or NaN if the text is empty or not a number
+     */
+    static double parseDouble(char[] s, int start, int end) {
+        while (start < end && s[start] <= ' ') start++;
+        while (end > start && s[end - 1] <= ' ') end--;
+        if (start == end) {
+            return Double.NaN;
+        }
+        int i = start;
+        boolean negative = false;
+        if (s[i] == '-' || s[i] == '+') {
+            negative = s[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            char c = s[i];
+            if (c >= '0' && c <= '9') {
+                if (mantissa < 100000000000000000L) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (seenPoint) exponent--;
+                } else if (!seenPoint) {
+                    exponent++;
+                }
+                digits++;
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (i < end && (s[i] == 'e' || s[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (s[i] == '-' || s[i] == '+')) {
+                negativeExponent = s[i] == '-';
+                i++;
+            }
+            int value = 0;
+            int exponentDigits = 0;
+            for (; i < end && s[i] >= '0' && s[i] <= '9'; i++) {
+                value = Math.min(value * 10 + (s[i] - '0'), 10000);
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return Double.NaN;
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (i != end) {
+            return Double.NaN;
+        }
+        double result;
+        if (exponent == 0) {
+            result = mantissa;
+        } else if (exponent < 0 && -exponent < POW10.length) {
+            result = mantissa / POW10[-exponent];
+        } else if (exponent > 0 && exponent < POW10.length) {
+            result = mantissa * POW10[exponent];
+        } else {
+            result = mantissa * Math.pow(10, exponent);
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * Parse a non-negative integer of exactly {@code end - start} digits.
+     *
+     * @return the value, or -1 if a character is not a digit
+     */
+    static int parseDigits(char[] s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Days since 1970-01-01 of the given proleptic Gregorian date.
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Parse an ISO 8601 timestamp such as "2016-03-04T09:09:57Z" or
+     * "2016-03-04T14:39:57.250+05:30". A missing zone designator is read as UTC.
+     *
+     * @return epoch milliseconds, or {@link #INVALID_TIME}
+     */
+    static long parseIsoTime(char[] s, int start, int end) {
+        while (start < end && s[start] <= ' ') start++;
+        while (end > start && s[end - 1] <= ' ') end--;
+        if (end - start < 19 || s[start + 4] != '-' || s[start + 7] != '-'
+                || (s[start + 10] != 'T' && s[start + 10] != ' ')
+                || s[start + 13] != ':' || s[start + 16] != ':') {
+            return INVALID_TIME;
+        }
+        int year = parseDigits(s, start, start + 4);
+        int month = parseDigits(s, start + 5, start + 7);
+        int day = parseDigits(s, start + 8, start + 10);
+        int hour = parseDigits(s, start + 11, start + 13);
+        int minute = parseDigits(s, start + 14, start + 16);
+        int second = parseDigits(s, start + 17, start + 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0
+                || minute < 0 || second < 0) {
+            return INVALID_TIME;
+        }
+        int i = start + 19;
+        int millis = 0;
+        if (i < end && s[i] == '.') {
+            i++;
+            int scale = 100;
+            for (; i < end && s[i] >= '0' && s[i] <= '9'; i++) {
+                millis += (s[i] - '0') * scale;
+                scale /= 10;
+            }
+        }
+        int offsetMinutes = 0;
+        if (i < end && (s[i] == '+' || s[i] == '-')) {
+            if (end - i != 6 || s[i + 3] != ':') {
+                return INVALID_TIME;
+            }
+            int offsetHours = parseDigits(s, i + 1, i + 3);
+            int offsetMins = parseDigits(s, i + 4, i + 6);
+            if (offsetHours < 0 || offsetMins < 0) {
+                return INVALID_TIME;
+            }
+            offsetMinutes = (offsetHours * 60 + offsetMins) * (s[i] == '-' ? -1 : 1);
+            i = end;
+        } else if (i < end && s[i] == 'Z') {
+            i++;
+        }
+        if (i != end) {
+            return INVALID_TIME;
+        }
+        long seconds = daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L
+                + second - offsetMinutes * 60L;
+        return seconds * 1000L + millis;
+    }
+}
@@ -0,0 +1,22 @@
+package com.ac.srikar.mylocation.location.replay;
+
+import com.ac.srikar.mylocation.location.Fix;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Streams the fixes of a recorded trace, oldest first.
+ */
+public interface TraceReader extends Closeable {
+
+    // Accuracy in meters assumed when a trace does not record one.
+    float DEFAULT_ACCURACY = 10f;
+
+    /**
+     * Read the next fix into {@code fix}.
+     *
+     * @return false at the end of the trace
+     */
+    boolean next(Fix fix) throws IOException;
+}
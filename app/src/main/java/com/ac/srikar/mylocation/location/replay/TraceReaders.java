@@ -0,0 +1,40 @@
+package com.ac.srikar.mylocation.location.replay;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Locale;
+
+/**
+ * Opens trace files with the reader matching their extension.
+ */
+public final class TraceReaders {
+
+    private static final String CHARSET = "UTF-8";
+
+    private TraceReaders() {
+    }
+
+    /**
+     * Open a ".csv", ".nmea" (or ".txt"/".log" NMEA log) or ".gpx" file.
+     *
+     * @throws IOException if the file cannot be opened or its format is unknown
+     */
+    public static TraceReader open(File file) throws IOException {
+        String name = file.getName().toLowerCase(Locale.US);
+        if (!(name.endsWith(".csv") || name.endsWith(".gpx") || name.endsWith(".nmea")
+                || name.endsWith(".txt") || name.endsWith(".log"))) {
+            throw new IOException("Unknown trace format: " + file);
+        }
+        Reader reader = new InputStreamReader(new FileInputStream(file), CHARSET);
+        if (name.endsWith(".csv")) {
+            return new CsvTraceReader(reader);
+        } else if (name.endsWith(".gpx")) {
+            return new GpxTraceReader(reader);
+        } else {
+            return new NmeaTraceReader(reader);
+        }
+    }
+}
@@ -0,0 +1,521 @@
+package com.ac.srikar.mylocation.recording;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.ac.srikar.mylocation.geocode.ReverseGeocoder;
+import com.ac.srikar.mylocation.geofence.GeofenceEngine;
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixEventBus;
+import com.ac.srikar.mylocation.location.FusedLocationSource;
+import com.ac.srikar.mylocation.location.IntervalScheduler;
+import com.ac.srikar.mylocation.location.KalmanFilter;
+import com.ac.srikar.mylocation.location.LocationPipeline;
+import com.ac.srikar.mylocation.location.LocationSource;
+import com.ac.srikar.mylocation.location.PipelineMetrics;
+import com.ac.srikar.mylocation.location.StationaryFilter;
+import com.ac.srikar.mylocation.location.UpdatePolicy;
+import com.ac.srikar.mylocation.location.replay.ReplayLocationSource;
+import com.ac.srikar.mylocation.location.replay.TraceReaders;
+import com.ac.srikar.mylocation.track.LastFixStore;
+import com.ac.srikar.mylocation.track.TrackRecorder;
+import com.ac.srikar.mylocation.track.TripStats;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationServices;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Owns the location subscription and everything that processes it, independently of any
+ * activity.
+ * <p>
+ * The tracker builds the {@link LocationPipeline} with its stages and event bus consumers,
+ * and the location source feeding it. While recording, updates run whether or not a
+ * {@link Viewer} is attached. Without a viewer the provider may hold fixes back and deliver
+ * them in bursts, see {@link #BACKGROUND_BATCH_WINDOW_MILLIS}. All methods must be called on
+ * the main thread.
+ */
+public class LocationTracker implements LocationPipeline.Listener,
+        GoogleApiClient.ConnectionCallbacks, IntervalScheduler.Listener,
+        GeofenceEngine.Listener, StationaryFilter.Listener, ReverseGeocoder.Listener {
+
+    private static final String LOG_TAG = LocationTracker.class.getSimpleName();
+
+    /**
+     * Passive view of the tracker, e.g. the visible activity.
+     */
+    public interface Viewer extends LocationPipeline.Listener {
+
+        /**
+         * Called on the main thread when recording starts or stops, also when stopped from
+         * the notification. A stop is reported once the track log holds the whole recording.
+         */
+        void onRecordingChanged(boolean recording);
+
+        /**
+         * Called on the main thread with the place of the newest fix, null if unknown.
+         */
+        void onPlaceChanged(String label);
+    }
+
+    // The desired interval for location updates until the IntervalScheduler adapts it.
+    public static final long UPDATE_INTERVAL_IN_MILLISECONDS = 5000;
+
+    // The fastest rate for active location updates.
+    public static final long FASTEST_UPDATE_INTERVAL_IN_MILLISECONDS =
+            UPDATE_INTERVAL_IN_MILLISECONDS / 2;
+
+    // Longest the provider may hold fixes back while recording with nobody watching.
+    public static final long BACKGROUND_BATCH_WINDOW_MILLIS = 60000;
+
+    private final Context mContext;
+
+    // Processes location fixes off the UI thread.
+    private final LocationPipeline mLocationPipeline;
+
+    // Live trip statistics, updated and reset for every recording on their event bus thread.
+    private final TripStats mTripStats = new TripStats();
+    private final FixEventBus.Subscription mTripStatsSubscription;
+
+    // Evaluates geofences against every processed fix on its event bus thread. Fences may be
+    // added from any thread.
+    private final GeofenceEngine mGeofenceEngine;
+
+    // Drops outliers and repeats of a parked device. Only touched on the pipeline thread.
+    private final StationaryFilter mStationaryFilter;
+
+    // Snapshot of the newest fix for the next cold start. Written on the pipeline thread.
+    private final LastFixStore mLastFixStore;
+
+    // Writes the track log and indexes its positions on its event bus thread.
+    private final TrackRecorder mTrackRecorder;
+    private final FixEventBus.Subscription mTrackRecorderSubscription;
+
+    private GoogleApiClient mGoogleApiClient;
+
+    // Delivers fixes to the pipeline.
+    private LocationSource mLocationSource;
+
+    // Same as mLocationSource unless a trace is replayed.
+    private volatile FusedLocationSource mFusedLocationSource;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Starts recording the fixes that follow on the track log thread.
+    private final Runnable mStartTrack = new Runnable() {
+        @Override
+        public void run() {
+            mTrackRecorder.setRecording(true);
+        }
+    };
+
+    // Writes the tail of a stopped recording on the track log thread, then tells the viewer.
+    private final Runnable mFlushTrack = new Runnable() {
+        @Override
+        public void run() {
+            mTrackRecorder.setRecording(false);
+            mTrackRecorder.flush();
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // Unless recording started again meanwhile
+                    if (mViewer != null && !mRecording) {
+                        mViewer.onRecordingChanged(false);
+                    }
+                }
+            });
+        }
+    };
+
+    // Label of the newest fix, from the ReverseGeocoder. Only touched on the main thread.
+    private String mPlaceLabel;
+
+    private Viewer mViewer;
+    private boolean mRecording = false;
+    private boolean mSourceStarted = false;
+
+    public LocationTracker(Context context) {
+        mContext = context;
+        mLocationPipeline = new LocationPipeline(this);
+        mLocationPipeline.getMetrics().setRequestedInterval(UPDATE_INTERVAL_IN_MILLISECONDS);
+        // Drop outliers and the repeats of a parked device before anything else runs
+        mStationaryFilter = new StationaryFilter(this);
+        mLocationPipeline.addStage(mStationaryFilter);
+        // Smooth the remaining fixes before the other stages look at them
+        mLocationPipeline.addStage(new KalmanFilter());
+        mLocationPipeline.addStage(new IntervalScheduler(UpdatePolicy.MOVING, this));
+        mLastFixStore = new LastFixStore(getLastFixFile(context));
+        mLocationPipeline.addStage(mLastFixStore);
+        // Observers that need not hold back the pipeline get their own thread
+        FixEventBus eventBus = mLocationPipeline.getEventBus();
+        mTripStatsSubscription = eventBus.subscribe("TripStats", mTripStats,
+                FixEventBus.Backpressure.BLOCK);
+        mGeofenceEngine = new GeofenceEngine(this);
+        // A skipped fix could miss an enter or exit
+        eventBus.subscribe("Geofences", mGeofenceEngine, FixEventBus.Backpressure.BLOCK);
+        mTrackRecorder = new TrackRecorder(getTrackDirectory(context));
+        mTrackRecorderSubscription = eventBus.subscribe("TrackLog", mTrackRecorder,
+                FixEventBus.Backpressure.BLOCK);
+        // Labels only matter for the newest fix, skipped fixes need no lookup
+        eventBus.subscribe("Places", new ReverseGeocoder(getPlaceIndexFile(context), this),
+                FixEventBus.Backpressure.DROP);
+    }
+
+    /**
+     * Directory of the recorded {@link com.ac.srikar.mylocation.track.TrackLog}.
+     */
+    public static File getTrackDirectory(Context context) {
+        return new File(context.getFilesDir(), "track");
+    }
+
+    /**
+     * File of the {@link LastFixStore} snapshot.
+     */
+    public static File getLastFixFile(Context context) {
+        return new File(context.getFilesDir(), "last-fix");
+    }
+
+    /**
+     * Offline {@link com.ac.srikar.mylocation.geocode.PlaceIndex} naming the fixes, built with
+     * {@link com.ac.srikar.mylocation.geocode.PlaceIndexWriter}. Places are not shown while
+     * the file does not exist.
+     */
+    public static File getPlaceIndexFile(Context context) {
+        return new File(context.getFilesDir(), "places.mlpi");
+    }
+
+    /**
+     * Use the fused location provider. Google Play services must be available.
+     */
+    public void createFusedSource() {
+        mGoogleApiClient = new GoogleApiClient.Builder(mContext)
+                .addConnectionCallbacks(this)
+                .addApi(LocationServices.API)
+                .build();
+        LocationRequest locationRequest = new LocationRequest();
+        locationRequest.setInterval(UPDATE_INTERVAL_IN_MILLISECONDS);
+        locationRequest.setFastestInterval(FASTEST_UPDATE_INTERVAL_IN_MILLISECONDS);
+        locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        mFusedLocationSource = new FusedLocationSource(mGoogleApiClient, locationRequest,
+                mLocationPipeline.getLooper());
+        mFusedLocationSource.setCallback(mLocationPipeline);
+        mLocationSource = mFusedLocationSource;
+    }
+
+    /**
+     * Replay a recorded trace (CSV, NMEA or GPX file) instead of using the fused location
+     * provider, e.g. for profiling.
+     */
+    public void createReplaySource(File trace, double speedUp) throws IOException {
+        mLocationSource = new ReplayLocationSource(TraceReaders.open(trace), speedUp);
+        mLocationSource.setCallback(mLocationPipeline);
+    }
+
+    public boolean hasLocationSource() {
+        return mLocationSource != null;
+    }
+
+    /**
+     * Start showing fixes to the viewer, replacing any previous one.
+     */
+    public void attach(Viewer viewer) {
+        mViewer = viewer;
+        viewer.onPlaceChanged(mPlaceLabel);
+        if (mFusedLocationSource != null) {
+            // Somebody is watching, deliver fixes as they come
+            mFusedLocationSource.setBatchWindow(0);
+        }
+        connect();
+    }
+
+    /**
+     * Stop showing fixes to the viewer. Recording, if any, goes on.
+     */
+    public void detach(Viewer viewer) {
+        if (mViewer != viewer) {
+            return;
+        }
+        mViewer = null;
+        if (mRecording) {
+            if (mFusedLocationSource != null) {
+                mFusedLocationSource.setBatchWindow(BACKGROUND_BATCH_WINDOW_MILLIS);
+            }
+        } else {
+            disconnect();
+        }
+        saveLastFix();
+    }
+
+    /**
+     * Stop showing fixes to a viewer that is being recreated, e.g. on rotation. Unlike
+     * {@link #detach(Viewer)}, updates go on unchanged until the next viewer attaches.
+     */
+    public void handOver(Viewer viewer) {
+        if (mViewer == viewer) {
+            mViewer = null;
+        }
+    }
+
+    public void startRecording() {
+        if (mRecording) {
+            return;
+        }
+        mRecording = true;
+        // A new trip starts after the fixes published so far
+        mTripStatsSubscription.post(new Runnable() {
+            @Override
+            public void run() {
+                mTripStats.reset();
+            }
+        });
+        // The track starts behind the fixes still queued for the pipeline, as it stops
+        mLocationPipeline.post(new Runnable() {
+            @Override
+            public void run() {
+                mTrackRecorderSubscription.post(mStartTrack);
+            }
+        });
+        if (mViewer == null && mFusedLocationSource != null) {
+            mFusedLocationSource.setBatchWindow(BACKGROUND_BATCH_WINDOW_MILLIS);
+        }
+        startSource();
+        if (mViewer != null) {
+            mViewer.onRecordingChanged(true);
+        }
+    }
+
+    /**
+     * Stop recording. The viewer is told once the track log holds every fix delivered until
+     * now, so the whole recording can be shared right away.
+     */
+    public void stopRecording() {
+        if (!mRecording) {
+            return;
+        }
+        mRecording = false;
+        stopSource();
+        if (mViewer == null) {
+            disconnect();
+        }
+        saveLastFix();
+        // Behind the fixes still queued for the pipeline, then behind those on the bus
+        mLocationPipeline.post(new Runnable() {
+            @Override
+            public void run() {
+                mTrackRecorderSubscription.post(mFlushTrack);
+            }
+        });
+    }
+
+    /**
+     * Ask the fused location provider for one fix, which the stationary filter lets through
+     * even if the device is parked.
+     *
+     * @return false if there is no fused source or its client is not connected
+     */
+    public boolean requestSingleUpdate() {
+        FusedLocationSource fusedLocationSource = getFusedLocationSource();
+        if (fusedLocationSource == null) {
+            return false;
+        }
+        // Runs before the answer, which is delivered on the pipeline thread too
+        mLocationPipeline.post(new Runnable() {
+            @Override
+            public void run() {
+                mStationaryFilter.passNext();
+            }
+        });
+        return fusedLocationSource.requestSingleUpdate();
+    }
+
+    public boolean isRecording() {
+        return mRecording;
+    }
+
+    private void startSource() {
+        if (mSourceStarted || mLocationSource == null) {
+            return;
+        }
+        if (mLocationSource == mFusedLocationSource && !mGoogleApiClient.isConnected()) {
+            // Started by onConnected()
+            connect();
+            return;
+        }
+        try {
+            mLocationSource.start();
+            mSourceStarted = true;
+        } catch (SecurityException e) {
+            Log.e(LOG_TAG, "No location permission", e);
+        }
+    }
+
+    private void stopSource() {
+        if (!mSourceStarted) {
+            return;
+        }
+        mSourceStarted = false;
+        if (mLocationSource != mFusedLocationSource || mGoogleApiClient.isConnected()) {
+            mLocationSource.stop();
+        }
+    }
+
+    private void connect() {
+        if (mGoogleApiClient != null && !mGoogleApiClient.isConnected()
+                && !mGoogleApiClient.isConnecting()) {
+            mGoogleApiClient.connect();
+        }
+    }
+
+    private void disconnect() {
+        if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
+            stopSource();
+            mGoogleApiClient.disconnect();
+        }
+    }
+
+    private void saveLastFix() {
+        mLocationPipeline.post(new Runnable() {
+            @Override
+            public void run() {
+                mLastFixStore.save();
+            }
+        });
+    }
+
+    /**
+     * Stop updates and the pipeline for good. Event bus consumers drain and close their
+     * storage.
+     */
+    public void quit() {
+        mRecording = false;
+        mViewer = null;
+        mMainHandler.removeCallbacksAndMessages(null);
+        stopSource();
+        disconnect();
+        saveLastFix();
+        mLocationPipeline.quit();
+    }
+
+    /**
+     * Null until {@link #createFusedSource()}.
+     */
+    public GoogleApiClient getGoogleApiClient() {
+        return mGoogleApiClient;
+    }
+
+    public LocationSource getLocationSource() {
+        return mLocationSource;
+    }
+
+    /**
+     * Null unless the fused location provider is used.
+     */
+    public FusedLocationSource getFusedLocationSource() {
+        return mLocationSource == mFusedLocationSource ? mFusedLocationSource : null;
+    }
+
+    public PipelineMetrics getMetrics() {
+        return mLocationPipeline.getMetrics();
+    }
+
+    public TripStats getTripStats() {
+        return mTripStats;
+    }
+
+    public TrackRecorder getTrackRecorder() {
+        return mTrackRecorder;
+    }
+
+    public GeofenceEngine getGeofenceEngine() {
+        return mGeofenceEngine;
+    }
+
+    /**
+     * Called on the main thread, at most once per frame, when the pipeline has processed a
+     * new fix.
+     */
+    @Override
+    public void onFixProcessed(Fix fix) {
+        if (mViewer != null) {
+            mViewer.onFixProcessed(fix);
+        }
+    }
+
+    /**
+     * Starts updates that were asked for while the client was not connected yet, and shows
+     * the last known location to the viewer. Runs once per connection, unlike the callbacks
+     * a viewer registers on an already connected client, e.g. after a rotation.
+     */
+    @Override
+    public void onConnected(Bundle bundle) {
+        if (mRecording) {
+            startSource();
+        }
+        FusedLocationSource fusedLocationSource = getFusedLocationSource();
+        if (mViewer != null && fusedLocationSource != null) {
+            try {
+                fusedLocationSource.deliverLastLocation();
+            } catch (SecurityException e) {
+                Log.e(LOG_TAG, "No location permission", e);
+            }
+        }
+    }
+
+    @Override
+    public void onConnectionSuspended(int cause) {
+        Log.i(LOG_TAG, "Connection suspended: " + cause);
+    }
+
+    /**
+     * Called on the pipeline thread when the observed movement calls for another update
+     * interval or priority.
+     */
+    @Override
+    public void onPolicyChanged(UpdatePolicy policy) {
+        Log.i(LOG_TAG, "Location update policy: " + policy);
+        mLocationPipeline.getMetrics().setRequestedInterval(policy.intervalMillis);
+        FusedLocationSource fusedLocationSource = mFusedLocationSource;
+        if (fusedLocationSource != null && mLocationSource == fusedLocationSource) {
+            fusedLocationSource.applyPolicy(policy);
+        }
+    }
+
+    /**
+     * Called on the geofence event bus thread when a fix enters, exits or dwells in a geofence.
+     */
+    @Override
+    public void onGeofenceTransition(int fenceId, int transition, Fix fix) {
+        Log.i(LOG_TAG, "Geofence " + fenceId + " transition " + transition + " at " + fix);
+    }
+
+    /**
+     * Called on the place event bus thread when the fixes enter another place.
+     */
+    @Override
+    public void onPlaceChanged(final String label) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlaceLabel = label;
+                if (mViewer != null) {
+                    mViewer.onPlaceChanged(label);
+                }
+            }
+        });
+    }
+
+    /**
+     * Called on the pipeline thread when the device leaves a place it was parked at.
+     */
+    @Override
+    public void onDwell(double latitude, double longitude, long startTime, long endTime,
+                        int fixCount) {
+        Log.i(LOG_TAG, "Dwell at " + latitude + "," + longitude + " for "
+                + (endTime - startTime) / 1000 + " s, " + fixCount + " fixes");
+    }
+}
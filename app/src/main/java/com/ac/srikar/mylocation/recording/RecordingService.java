@@ -0,0 +1,266 @@
+package com.ac.srikar.mylocation.recording;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Binder;
+import android.os.IBinder;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.content.ContextCompat;
+import android.util.Log;
+
+import com.ac.srikar.mylocation.R;
+import com.ac.srikar.mylocation.activity.MainActivity;
+import com.ac.srikar.mylocation.track.SpatialIndex;
+import com.ac.srikar.mylocation.track.TrackAnalytics;
+import com.ac.srikar.mylocation.track.TrackLogReader;
+import com.ac.srikar.mylocation.util.GeoMath;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GoogleApiAvailability;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Hosts the {@link LocationTracker}, so recording goes on with the screen off.
+ * <p>
+ * Activities bind to the service to view the tracker and unbind when they stop, but not
+ * when they are only recreated for a configuration change. While recording, the service is
+ * also started and runs in the foreground with a notification, which keeps it and the
+ * location subscription alive without any bound activity. Recording stops from the activity
+ * or from the notification.
+ * <p>
+ * {@code adb shell dumpsys activity service com.ac.srikar.mylocation/.recording.RecordingService}
+ * prints the pipeline latency metrics; pass {@code reset} to clear them afterwards,
+ * {@code nearest <latitude> <longitude>} to look up the logged fix nearest to a position,
+ * {@code analytics} for the distance per day, speeds and dwell places of the whole log, or
+ * {@code geofence <latitude> <longitude> <radius>} to add a circular geofence whose
+ * transitions are logged.
+ */
+public class RecordingService extends Service {
+
+    private static final String LOG_TAG = RecordingService.class.getSimpleName();
+
+    // Stops recording, sent by the notification.
+    public static final String ACTION_STOP_RECORDING =
+            "com.ac.srikar.mylocation.action.STOP_RECORDING";
+
+    private static final int NOTIFICATION_ID = 1;
+
+    // Farthest recorded fix the nearest dump reports.
+    private static final double NEAREST_MAX_DISTANCE_METERS = 100000;
+
+    /**
+     * Binder handed to activities in the same process.
+     */
+    public class LocalBinder extends Binder {
+        public RecordingService getService() {
+            return RecordingService.this;
+        }
+    }
+
+    private final IBinder mBinder = new LocalBinder();
+    private LocationTracker mTracker;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mTracker = new LocationTracker(this);
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return mBinder;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent == null) {
+            // Restarted after the process was killed while recording: resume without any UI
+            if (!mTracker.hasLocationSource() && GoogleApiAvailability.getInstance()
+                    .isGooglePlayServicesAvailable(this) == ConnectionResult.SUCCESS) {
+                mTracker.createFusedSource();
+            }
+            startRecording();
+        } else if (ACTION_STOP_RECORDING.equals(intent.getAction())) {
+            stopRecording();
+        }
+        return START_STICKY;
+    }
+
+    public LocationTracker getTracker() {
+        return mTracker;
+    }
+
+    /**
+     * Start recording in the foreground until {@link #stopRecording()}.
+     *
+     * @return false if there is no location source or no location permission
+     */
+    public boolean startRecording() {
+        if (!mTracker.hasLocationSource()) {
+            stopSelf();
+            return false;
+        }
+        // Also after a restart, the permission may have been revoked meanwhile
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED
+                && ContextCompat.checkSelfPermission(this,
+                Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            Log.w(LOG_TAG, "No location permission, not recording");
+            stopSelf();
+            return false;
+        }
+        // Started, the service outlives the activities bound to it
+        startService(new Intent(this, RecordingService.class));
+        startForeground(NOTIFICATION_ID, buildNotification());
+        mTracker.startRecording();
+        return true;
+    }
+
+    public void stopRecording() {
+        mTracker.stopRecording();
+        stopForeground(true);
+        // Keeps running while activities are bound
+        stopSelf();
+    }
+
+    private Notification buildNotification() {
+        Intent viewIntent = new Intent(this, MainActivity.class)
+                .setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        Intent stopIntent = new Intent(this, RecordingService.class)
+                .setAction(ACTION_STOP_RECORDING);
+        return new NotificationCompat.Builder(this)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle(getString(R.string.recording_notification_title))
+                .setContentText(getString(R.string.recording_notification_text))
+                .setContentIntent(PendingIntent.getActivity(this, 0, viewIntent,
+                        PendingIntent.FLAG_UPDATE_CURRENT))
+                .addAction(0, getString(R.string.action_stop_recording),
+                        PendingIntent.getService(this, 0, stopIntent,
+                                PendingIntent.FLAG_UPDATE_CURRENT))
+                .setOngoing(true)
+                .build();
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("recording=" + mTracker.isRecording());
+        if (args != null && args.length > 0 && "nearest".equals(args[0])) {
+            double latitude = args.length == 3 ? parseDouble(args[1]) : Double.NaN;
+            double longitude = args.length == 3 ? parseDouble(args[2]) : Double.NaN;
+            if (!isValidPosition(latitude, longitude)) {
+                writer.println("Usage: nearest <latitude> <longitude>");
+                return;
+            }
+            dumpNearest(writer, latitude, longitude);
+            return;
+        }
+        if (args != null && args.length > 0 && "geofence".equals(args[0])) {
+            double latitude = args.length == 4 ? parseDouble(args[1]) : Double.NaN;
+            double longitude = args.length == 4 ? parseDouble(args[2]) : Double.NaN;
+            double radius = args.length == 4 ? parseDouble(args[3]) : Double.NaN;
+            if (!isValidPosition(latitude, longitude) || !(radius > 0)
+                    || Double.isInfinite(radius)) {
+                writer.println("Usage: geofence <latitude> <longitude> <radius>");
+                return;
+            }
+            int id = mTracker.getGeofenceEngine().addCircle(latitude, longitude, radius);
+            writer.println("Geofence " + id + " added");
+            return;
+        }
+        if (args != null && args.length == 1 && "analytics".equals(args[0])) {
+            dumpAnalytics(writer);
+            return;
+        }
+        mTracker.getMetrics().dump(writer);
+        if (args != null && args.length > 0 && "reset".equals(args[0])) {
+            mTracker.getMetrics().reset();
+            writer.println("Metrics reset");
+        }
+    }
+
+    // Indexes the log only for this query, so no index is held between dumps.
+    private void dumpNearest(PrintWriter writer, double latitude, double longitude) {
+        SpatialIndex index = new SpatialIndex();
+        try {
+            index.addAll(TrackLogReader.open(mTracker.getTrackRecorder().getDirectory()));
+        } catch (IOException e) {
+            writer.println("Cannot read the track log: " + e.getMessage());
+            return;
+        }
+        int id = index.nearest(latitude, longitude, NEAREST_MAX_DISTANCE_METERS);
+        if (id < 0) {
+            writer.println("No recorded fix within " + NEAREST_MAX_DISTANCE_METERS + " m");
+        } else {
+            writer.println("Record " + id + " of " + index.size() + " at "
+                    + index.getLatitude(id) + "," + index.getLongitude(id) + ", "
+                    + Math.round(GeoMath.distance(latitude, longitude,
+                    index.getLatitude(id), index.getLongitude(id))) + " m away");
+        }
+    }
+
+    // Analyzes the whole log on the dumping thread; dumpsys waits for the output anyway.
+    private void dumpAnalytics(PrintWriter writer) {
+        TrackAnalytics.Result result;
+        try {
+            result = new TrackAnalytics(TimeZone.getDefault())
+                    .analyze(mTracker.getTrackRecorder().getDirectory());
+        } catch (IOException e) {
+            writer.println("Cannot read the track log: " + e.getMessage());
+            return;
+        }
+        writer.println("fixes=" + result.getFixCount() + " distance="
+                + Math.round(result.getDistance()) + " m");
+        // Days since the epoch in local time, printed as dates of that day
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        for (int i = 0; i < result.getDayCount(); i++) {
+            long day = result.getFirstDay() + i;
+            writer.println("  " + dateFormat.format(new Date(day * TrackAnalytics.DAY_MILLIS))
+                    + ": " + Math.round(result.getDayDistance(i)) + " m");
+        }
+        long[] speedHistogram = result.getSpeedHistogram();
+        for (int i = 0; i < speedHistogram.length; i++) {
+            if (speedHistogram[i] > 0) {
+                writer.println("  speed " + i * TrackAnalytics.SPEED_BIN_WIDTH + " m/s: "
+                        + speedHistogram[i] + " fixes");
+            }
+        }
+        writer.println("heatmap cells=" + result.getHeatmapSize());
+        for (int i = 0; i < result.getDwellSize(); i++) {
+            writer.println("  dwell at " + result.getDwellLatitude(i) + ","
+                    + result.getDwellLongitude(i) + ": "
+                    + result.getDwellMillis(i) / 60000 + " min");
+        }
+    }
+
+    /**
+     * @return the number, or NaN if {@code value} is not one
+     */
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean isValidPosition(double latitude, double longitude) {
+        return latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180;
+    }
+
+    @Override
+    public void onDestroy() {
+        mTracker.quit();
+        super.onDestroy();
+    }
+}
@@ -0,0 +1,277 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.BatchFixStage;
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixBatch;
+
+/**
+ * Bounded ring buffer of location fixes stored as parallel primitive arrays.
+ * <p>
+ * Every fix gets a monotonically increasing sequence number. Once the buffer is full the
+ * oldest fix is overwritten, so only the last {@link #capacity()} sequences stay readable.
+ * Appending and reading never allocate.
+ * <p>
+ * The buffer is not thread safe; it must be written and read from a single thread, normally
+ * the {@link com.ac.srikar.mylocation.location.LocationPipeline} thread.
+ */
+public class FixHistory implements BatchFixStage {
+
+    // Default number of fixes kept in memory.
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    // Fix columns, indexed by (sequence & mMask).
+    private final double[] mLatitude;
+    private final double[] mLongitude;
+    private final float[] mAccuracy;
+    private final double[] mAltitude;
+    private final float[] mSpeed;
+    private final long[] mTime;
+
+    private final int mMask;
+
+    // Sequence number the next appended fix will get.
+    private long mNextSequence = 0;
+
+    // Sequences below this value were dropped by clear().
+    private long mFirstSequenceFloor = 0;
+
+    /**
+     * Creates a history holding {@link #DEFAULT_CAPACITY} fixes.
+     */
+    public FixHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a history holding at least {@code capacity} fixes. The capacity is rounded up
+     * to the next power of two.
+     */
+    public FixHistory(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mMask = size - 1;
+        mLatitude = new double[size];
+        mLongitude = new double[size];
+        mAccuracy = new float[size];
+        mAltitude = new double[size];
+        mSpeed = new float[size];
+        mTime = new long[size];
+    }
+
+    /**
+     * Appends a fix and returns its sequence number.
+     */
+    public long add(double latitude, double longitude, float accuracy, double altitude,
+                    float speed, long time) {
+        long sequence = mNextSequence;
+        int i = (int) (sequence & mMask);
+        mLatitude[i] = latitude;
+        mLongitude[i] = longitude;
+        mAccuracy[i] = accuracy;
+        mAltitude[i] = altitude;
+        mSpeed[i] = speed;
+        mTime[i] = time;
+        mNextSequence = sequence + 1;
+        return sequence;
+    }
+
+    /**
+     * Appends the fix as a pipeline stage. Never drops it.
+     */
+    @Override
+    public boolean onFix(Fix fix) {
+        add(fix.latitude, fix.longitude, fix.accuracy, fix.altitude, fix.speed, fix.time);
+        return true;
+    }
+
+    @Override
+    public void onFixes(FixBatch batch) {
+        for (int i = 0, n = batch.size(); i < n; i++) {
+            add(batch.latitude[i], batch.longitude[i], batch.accuracy[i], batch.altitude[i],
+                    batch.speed[i], batch.time[i]);
+        }
+    }
+
+    /**
+     * Drops every stored fix. Sequence numbers keep increasing.
+     */
+    public void clear() {
+        mFirstSequenceFloor = mNextSequence;
+    }
+
+    public int capacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * Number of fixes currently readable.
+     */
+    public int size() {
+        return (int) (mNextSequence - firstSequence());
+    }
+
+    public boolean isEmpty() {
+        return mNextSequence == firstSequence();
+    }
+
+    /**
+     * Sequence number of the oldest readable fix.
+     */
+    public long firstSequence() {
+        return Math.max(mFirstSequenceFloor, mNextSequence - capacity());
+    }
+
+    /**
+     * Sequence number of the newest fix, or -1 if the history is empty.
+     */
+    public long lastSequence() {
+        return isEmpty() ? -1 : mNextSequence - 1;
+    }
+
+    /**
+     * Whether the fix with the given sequence number is still stored.
+     */
+    public boolean contains(long sequence) {
+        return sequence >= firstSequence() && sequence < mNextSequence;
+    }
+
+    public double getLatitude(long sequence) {
+        return mLatitude[index(sequence)];
+    }
+
+    public double getLongitude(long sequence) {
+        return mLongitude[index(sequence)];
+    }
+
+    public float getAccuracy(long sequence) {
+        return mAccuracy[index(sequence)];
+    }
+
+    public double getAltitude(long sequence) {
+        return mAltitude[index(sequence)];
+    }
+
+    public float getSpeed(long sequence) {
+        return mSpeed[index(sequence)];
+    }
+
+    public long getTime(long sequence) {
+        return mTime[index(sequence)];
+    }
+
+    private int index(long sequence) {
+        if (!contains(sequence)) {
+            throw new IndexOutOfBoundsException("Sequence " + sequence + " not in ["
+                    + firstSequence() + ", " + mNextSequence + ")");
+        }
+        return (int) (sequence & mMask);
+    }
+
+    /**
+     * Copies up to {@code count} fixes starting at {@code fromSequence} into the given arrays.
+     * Any array may be null when that column is not needed. Sequences that were already
+     * overwritten are skipped.
+     *
+     * @return the number of fixes copied
+     */
+    public int readWindow(long fromSequence, int count, double[] latitude, double[] longitude,
+                          float[] accuracy, double[] altitude, float[] speed, long[] time) {
+        long start = Math.max(fromSequence, firstSequence());
+        int n = (int) Math.max(0, Math.min(count, mNextSequence - start));
+        for (int k = 0; k < n; k++) {
+            int i = (int) ((start + k) & mMask);
+            if (latitude != null) {
+                latitude[k] = mLatitude[i];
+            }
+            if (longitude != null) {
+                longitude[k] = mLongitude[i];
+            }
+            if (accuracy != null) {
+                accuracy[k] = mAccuracy[i];
+            }
+            if (altitude != null) {
+                altitude[k] = mAltitude[i];
+            }
+            if (speed != null) {
+                speed[k] = mSpeed[i];
+            }
+            if (time != null) {
+                time[k] = mTime[i];
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Creates a cursor positioned before the oldest stored fix. Cursors can be reused with
+     * {@link Cursor#seek(long)} to avoid allocating on every scan.
+     */
+    public Cursor newCursor() {
+        Cursor cursor = new Cursor();
+        cursor.seek(firstSequence());
+        return cursor;
+    }
+
+    /**
+     * Forward-only view over the history. If the writer laps the cursor, the cursor skips
+     * ahead to the oldest fix that is still stored.
+     */
+    public class Cursor {
+        private long mSequence;
+        private int mIndex;
+
+        /**
+         * Positions the cursor so that the next call to {@link #moveToNext()} lands on
+         * {@code sequence} (or the oldest stored fix if it was overwritten).
+         */
+        public void seek(long sequence) {
+            mSequence = sequence - 1;
+        }
+
+        /**
+         * Advances to the next fix. Returns false when there are no more fixes.
+         */
+        public boolean moveToNext() {
+            long next = Math.max(mSequence + 1, firstSequence());
+            if (next >= mNextSequence) {
+                return false;
+            }
+            mSequence = next;
+            mIndex = (int) (next & mMask);
+            return true;
+        }
+
+        public long getSequence() {
+            return mSequence;
+        }
+
+        public double getLatitude() {
+            return mLatitude[mIndex];
+        }
+
+        public double getLongitude() {
+            return mLongitude[mIndex];
+        }
+
+        public float getAccuracy() {
+            return mAccuracy[mIndex];
+        }
+
+        public double getAltitude() {
+            return mAltitude[mIndex];
+        }
+
+        public float getSpeed() {
+            return mSpeed[mIndex];
+        }
+
+        public long getTime() {
+            return mTime[mIndex];
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.ac.srikar.mylocation.track;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Streams fixes as a GeoJSON Feature with a LineString geometry.
+ * <p>
+ * Positions are {@code [longitude, latitude]}, with the elevation as third value when known.
+ * GeoJSON has no per position time, so the properties after the geometry carry the start and
+ * end time and the number of fixes instead; they are known once the last fix was written.
+ */
+public class GeoJsonWriter extends TrackTextWriter {
+
+    public static final String MIME_TYPE = "application/geo+json";
+
+    private static final byte[] HEADER = ascii("{\"type\":\"Feature\",\"geometry\":"
+            + "{\"type\":\"LineString\",\"coordinates\":[");
+    private static final byte[] POSITION_START = ascii("\n[");
+    private static final byte[] NEXT_POSITION_START = ascii(",\n[");
+    private static final byte[] COMMA = ascii(",");
+    private static final byte[] POSITION_END = ascii("]");
+    private static final byte[] PROPERTIES = ascii("]},\n\"properties\":{\"name\":\"My Location\"");
+    private static final byte[] START_TIME = ascii(",\"startTime\":\"");
+    private static final byte[] END_TIME = ascii("\",\"endTime\":\"");
+    private static final byte[] COUNT = ascii("\",\"count\":");
+    private static final byte[] EMPTY_COUNT = ascii(",\"count\":");
+    private static final byte[] FOOTER = ascii("}}\n");
+
+    private long mStartTime;
+    private long mEndTime;
+
+    public GeoJsonWriter(WritableByteChannel channel) {
+        super(channel);
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        append(HEADER);
+    }
+
+    @Override
+    protected void writeFix(long index, double latitude, double longitude, float accuracy,
+                            double altitude, float speed, long time) throws IOException {
+        if (index == 0) {
+            mStartTime = time;
+            append(POSITION_START);
+        } else {
+            append(NEXT_POSITION_START);
+        }
+        mEndTime = time;
+        appendFixed(longitude, COORDINATE_DECIMALS);
+        append(COMMA);
+        appendFixed(latitude, COORDINATE_DECIMALS);
+        // An altitude of exactly 0 means the provider had none
+        if (altitude != 0) {
+            append(COMMA);
+            appendFixed(altitude, ALTITUDE_DECIMALS);
+        }
+        append(POSITION_END);
+    }
+
+    @Override
+    protected void writeFooter(long count) throws IOException {
+        append(PROPERTIES);
+        if (count > 0) {
+            append(START_TIME);
+            appendIsoTime(mStartTime);
+            append(END_TIME);
+            appendIsoTime(mEndTime);
+            append(COUNT);
+        } else {
+            append(EMPTY_COUNT);
+        }
+        appendLong(count);
+        append(FOOTER);
+    }
+}
@@ -0,0 +1,60 @@
+package com.ac.srikar.mylocation.track;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Streams fixes as a GPX 1.1 track with a single segment.
+ * <p>
+ * Each fix becomes a {@code trkpt} with its time and, when known, its elevation. GPX 1.1 has
+ * no element for accuracy or speed, so those are left out.
+ */
+public class GpxWriter extends TrackTextWriter {
+
+    public static final String MIME_TYPE = "application/gpx+xml";
+
+    private static final byte[] HEADER = ascii("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<gpx version=\"1.1\" creator=\"My Location\""
+            + " xmlns=\"http://www.topografix.com/GPX/1/1\">\n"
+            + "<trk>\n<trkseg>\n");
+    private static final byte[] POINT_LATITUDE = ascii("<trkpt lat=\"");
+    private static final byte[] POINT_LONGITUDE = ascii("\" lon=\"");
+    private static final byte[] ELEVATION = ascii("\"><ele>");
+    private static final byte[] TIME_AFTER_ELEVATION = ascii("</ele><time>");
+    private static final byte[] TIME = ascii("\"><time>");
+    private static final byte[] POINT_END = ascii("</time></trkpt>\n");
+    private static final byte[] FOOTER = ascii("</trkseg>\n</trk>\n</gpx>\n");
+
+    public GpxWriter(WritableByteChannel channel) {
+        super(channel);
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        append(HEADER);
+    }
+
+    @Override
+    protected void writeFix(long index, double latitude, double longitude, float accuracy,
+                            double altitude, float speed, long time) throws IOException {
+        append(POINT_LATITUDE);
+        appendFixed(latitude, COORDINATE_DECIMALS);
+        append(POINT_LONGITUDE);
+        appendFixed(longitude, COORDINATE_DECIMALS);
+        // An altitude of exactly 0 means the provider had none
+        if (altitude != 0) {
+            append(ELEVATION);
+            appendFixed(altitude, ALTITUDE_DECIMALS);
+            append(TIME_AFTER_ELEVATION);
+        } else {
+            append(TIME);
+        }
+        appendIsoTime(time);
+        append(POINT_END);
+    }
+
+    @Override
+    protected void writeFooter(long count) throws IOException {
+        append(FOOTER);
+    }
+}
@@ -0,0 +1,145 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.BatchFixStage;
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixBatch;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the newest fix in a tiny file so that the next cold start can show it before any
+ * location provider is connected.
+ * <p>
+ * The file is a single checksummed record. It is replaced atomically through a rename, so a
+ * reader sees either the old or the new fix. As a {@link BatchFixStage} the store remembers
+ * every fix but only writes every {@link #SAVE_INTERVAL_MILLIS} ms of fix time; call
+ * {@link #save()} when the app goes to the background to write the newest one.
+ * {@link #load(Fix)} may be called from any thread, the other methods from the pipeline
+ * thread.
+ */
+public class LastFixStore implements BatchFixStage {
+
+    static final int MAGIC = 0x5846544C; // "LTFX" when read as bytes
+
+    // Magic, latitude, longitude, altitude, time, accuracy, speed, CRC32 of the fields before.
+    static final int SIZE = 4 + 8 + 8 + 8 + 8 + 4 + 4 + 4;
+
+    // Minimum fix time between two writes.
+    public static final long SAVE_INTERVAL_MILLIS = 10000;
+
+    private final File mFile;
+    private final File mTempFile;
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final Fix mLatest = new Fix();
+    private final Fix mBatchFix = new Fix();
+    private boolean mHasUnsaved = false;
+    private long mLastSaveTime = Long.MIN_VALUE;
+
+    public LastFixStore(File file) {
+        mFile = file;
+        mTempFile = new File(file.getPath() + ".tmp");
+    }
+
+    /**
+     * Read the stored fix into {@code fix}.
+     *
+     * @return false if there is none or it is damaged
+     */
+    public boolean load(Fix fix) {
+        if (!mFile.isFile()) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            RandomAccessFile file = new RandomAccessFile(mFile, "r");
+            try {
+                file.readFully(buffer.array());
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(SIZE - 4) != checksum(buffer)) {
+            return false;
+        }
+        buffer.position(4);
+        double latitude = buffer.getDouble();
+        double longitude = buffer.getDouble();
+        double altitude = buffer.getDouble();
+        long time = buffer.getLong();
+        float accuracy = buffer.getFloat();
+        float speed = buffer.getFloat();
+        fix.set(latitude, longitude, accuracy, altitude, speed, time);
+        return true;
+    }
+
+    @Override
+    public boolean onFix(Fix fix) {
+        mLatest.set(fix);
+        mHasUnsaved = true;
+        if (mLastSaveTime == Long.MIN_VALUE
+                || fix.time - mLastSaveTime >= SAVE_INTERVAL_MILLIS) {
+            save();
+        }
+        return true;
+    }
+
+    /**
+     * Only the newest fix of a batch matters.
+     */
+    @Override
+    public void onFixes(FixBatch batch) {
+        if (batch.size() > 0) {
+            onFix(batch.get(batch.size() - 1, mBatchFix));
+        }
+    }
+
+    /**
+     * Write the newest fix if it was not written yet. Errors are ignored, the store is only a
+     * cache.
+     */
+    public void save() {
+        if (!mHasUnsaved) {
+            return;
+        }
+        mHasUnsaved = false;
+        mLastSaveTime = mLatest.time;
+        ByteBuffer buffer = mBuffer;
+        buffer.clear();
+        buffer.putInt(MAGIC)
+                .putDouble(mLatest.latitude)
+                .putDouble(mLatest.longitude)
+                .putDouble(mLatest.altitude)
+                .putLong(mLatest.time)
+                .putFloat(mLatest.accuracy)
+                .putFloat(mLatest.speed);
+        buffer.putInt(checksum(buffer));
+        try {
+            FileOutputStream out = new FileOutputStream(mTempFile);
+            try {
+                out.write(buffer.array(), 0, SIZE);
+            } finally {
+                out.close();
+            }
+            if (!mTempFile.renameTo(mFile)) {
+                mTempFile.delete();
+            }
+        } catch (IOException e) {
+            mTempFile.delete();
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, SIZE - 4);
+        return (int) crc.getValue();
+    }
+}
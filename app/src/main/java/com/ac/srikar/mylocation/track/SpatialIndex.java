@@ -0,0 +1,322 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixStage;
+import com.ac.srikar.mylocation.util.GeoMath;
+import com.ac.srikar.mylocation.util.LongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Grid index over recorded positions for radius, bounding box and nearest neighbour queries.
+ * <p>
+ * The globe is cut into cells of {@link #getCellDegrees()} degrees. Only occupied cells are
+ * kept, in a primitive hash map from cell to the newest point in it; points of a cell are
+ * chained through an int array. Points are stored as microdegrees, so the index costs 12
+ * bytes per point and adding one is constant time. Queries only walk the cells around the
+ * query and fall back to a linear scan when that would touch more cells than there are
+ * points.
+ * <p>
+ * Points get consecutive ids from 0 in the order they are added. When the index is filled
+ * from a {@link TrackLogReader} or as the downstream of a {@link TrackSimplifier} in front of
+ * a {@link TrackLog}, ids are record numbers of the log.
+ * <p>
+ * The index is not thread safe.
+ */
+public class SpatialIndex implements FixStage {
+
+    /**
+     * Receives query results.
+     */
+    public interface Visitor {
+
+        /**
+         * @return false to stop the query
+         */
+        boolean visit(int id);
+    }
+
+    // Default cell size, about 220 m of latitude.
+    public static final double DEFAULT_CELL_DEGREES = 0.002;
+
+    private static final double SCALE = 1e6;
+    private static final int NO_POINT = -1;
+
+    private final double mCellDegrees;
+    private final int mColumns;
+    private final int mRows;
+
+    // Newest point of each occupied cell.
+    private final LongIntHashMap mHeads = new LongIntHashMap(1024);
+
+    // Point columns, indexed by id. mNext chains the points of a cell, newest first.
+    private int[] mLatitude = new int[1024];
+    private int[] mLongitude = new int[1024];
+    private int[] mNext = new int[1024];
+    private int mSize = 0;
+
+    public SpatialIndex() {
+        this(DEFAULT_CELL_DEGREES);
+    }
+
+    public SpatialIndex(double cellDegrees) {
+        if (!(cellDegrees > 0) || cellDegrees > 90) {
+            throw new IllegalArgumentException("Invalid cell size: " + cellDegrees);
+        }
+        mCellDegrees = cellDegrees;
+        mColumns = (int) Math.ceil(360 / cellDegrees);
+        mRows = (int) Math.ceil(180 / cellDegrees);
+    }
+
+    /**
+     * Add the position of the fix.
+     */
+    @Override
+    public boolean onFix(Fix fix) {
+        add(fix.latitude, fix.longitude);
+        return true;
+    }
+
+    /**
+     * Add every remaining fix of {@code reader}.
+     */
+    public void addAll(TrackLogReader reader) {
+        Fix fix = new Fix();
+        while (reader.next(fix)) {
+            add(fix.latitude, fix.longitude);
+        }
+    }
+
+    /**
+     * Add a point.
+     *
+     * @return the id of the point
+     */
+    public int add(double latitude, double longitude) {
+        if (mSize == mLatitude.length) {
+            int capacity = mSize + (mSize >> 1);
+            mLatitude = Arrays.copyOf(mLatitude, capacity);
+            mLongitude = Arrays.copyOf(mLongitude, capacity);
+            mNext = Arrays.copyOf(mNext, capacity);
+        }
+        int id = mSize++;
+        mLatitude[id] = (int) Math.round(latitude * SCALE);
+        mLongitude[id] = (int) Math.round(longitude * SCALE);
+        long cell = cell(column(longitude), row(latitude));
+        mNext[id] = mHeads.get(cell, NO_POINT);
+        mHeads.put(cell, id);
+        return id;
+    }
+
+    /**
+     * Visit the points within {@code radiusMeters} of the given position, in no particular
+     * order. Works across the antimeridian.
+     *
+     * @return the number of points visited
+     */
+    public int queryRadius(double latitude, double longitude, double radiusMeters,
+                           Visitor visitor) {
+        double latitudeSpan = radiusMeters / GeoMath.METERS_PER_DEGREE;
+        int minRow = row(latitude - latitudeSpan);
+        int maxRow = row(latitude + latitudeSpan);
+        int minColumn;
+        int columns;
+        double maxAbsLatitude = Math.abs(latitude) + latitudeSpan;
+        double longitudeSpan = maxAbsLatitude >= 90 ? 180
+                : radiusMeters / GeoMath.metersPerDegreeLongitude(maxAbsLatitude);
+        if (longitudeSpan >= 180) {
+            minColumn = 0;
+            columns = mColumns;
+        } else {
+            minColumn = (int) Math.floor((longitude - longitudeSpan + 180) / mCellDegrees);
+            int maxColumn = (int) Math.floor((longitude + longitudeSpan + 180) / mCellDegrees);
+            columns = Math.min(mColumns, maxColumn - minColumn + 1);
+        }
+
+        int count = 0;
+        if ((long) (maxRow - minRow + 1) * columns > mSize) {
+            for (int id = 0; id < mSize; id++) {
+                if (distance(id, latitude, longitude) <= radiusMeters) {
+                    count++;
+                    if (!visitor.visit(id)) {
+                        break;
+                    }
+                }
+            }
+            return count;
+        }
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int i = 0; i < columns; i++) {
+                int column = wrap(minColumn + i);
+                for (int id = mHeads.get(cell(column, row), NO_POINT); id != NO_POINT;
+                     id = mNext[id]) {
+                    if (distance(id, latitude, longitude) <= radiusMeters) {
+                        count++;
+                        if (!visitor.visit(id)) {
+                            return count;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Visit the points inside the bounding box, in no particular order. The box must not
+     * cross the antimeridian.
+     *
+     * @return the number of points visited
+     */
+    public int queryBox(double minLatitude, double minLongitude, double maxLatitude,
+                        double maxLongitude, Visitor visitor) {
+        int minLatitudeE6 = (int) Math.ceil(minLatitude * SCALE);
+        int maxLatitudeE6 = (int) Math.floor(maxLatitude * SCALE);
+        int minLongitudeE6 = (int) Math.ceil(minLongitude * SCALE);
+        int maxLongitudeE6 = (int) Math.floor(maxLongitude * SCALE);
+        int minRow = row(minLatitude);
+        int maxRow = row(maxLatitude);
+        int minColumn = column(minLongitude);
+        int maxColumn = column(maxLongitude);
+
+        int count = 0;
+        if ((long) (maxRow - minRow + 1) * (maxColumn - minColumn + 1) > mSize) {
+            for (int id = 0; id < mSize; id++) {
+                if (mLatitude[id] >= minLatitudeE6 && mLatitude[id] <= maxLatitudeE6
+                        && mLongitude[id] >= minLongitudeE6 && mLongitude[id] <= maxLongitudeE6) {
+                    count++;
+                    if (!visitor.visit(id)) {
+                        break;
+                    }
+                }
+            }
+            return count;
+        }
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                for (int id = mHeads.get(cell(column, row), NO_POINT); id != NO_POINT;
+                     id = mNext[id]) {
+                    if (mLatitude[id] >= minLatitudeE6 && mLatitude[id] <= maxLatitudeE6
+                            && mLongitude[id] >= minLongitudeE6
+                            && mLongitude[id] <= maxLongitudeE6) {
+                        count++;
+                        if (!visitor.visit(id)) {
+                            return count;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Id of the point nearest to the given position, searching rings of cells outwards.
+     *
+     * @return the id, or -1 if no point is within {@code maxDistanceMeters}
+     */
+    public int nearest(double latitude, double longitude, double maxDistanceMeters) {
+        int centerRow = row(latitude);
+        int centerColumn = column(longitude);
+        int best = NO_POINT;
+        double bestDistance = maxDistanceMeters;
+        long cellsVisited = 0;
+        for (int ring = 0; ; ring++) {
+            if (2 * ring + 1 > mColumns && 2 * ring + 1 > mRows) {
+                return best;
+            }
+            if (cellsVisited > mSize) {
+                // Sparse index: scanning all points is cheaper than more rings.
+                return nearestLinear(latitude, longitude, maxDistanceMeters);
+            }
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                if (row < 0 || row >= mRows) {
+                    continue;
+                }
+                // Inner rows of the ring only have their two edge cells.
+                int step = row == centerRow - ring || row == centerRow + ring ? 1
+                        : Math.max(1, 2 * ring);
+                for (int column = centerColumn - ring; column <= centerColumn + ring;
+                     column += step) {
+                    cellsVisited++;
+                    for (int id = mHeads.get(cell(wrap(column), row), NO_POINT);
+                         id != NO_POINT; id = mNext[id]) {
+                        double distance = distance(id, latitude, longitude);
+                        if (distance <= bestDistance) {
+                            best = id;
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+            // Points beyond this ring are at least `ring` cells away along one axis.
+            double edgeLatitude = Math.min(90, Math.abs(latitude) + (ring + 1) * mCellDegrees);
+            double cellMeters = mCellDegrees * Math.min(GeoMath.METERS_PER_DEGREE,
+                    GeoMath.metersPerDegreeLongitude(edgeLatitude));
+            if (ring * cellMeters > bestDistance) {
+                return best;
+            }
+        }
+    }
+
+    private int nearestLinear(double latitude, double longitude, double maxDistanceMeters) {
+        int best = NO_POINT;
+        double bestDistance = maxDistanceMeters;
+        for (int id = 0; id < mSize; id++) {
+            double distance = distance(id, latitude, longitude);
+            if (distance <= bestDistance) {
+                best = id;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    private double distance(int id, double latitude, double longitude) {
+        return GeoMath.distance(latitude, longitude, mLatitude[id] / SCALE,
+                mLongitude[id] / SCALE);
+    }
+
+    private int row(double latitude) {
+        int row = (int) Math.floor((latitude + 90) / mCellDegrees);
+        return Math.max(0, Math.min(mRows - 1, row));
+    }
+
+    private int column(double longitude) {
+        int column = (int) Math.floor((longitude + 180) / mCellDegrees);
+        return Math.max(0, Math.min(mColumns - 1, column));
+    }
+
+    private int wrap(int column) {
+        column %= mColumns;
+        return column < 0 ? column + mColumns : column;
+    }
+
+    private static long cell(int column, int row) {
+        return ((long) row << 32) | column;
+    }
+
+    public double getLatitude(int id) {
+        return mLatitude[id] / SCALE;
+    }
+
+    public double getLongitude(int id) {
+        return mLongitude[id] / SCALE;
+    }
+
+    public double getCellDegrees() {
+        return mCellDegrees;
+    }
+
+    /**
+     * Number of points in the index.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public void clear() {
+        mHeads.clear();
+        mSize = 0;
+    }
+}
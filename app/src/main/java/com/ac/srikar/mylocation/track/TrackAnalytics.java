@@ -0,0 +1,488 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.util.GeoMath;
+import com.ac.srikar.mylocation.util.LongIntHashMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Batch statistics over every fix of a recorded {@link TrackLog}: distance per local day,
+ * speed distribution, heatmap cell counts and dwell clusters.
+ * <p>
+ * Segments are read column by column from their mappings, never as fix objects. Every
+ * segment is split into ranges of at most {@link #SPLIT_RECORDS} records, analyzed as
+ * fork-join tasks whose partial {@link Result}s are merged, so the work spreads over all
+ * cores. A range also looks at the first record of the next range, so no step between two
+ * consecutive fixes is lost at a split. Fork-join is part of the platform from Lollipop on;
+ * older devices analyze the ranges one after the other on the calling thread.
+ * <p>
+ * A step counts towards the distance of the day its first fix was taken. A step of two
+ * fixes slower than {@link #DWELL_SPEED} m/s counts as time spent in the dwell cell of the
+ * first fix; cells holding at least the minimum dwell time are the dwell clusters. Steps
+ * over {@link TripStats#MAX_GAP_MILLIS} apart count neither distance nor dwell time.
+ * <p>
+ * It blocks until the whole log is analyzed, so keep it off the main thread outside of
+ * debugging. The recording service prints the statistics of its log with the
+ * {@code analytics} dump command.
+ */
+public class TrackAnalytics {
+
+    public static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    // Width and number of the speed histogram bins; the last bin holds all faster fixes.
+    public static final double SPEED_BIN_WIDTH = 0.5;
+    public static final int SPEED_BINS = 100;
+
+    // Heatmap cell, about 1.1 km of latitude.
+    public static final double HEATMAP_CELL_DEGREES = 0.01;
+
+    // Dwell cell, about 110 m of latitude.
+    public static final double DWELL_CELL_DEGREES = 0.001;
+
+    // Fastest speed in m/s of a step that counts as dwelling.
+    public static final double DWELL_SPEED = TripStats.MOVING_SPEED_THRESHOLD;
+
+    // Shortest time in a dwell cell that makes it a dwell cluster.
+    public static final long DEFAULT_MIN_DWELL_MILLIS = 10 * 60 * 1000;
+
+    // Records analyzed by one task without splitting further.
+    static final int SPLIT_RECORDS = 16 * 1024;
+
+    // Whether the platform has fork-join, checked once without depending on android.os.
+    private static final boolean FORK_JOIN_AVAILABLE = isClassAvailable(
+            "java.util.concurrent.ForkJoinPool");
+
+    private final TimeZone mTimeZone;
+    private final long mMinDwellMillis;
+
+    public TrackAnalytics(TimeZone timeZone) {
+        this(timeZone, DEFAULT_MIN_DWELL_MILLIS);
+    }
+
+    public TrackAnalytics(TimeZone timeZone, long minDwellMillis) {
+        mTimeZone = timeZone;
+        mMinDwellMillis = minDwellMillis;
+    }
+
+    /**
+     * Analyze the log in {@code directory}.
+     */
+    public Result analyze(File directory) throws IOException {
+        return analyze(TrackSegment.openAll(directory));
+    }
+
+    /**
+     * Analyze the segments, oldest first, in parallel where fork-join is available.
+     */
+    public Result analyze(TrackSegment[] segments) {
+        if (FORK_JOIN_AVAILABLE) {
+            ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            try {
+                return analyze(segments, pool);
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return analyzeSequentially(segments);
+    }
+
+    /**
+     * Analyze the segments with the tasks of the given pool.
+     */
+    Result analyze(TrackSegment[] segments, ForkJoinPool pool) {
+        Result result = new Result();
+        for (TrackSegment segment : segments) {
+            result = Result.merge(result, pool.invoke(new RangeTask(this, segment, 0,
+                    segment.size())));
+        }
+        return finish(segments, result);
+    }
+
+    /**
+     * Analyze the segments range by range on the calling thread.
+     */
+    Result analyzeSequentially(TrackSegment[] segments) {
+        Result result = new Result();
+        for (TrackSegment segment : segments) {
+            for (int from = 0; from < segment.size(); from += SPLIT_RECORDS) {
+                result = Result.merge(result, analyzeRange(segment, from,
+                        Math.min(segment.size(), from + SPLIT_RECORDS)));
+            }
+        }
+        return finish(segments, result);
+    }
+
+    private Result finish(TrackSegment[] segments, Result result) {
+        // Steps from the last fix of a segment to the first of the next
+        Accumulator joints = new Accumulator((TimeZone) mTimeZone.clone());
+        TrackSegment previous = null;
+        for (TrackSegment segment : segments) {
+            if (segment.size() == 0) {
+                continue;
+            }
+            if (previous != null) {
+                joints.addStep(previous, previous.size() - 1, segment, 0);
+            }
+            previous = segment;
+        }
+        result = Result.merge(result, joints.toResult());
+        result.retainDwells(mMinDwellMillis);
+        return result;
+    }
+
+    /**
+     * Statistics of the records in [from, to) and of the steps leaving them within the
+     * segment.
+     */
+    Result analyzeRange(TrackSegment segment, int from, int to) {
+        Accumulator accumulator = new Accumulator((TimeZone) mTimeZone.clone());
+        for (int i = from; i < to; i++) {
+            accumulator.addFix(segment, i);
+            if (i + 1 < segment.size()) {
+                accumulator.addStep(segment, i, segment, i + 1);
+            }
+        }
+        return accumulator.toResult();
+    }
+
+    /**
+     * Splits a range of a segment in halves until it is small enough to analyze.
+     */
+    static class RangeTask extends RecursiveTask<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TrackAnalytics mAnalytics;
+        private final TrackSegment mSegment;
+        private final int mFrom;
+        private final int mTo;
+
+        RangeTask(TrackAnalytics analytics, TrackSegment segment, int from, int to) {
+            mAnalytics = analytics;
+            mSegment = segment;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected Result compute() {
+            if (mTo - mFrom <= SPLIT_RECORDS) {
+                return mAnalytics.analyzeRange(mSegment, mFrom, mTo);
+            }
+            int middle = (mFrom + mTo) >>> 1;
+            RangeTask second = new RangeTask(mAnalytics, mSegment, middle, mTo);
+            second.fork();
+            Result first = new RangeTask(mAnalytics, mSegment, mFrom, middle).compute();
+            return Result.merge(first, second.join());
+        }
+    }
+
+    private static boolean isClassAvailable(String name) {
+        try {
+            Class.forName(name);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static long cell(double latitude, double longitude, double cellDegrees) {
+        long row = (long) Math.floor((latitude + 90) / cellDegrees);
+        long column = (long) Math.floor((longitude + 180) / cellDegrees);
+        return (row << 32) | column;
+    }
+
+    private static double cellLatitude(long cell, double cellDegrees) {
+        return ((cell >>> 32) + 0.5) * cellDegrees - 90;
+    }
+
+    private static double cellLongitude(long cell, double cellDegrees) {
+        return ((cell & 0xFFFFFFFFL) + 0.5) * cellDegrees - 180;
+    }
+
+    /**
+     * Mutable statistics of one task.
+     */
+    private static class Accumulator {
+
+        private final TimeZone mTimeZone;
+        private long mFixCount = 0;
+        private double mDistance = 0;
+        private final long[] mSpeedHistogram = new long[SPEED_BINS];
+        private long mFirstDay = Long.MAX_VALUE;
+        private double[] mDayDistance = new double[0];
+        private final CellCounter mHeatmap = new CellCounter();
+        private final CellCounter mDwells = new CellCounter();
+
+        Accumulator(TimeZone timeZone) {
+            mTimeZone = timeZone;
+        }
+
+        void addFix(TrackSegment segment, int i) {
+            mFixCount++;
+            int bin = (int) (segment.getSpeed(i) / SPEED_BIN_WIDTH);
+            mSpeedHistogram[Math.max(0, Math.min(SPEED_BINS - 1, bin))]++;
+            mHeatmap.add(cell(segment.getLatitude(i), segment.getLongitude(i),
+                    HEATMAP_CELL_DEGREES), 1);
+        }
+
+        void addStep(TrackSegment segment, int i, TrackSegment nextSegment, int next) {
+            long time = segment.getTime(i);
+            long duration = nextSegment.getTime(next) - time;
+            if (duration <= 0 || duration > TripStats.MAX_GAP_MILLIS) {
+                return;
+            }
+            double latitude = segment.getLatitude(i);
+            double longitude = segment.getLongitude(i);
+            double distance = GeoMath.fastDistance(latitude, longitude,
+                    nextSegment.getLatitude(next), nextSegment.getLongitude(next));
+            mDistance += distance;
+            addDayDistance((time + mTimeZone.getOffset(time)) / DAY_MILLIS, distance);
+            if (distance / (duration / 1000.0) < DWELL_SPEED) {
+                mDwells.add(cell(latitude, longitude, DWELL_CELL_DEGREES), duration);
+            }
+        }
+
+        private void addDayDistance(long day, double distance) {
+            if (mDayDistance.length == 0) {
+                mFirstDay = day;
+                mDayDistance = new double[1];
+            } else if (day < mFirstDay) {
+                double[] days = new double[(int) (mFirstDay + mDayDistance.length - day)];
+                System.arraycopy(mDayDistance, 0, days, (int) (mFirstDay - day),
+                        mDayDistance.length);
+                mDayDistance = days;
+                mFirstDay = day;
+            } else if (day >= mFirstDay + mDayDistance.length) {
+                mDayDistance = Arrays.copyOf(mDayDistance, (int) (day - mFirstDay + 1));
+            }
+            mDayDistance[(int) (day - mFirstDay)] += distance;
+        }
+
+        Result toResult() {
+            Result result = new Result();
+            result.mFixCount = mFixCount;
+            result.mDistance = mDistance;
+            result.mSpeedHistogram = mSpeedHistogram;
+            result.mFirstDay = mFirstDay;
+            result.mDayDistance = mDayDistance;
+            mHeatmap.sortInto(result.mHeatmap);
+            mDwells.sortInto(result.mDwells);
+            return result;
+        }
+    }
+
+    /**
+     * Sums values per cell without boxing.
+     */
+    private static class CellCounter {
+
+        private final LongIntHashMap mSlots = new LongIntHashMap();
+        private long[] mCells = new long[16];
+        private long[] mValues = new long[16];
+        private int mSize = 0;
+
+        void add(long cell, long value) {
+            int slot = mSlots.get(cell, -1);
+            if (slot < 0) {
+                if (mSize == mCells.length) {
+                    mCells = Arrays.copyOf(mCells, mSize * 2);
+                    mValues = Arrays.copyOf(mValues, mSize * 2);
+                }
+                slot = mSize++;
+                mCells[slot] = cell;
+                mSlots.put(cell, slot);
+            }
+            mValues[slot] += value;
+        }
+
+        void sortInto(CellCounts counts) {
+            long[] cells = Arrays.copyOf(mCells, mSize);
+            Arrays.sort(cells);
+            long[] values = new long[mSize];
+            for (int i = 0; i < mSize; i++) {
+                values[i] = mValues[mSlots.get(cells[i], -1)];
+            }
+            counts.set(cells, values, mSize);
+        }
+    }
+
+    /**
+     * Values per cell, sorted by cell so that two counts merge in linear time.
+     */
+    private static class CellCounts {
+
+        long[] mCells = new long[0];
+        long[] mValues = new long[0];
+        int mSize = 0;
+
+        void set(long[] cells, long[] values, int size) {
+            mCells = cells;
+            mValues = values;
+            mSize = size;
+        }
+
+        static CellCounts merge(CellCounts a, CellCounts b) {
+            long[] cells = new long[a.mSize + b.mSize];
+            long[] values = new long[a.mSize + b.mSize];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < a.mSize || j < b.mSize) {
+                if (j == b.mSize || (i < a.mSize && a.mCells[i] < b.mCells[j])) {
+                    cells[n] = a.mCells[i];
+                    values[n++] = a.mValues[i++];
+                } else if (i == a.mSize || b.mCells[j] < a.mCells[i]) {
+                    cells[n] = b.mCells[j];
+                    values[n++] = b.mValues[j++];
+                } else {
+                    cells[n] = a.mCells[i];
+                    values[n++] = a.mValues[i++] + b.mValues[j++];
+                }
+            }
+            CellCounts merged = new CellCounts();
+            merged.set(cells, values, n);
+            return merged;
+        }
+
+        void retain(long minValue) {
+            int n = 0;
+            for (int i = 0; i < mSize; i++) {
+                if (mValues[i] >= minValue) {
+                    mCells[n] = mCells[i];
+                    mValues[n++] = mValues[i];
+                }
+            }
+            mSize = n;
+        }
+    }
+
+    /**
+     * Statistics of a whole log, or of part of it while the tasks merge.
+     */
+    public static class Result {
+
+        private long mFixCount = 0;
+        private double mDistance = 0;
+        private long[] mSpeedHistogram = new long[SPEED_BINS];
+        private long mFirstDay = Long.MAX_VALUE;
+        private double[] mDayDistance = new double[0];
+        private CellCounts mHeatmap = new CellCounts();
+        private CellCounts mDwells = new CellCounts();
+
+        static Result merge(Result a, Result b) {
+            Result merged = new Result();
+            merged.mFixCount = a.mFixCount + b.mFixCount;
+            merged.mDistance = a.mDistance + b.mDistance;
+            for (int i = 0; i < SPEED_BINS; i++) {
+                merged.mSpeedHistogram[i] = a.mSpeedHistogram[i] + b.mSpeedHistogram[i];
+            }
+            if (a.mDayDistance.length == 0 || b.mDayDistance.length == 0) {
+                Result days = a.mDayDistance.length == 0 ? b : a;
+                merged.mFirstDay = days.mFirstDay;
+                merged.mDayDistance = days.mDayDistance;
+            } else {
+                merged.mFirstDay = Math.min(a.mFirstDay, b.mFirstDay);
+                long lastDay = Math.max(a.mFirstDay + a.mDayDistance.length,
+                        b.mFirstDay + b.mDayDistance.length);
+                merged.mDayDistance = new double[(int) (lastDay - merged.mFirstDay)];
+                for (Result part : new Result[]{a, b}) {
+                    int offset = (int) (part.mFirstDay - merged.mFirstDay);
+                    for (int i = 0; i < part.mDayDistance.length; i++) {
+                        merged.mDayDistance[offset + i] += part.mDayDistance[i];
+                    }
+                }
+            }
+            merged.mHeatmap = CellCounts.merge(a.mHeatmap, b.mHeatmap);
+            merged.mDwells = CellCounts.merge(a.mDwells, b.mDwells);
+            return merged;
+        }
+
+        void retainDwells(long minDwellMillis) {
+            mDwells.retain(minDwellMillis);
+        }
+
+        public long getFixCount() {
+            return mFixCount;
+        }
+
+        /**
+         * Distance of all steps in meters.
+         */
+        public double getDistance() {
+            return mDistance;
+        }
+
+        /**
+         * Fix count per speed bin of {@link #SPEED_BIN_WIDTH} m/s, slowest first.
+         */
+        public long[] getSpeedHistogram() {
+            return mSpeedHistogram.clone();
+        }
+
+        /**
+         * First local day with a step, in days since the epoch, if {@link #getDayCount()} is
+         * not 0.
+         */
+        public long getFirstDay() {
+            return mFirstDay;
+        }
+
+        /**
+         * Number of days from the first to the last day with a step.
+         */
+        public int getDayCount() {
+            return mDayDistance.length;
+        }
+
+        /**
+         * Distance in meters on the given day after the first one.
+         */
+        public double getDayDistance(int index) {
+            return mDayDistance[index];
+        }
+
+        /**
+         * Number of heatmap cells holding at least one fix.
+         */
+        public int getHeatmapSize() {
+            return mHeatmap.mSize;
+        }
+
+        public double getHeatmapLatitude(int index) {
+            return cellLatitude(mHeatmap.mCells[index], HEATMAP_CELL_DEGREES);
+        }
+
+        public double getHeatmapLongitude(int index) {
+            return cellLongitude(mHeatmap.mCells[index], HEATMAP_CELL_DEGREES);
+        }
+
+        public long getHeatmapCount(int index) {
+            return mHeatmap.mValues[index];
+        }
+
+        /**
+         * Number of dwell clusters, dwell cells holding at least the minimum dwell time.
+         */
+        public int getDwellSize() {
+            return mDwells.mSize;
+        }
+
+        public double getDwellLatitude(int index) {
+            return cellLatitude(mDwells.mCells[index], DWELL_CELL_DEGREES);
+        }
+
+        public double getDwellLongitude(int index) {
+            return cellLongitude(mDwells.mCells[index], DWELL_CELL_DEGREES);
+        }
+
+        public long getDwellMillis(int index) {
+            return mDwells.mValues[index];
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.Fix;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads fixes written by {@link TrackEncoder}.
+ */
+public class TrackDecoder {
+
+    private final InputStream mIn;
+    private final byte[] mBuffer = new byte[8192];
+    private int mPosition = 0;
+    private int mLimit = 0;
+
+    private long mTime = 0;
+    private long mLatitude = 0;
+    private long mLongitude = 0;
+    private long mAltitude = 0;
+
+    /**
+     * Read and check the stream header. The decoder buffers internally, so {@code in} does
+     * not need to be buffered.
+     */
+    public TrackDecoder(InputStream in) throws IOException {
+        mIn = in;
+        for (int i = 0; i < TrackEncoder.MAGIC.length; i++) {
+            if (read() != TrackEncoder.MAGIC[i]) {
+                throw new IOException("Not an encoded track");
+            }
+        }
+        int version = read();
+        if (version != TrackEncoder.VERSION) {
+            throw new IOException("Unsupported track encoding version " + version);
+        }
+    }
+
+    /**
+     * Read the next fix into {@code fix}.
+     *
+     * @return false at the end of the stream
+     * @throws EOFException if the stream ends in the middle of a fix
+     */
+    public boolean next(Fix fix) throws IOException {
+        int first = read();
+        if (first == -1) {
+            return false;
+        }
+        mTime += zigZag(readUnsigned(first));
+        mLatitude += zigZag(readUnsigned(read()));
+        mLongitude += zigZag(readUnsigned(read()));
+        mAltitude += zigZag(readUnsigned(read()));
+        long accuracy = readUnsigned(read());
+        long speed = readUnsigned(read());
+        fix.set(mLatitude / TrackEncoder.COORDINATE_SCALE,
+                mLongitude / TrackEncoder.COORDINATE_SCALE,
+                (float) (accuracy / TrackEncoder.METER_SCALE),
+                mAltitude / TrackEncoder.METER_SCALE,
+                (float) (speed / TrackEncoder.SPEED_SCALE),
+                mTime);
+        return true;
+    }
+
+    private static long zigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Decode a varint whose first byte was already read.
+     */
+    private long readUnsigned(int b) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            if (b == -1) {
+                throw new EOFException("Truncated track");
+            }
+            if (shift > 63) {
+                throw new IOException("Malformed varint");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            b = read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (mPosition == mLimit) {
+            mLimit = mIn.read(mBuffer, 0, mBuffer.length);
+            mPosition = 0;
+            if (mLimit <= 0) {
+                mLimit = 0;
+                return -1;
+            }
+        }
+        return mBuffer[mPosition++] & 0xFF;
+    }
+}
@@ -0,0 +1,129 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.Fix;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streams fixes in a compact binary encoding, typically 8 to 12 bytes per fix instead of
+ * the 44 of a {@link TrackLog} record.
+ * <p>
+ * Coordinates are quantized to {@link #COORDINATE_SCALE} (about 11 cm), altitude and
+ * accuracy to decimeters and speed to cm/s. Time, latitude, longitude and altitude are
+ * written as the zig-zag varint delta from the previous fix; accuracy and speed as plain
+ * varints. Deltas are taken between quantized values, so rounding never accumulates.
+ * <p>
+ * The stream starts with {@link #MAGIC} and a version byte and has no trailer, so it can
+ * be decoded while it is still being written. Read it back with {@link TrackDecoder}.
+ */
+public class TrackEncoder {
+
+    static final byte[] MAGIC = {'M', 'L', 'T', 'C'};
+    static final int VERSION = 1;
+
+    // Units per degree of latitude or longitude.
+    static final double COORDINATE_SCALE = 1e6;
+
+    // Units per meter of altitude or accuracy.
+    static final double METER_SCALE = 10;
+
+    // Units per m/s of speed.
+    static final double SPEED_SCALE = 100;
+
+    // Longest encoding of one fix: four 64-bit and two 32-bit varints.
+    private static final int MAX_RECORD_SIZE = 4 * 10 + 2 * 5;
+
+    private final OutputStream mOut;
+    private final byte[] mBuffer = new byte[8192];
+    private int mPosition = 0;
+
+    private long mTime = 0;
+    private long mLatitude = 0;
+    private long mLongitude = 0;
+    private long mAltitude = 0;
+    private long mCount = 0;
+
+    /**
+     * Write the stream header. The encoder buffers internally, so {@code out} does not need
+     * to be buffered.
+     */
+    public TrackEncoder(OutputStream out) throws IOException {
+        mOut = out;
+        System.arraycopy(MAGIC, 0, mBuffer, 0, MAGIC.length);
+        mBuffer[MAGIC.length] = VERSION;
+        mPosition = MAGIC.length + 1;
+    }
+
+    /**
+     * Append one fix.
+     */
+    public void write(double latitude, double longitude, float accuracy, double altitude,
+                      float speed, long time) throws IOException {
+        if (mPosition + MAX_RECORD_SIZE > mBuffer.length) {
+            drain();
+        }
+        long quantizedLatitude = Math.round(latitude * COORDINATE_SCALE);
+        long quantizedLongitude = Math.round(longitude * COORDINATE_SCALE);
+        long quantizedAltitude = Math.round(altitude * METER_SCALE);
+        writeSigned(time - mTime);
+        writeSigned(quantizedLatitude - mLatitude);
+        writeSigned(quantizedLongitude - mLongitude);
+        writeSigned(quantizedAltitude - mAltitude);
+        writeUnsigned(Math.max(0, Math.round(accuracy * METER_SCALE)));
+        writeUnsigned(Math.max(0, Math.round(speed * SPEED_SCALE)));
+        mTime = time;
+        mLatitude = quantizedLatitude;
+        mLongitude = quantizedLongitude;
+        mAltitude = quantizedAltitude;
+        mCount++;
+    }
+
+    /**
+     * Append every remaining fix of {@code reader}.
+     *
+     * @return the number of fixes written
+     */
+    public long writeAll(TrackLogReader reader) throws IOException {
+        Fix fix = new Fix();
+        long count = 0;
+        while (reader.next(fix)) {
+            write(fix.latitude, fix.longitude, fix.accuracy, fix.altitude, fix.speed, fix.time);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Number of fixes written so far.
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    private void writeSigned(long value) {
+        // Zig-zag: small negative and positive deltas both get short encodings.
+        writeUnsigned((value << 1) ^ (value >> 63));
+    }
+
+    private void writeUnsigned(long value) {
+        while ((value & ~0x7FL) != 0) {
+            mBuffer[mPosition++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mBuffer[mPosition++] = (byte) value;
+    }
+
+    private void drain() throws IOException {
+        mOut.write(mBuffer, 0, mPosition);
+        mPosition = 0;
+    }
+
+    /**
+     * Write buffered bytes to the underlying stream and flush it.
+     */
+    public void flush() throws IOException {
+        drain();
+        mOut.flush();
+    }
+}
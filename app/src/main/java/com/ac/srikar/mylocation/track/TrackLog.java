@@ -0,0 +1,364 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.BatchFixStage;
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixBatch;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only log of fixes in fixed-size binary records, written through memory-mapped
+ * segment files.
+ * <p>
+ * Appending a fix is a handful of stores into a mapped buffer: no system call, no object
+ * serialization. When a segment is full the next one is created. The kernel writes dirty
+ * pages back on its own, so the log survives the process being killed; to also survive a
+ * power loss, segments are forced to storage from a background thread every
+ * {@link #FLUSH_EVERY_RECORDS} records or {@link #FLUSH_EVERY_MILLIS} ms of fix time,
+ * whichever comes first.
+ * <p>
+ * Each record ends with a checksum. Opening an existing log scans its last segment and
+ * resumes after the last record with a valid checksum, dropping a torn tail.
+ * <p>
+ * A TrackLog must be used from a single thread. Use {@link TrackLogReader} to read it.
+ */
+public class TrackLog implements BatchFixStage, Closeable {
+
+    // Segment layout: header followed by records, all little endian.
+    static final int MAGIC = 0x4B544C4D; // "MLTK" when read as bytes
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    // Record layout: latitude, longitude, altitude (double), time (long), accuracy,
+    // speed (float), checksum (int).
+    static final int RECORD_SIZE = 44;
+    static final int LATITUDE_OFFSET = 0;
+    static final int LONGITUDE_OFFSET = 8;
+    static final int ALTITUDE_OFFSET = 16;
+    static final int TIME_OFFSET = 24;
+    static final int ACCURACY_OFFSET = 32;
+    static final int SPEED_OFFSET = 36;
+    static final int CHECKSUM_OFFSET = 40;
+
+    // Default segment size, about 95,000 records.
+    public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    // Background flush policy.
+    public static final int FLUSH_EVERY_RECORDS = 256;
+    public static final long FLUSH_EVERY_MILLIS = 30000;
+
+    private static final String SEGMENT_PREFIX = "track-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final File mDirectory;
+    private final int mSegmentSize;
+    private final ExecutorService mFlushExecutor;
+
+    private int mSegmentIndex;
+    private MappedByteBuffer mSegment;
+    private int mSegmentCapacity;
+    private int mSegmentRecords;
+    private long mRecordCount;
+
+    // Last error of onFix(), which cannot throw.
+    private IOException mLastError;
+
+    private boolean mClosed = false;
+    private int mUnflushedRecords = 0;
+    private long mLastFlushTime = Long.MIN_VALUE;
+
+    private TrackLog(File directory, int segmentSize) {
+        mDirectory = directory;
+        mSegmentSize = segmentSize;
+        mFlushExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "TrackLogFlush");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Open the log in {@code directory}, creating it if needed, with the default segment size.
+     */
+    public static TrackLog open(File directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Open the log in {@code directory}, creating it if needed. New segments get
+     * {@code segmentSize} bytes; existing segments keep their size.
+     */
+    public static TrackLog open(File directory, int segmentSize) throws IOException {
+        if (segmentSize < HEADER_SIZE + RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment too small: " + segmentSize);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        TrackLog log = new TrackLog(directory, segmentSize);
+        try {
+            log.recover();
+        } catch (IOException e) {
+            log.mFlushExecutor.shutdown();
+            throw e;
+        }
+        return log;
+    }
+
+    private void recover() throws IOException {
+        File[] segments = listSegments(mDirectory);
+        mRecordCount = 0;
+        if (segments.length == 0) {
+            mapSegment(0);
+            return;
+        }
+        // Full segments before the last one are trusted to hold their record count.
+        for (int i = 0; i < segments.length - 1; i++) {
+            mRecordCount += (segments[i].length() - HEADER_SIZE) / RECORD_SIZE;
+        }
+        File last = segments[segments.length - 1];
+        mapSegment(segmentIndex(last));
+        mSegmentRecords = countValidRecords(mSegment, mSegmentCapacity);
+        mRecordCount += mSegmentRecords;
+        // Clear the torn record and anything written after it, so that old records cannot
+        // reappear behind the ones appended from now on. Only pages holding data are touched.
+        for (int record = mSegmentRecords; record < mSegmentCapacity; record++) {
+            int position = HEADER_SIZE + record * RECORD_SIZE;
+            if (mSegment.getInt(position + CHECKSUM_OFFSET) != 0) {
+                for (int i = 0; i < RECORD_SIZE; i++) {
+                    mSegment.put(position + i, (byte) 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Map the segment with the given index, creating and initializing it if it is new.
+     */
+    private void mapSegment(int index) throws IOException {
+        File file = segmentFile(mDirectory, index);
+        boolean exists = file.exists() && file.length() >= HEADER_SIZE;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long size = exists ? raf.length() : mSegmentSize;
+            // The mapping stays valid after the channel is closed.
+            MappedByteBuffer segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    size);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            // A zero header means the process died right after creating the segment.
+            if (exists && segment.getInt(0) != 0) {
+                if (segment.getInt(0) != MAGIC || segment.getInt(4) != VERSION
+                        || segment.getInt(8) != RECORD_SIZE) {
+                    throw new IOException("Not a track log segment: " + file);
+                }
+            } else {
+                segment.putInt(0, MAGIC);
+                segment.putInt(4, VERSION);
+                segment.putInt(8, RECORD_SIZE);
+                segment.putInt(12, index);
+            }
+            mSegment = segment;
+            mSegmentIndex = index;
+            mSegmentCapacity = (int) ((size - HEADER_SIZE) / RECORD_SIZE);
+            mSegmentRecords = 0;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Append the fix as a pipeline stage. Never drops it: if the write fails the error is kept
+     * for {@link #getLastError()} and the pipeline keeps running without storage.
+     */
+    @Override
+    public boolean onFix(Fix fix) {
+        try {
+            append(fix.latitude, fix.longitude, fix.accuracy, fix.altitude, fix.speed, fix.time);
+        } catch (IOException e) {
+            mLastError = e;
+        }
+        return true;
+    }
+
+    /**
+     * Append every fix of the batch, with the same error handling as {@link #onFix(Fix)}.
+     */
+    @Override
+    public void onFixes(FixBatch batch) {
+        try {
+            for (int i = 0, n = batch.size(); i < n; i++) {
+                append(batch.latitude[i], batch.longitude[i], batch.accuracy[i],
+                        batch.altitude[i], batch.speed[i], batch.time[i]);
+            }
+        } catch (IOException e) {
+            mLastError = e;
+        }
+    }
+
+    /**
+     * Last error hit by {@link #onFix(Fix)}, or null.
+     */
+    public IOException getLastError() {
+        return mLastError;
+    }
+
+    /**
+     * Append one fix.
+     *
+     * @throws IOException if the log is closed or a new segment could not be created
+     */
+    public void append(double latitude, double longitude, float accuracy, double altitude,
+                       float speed, long time) throws IOException {
+        if (mClosed) {
+            throw new IOException("Track log closed");
+        }
+        if (mSegmentRecords == mSegmentCapacity) {
+            flushAsync(mSegment);
+            mapSegment(mSegmentIndex + 1);
+        }
+        MappedByteBuffer segment = mSegment;
+        int position = HEADER_SIZE + mSegmentRecords * RECORD_SIZE;
+        segment.putDouble(position + LATITUDE_OFFSET, latitude);
+        segment.putDouble(position + LONGITUDE_OFFSET, longitude);
+        segment.putDouble(position + ALTITUDE_OFFSET, altitude);
+        segment.putLong(position + TIME_OFFSET, time);
+        segment.putFloat(position + ACCURACY_OFFSET, accuracy);
+        segment.putFloat(position + SPEED_OFFSET, speed);
+        // The checksum goes last so that a torn record never validates.
+        segment.putInt(position + CHECKSUM_OFFSET, checksum(segment, position));
+        mSegmentRecords++;
+        mRecordCount++;
+
+        mUnflushedRecords++;
+        if (mLastFlushTime == Long.MIN_VALUE) {
+            mLastFlushTime = time;
+        }
+        if (mUnflushedRecords >= FLUSH_EVERY_RECORDS
+                || time - mLastFlushTime >= FLUSH_EVERY_MILLIS) {
+            flushAsync(segment);
+            mLastFlushTime = time;
+        }
+    }
+
+    private void flushAsync(final MappedByteBuffer segment) {
+        mUnflushedRecords = 0;
+        mFlushExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                segment.force();
+            }
+        });
+    }
+
+    /**
+     * Force the current segment to storage on the calling thread.
+     */
+    public void flush() {
+        mUnflushedRecords = 0;
+        mSegment.force();
+    }
+
+    /**
+     * Number of records in the log, including those of previous sessions.
+     */
+    public long getRecordCount() {
+        return mRecordCount;
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * Flush and stop the background flush thread. The log cannot be appended to afterwards.
+     */
+    @Override
+    public void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        mFlushExecutor.shutdown();
+        try {
+            mFlushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mSegment.force();
+    }
+
+    /**
+     * Checksum of the record at {@code position}, excluding the checksum field itself.
+     * The value for an all-zero record is never zero, so zero-filled space does not validate.
+     */
+    static int checksum(ByteBuffer segment, int position) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int offset = 0; offset < CHECKSUM_OFFSET; offset += 8) {
+            h = (h ^ segment.getLong(position + offset)) * 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+        }
+        int result = (int) (h ^ (h >>> 32));
+        return result == 0 ? 1 : result;
+    }
+
+    /**
+     * Number of leading records with a valid checksum.
+     */
+    static int countValidRecords(ByteBuffer segment, int maxRecords) {
+        int count = 0;
+        while (count < maxRecords) {
+            int position = HEADER_SIZE + count * RECORD_SIZE;
+            if (segment.getInt(position + CHECKSUM_OFFSET) != checksum(segment, position)) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    static File segmentFile(File directory, int index) {
+        return new File(directory,
+                String.format(Locale.US, "%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    static int segmentIndex(File segment) {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Segment files of the log in {@code directory}, oldest first.
+     */
+    static File[] listSegments(File directory) {
+        File[] segments = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (segments == null) {
+            return new File[0];
+        }
+        // Zero padded indexes sort by name.
+        Arrays.sort(segments);
+        return segments;
+    }
+}
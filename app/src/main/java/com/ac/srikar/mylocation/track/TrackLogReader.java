@@ -0,0 +1,62 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.Fix;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reads the fixes of a {@link TrackLog} in the order they were appended.
+ * <p>
+ * The reader sees the records that were written when it was opened. It may be used on
+ * another thread than the one appending to the log.
+ */
+public class TrackLogReader {
+
+    private final TrackSegment[] mSegments;
+    private int mSegment = 0;
+    private int mRecord = 0;
+
+    public TrackLogReader(TrackSegment[] segments) {
+        mSegments = segments;
+    }
+
+    /**
+     * Open a reader over the log in {@code directory}.
+     */
+    public static TrackLogReader open(File directory) throws IOException {
+        return new TrackLogReader(TrackSegment.openAll(directory));
+    }
+
+    /**
+     * Total number of records visible to this reader.
+     */
+    public long size() {
+        long size = 0;
+        for (TrackSegment segment : mSegments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Read the next fix into {@code fix}.
+     *
+     * @return false when all records were read
+     */
+    public boolean next(Fix fix) {
+        while (mSegment < mSegments.length) {
+            TrackSegment segment = mSegments[mSegment];
+            if (mRecord < segment.size()) {
+                int i = mRecord++;
+                fix.set(segment.getLatitude(i), segment.getLongitude(i),
+                        segment.getAccuracy(i), segment.getAltitude(i), segment.getSpeed(i),
+                        segment.getTime(i));
+                return true;
+            }
+            mSegment++;
+            mRecord = 0;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,128 @@
+package com.ac.srikar.mylocation.track;
+
+import android.util.Log;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixBatch;
+import com.ac.srikar.mylocation.location.FixEventBus;
+import com.ac.srikar.mylocation.location.FixStage;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Records fixes into a {@link TrackLog} on its own thread, as a {@link FixEventBus} consumer.
+ * <p>
+ * The log is opened when the consumer starts, recovering fixes recorded before the process
+ * died, and flushed and closed when it shuts down. Fixes are simplified, then held in a
+ * bounded buffer and written to the log in batches, when the buffer is full or its oldest
+ * fix is {@link #MAX_BUFFER_MILLIS} old, or on {@link #flush()}. Fixes that arrive while
+ * the log cannot be opened, or while not {@link #setRecording(boolean) recording}, are not
+ * recorded.
+ * <p>
+ * To query the recorded positions, build a {@link SpatialIndex} from a {@link TrackLogReader}
+ * of {@link #getDirectory()} on the querying thread; its ids are record numbers of the log.
+ */
+public class TrackRecorder implements FixStage, FixEventBus.Lifecycle {
+
+    private static final String LOG_TAG = "TrackRecorder";
+
+    // Simplified fixes held in memory before they are written in one batch.
+    public static final int DEFAULT_BUFFER_SIZE = 64;
+
+    // Longest time, in fix time, a fix waits in the buffer, bounding what a crash loses.
+    public static final long MAX_BUFFER_MILLIS = 60000;
+
+    private final File mDirectory;
+    private final int mBufferSize;
+
+    // Only touched on the consumer thread.
+    private TrackLog mTrackLog;
+    private TrackSimplifier mTrackSimplifier;
+    private final FixBatch mBuffer;
+    private boolean mRecording = false;
+
+    // Receives the fixes the simplifier retains.
+    private final FixStage mBufferStage = new FixStage() {
+        @Override
+        public boolean onFix(Fix fix) {
+            mBuffer.add(fix);
+            if (mBuffer.size() >= mBufferSize
+                    || fix.time - mBuffer.time[0] >= MAX_BUFFER_MILLIS) {
+                writeBuffer();
+            }
+            return true;
+        }
+    };
+
+    public TrackRecorder(File directory) {
+        this(directory, DEFAULT_BUFFER_SIZE);
+    }
+
+    public TrackRecorder(File directory, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        mDirectory = directory;
+        mBufferSize = bufferSize;
+        mBuffer = new FixBatch(bufferSize);
+    }
+
+    @Override
+    public void onStart() {
+        try {
+            mTrackLog = TrackLog.open(mDirectory);
+            // Drop the fixes a straight segment already represents
+            mTrackSimplifier = new TrackSimplifier(mBufferStage);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Cannot open the track log", e);
+        }
+    }
+
+    /**
+     * Start or stop recording the fixes that follow. Call on the consumer thread, e.g. from a
+     * task posted to the subscription, so the change falls between two fixes.
+     */
+    public void setRecording(boolean recording) {
+        mRecording = recording;
+    }
+
+    @Override
+    public boolean onFix(Fix fix) {
+        if (mRecording && mTrackSimplifier != null) {
+            mTrackSimplifier.onFix(fix);
+        }
+        return true;
+    }
+
+    private void writeBuffer() {
+        mTrackLog.onFixes(mBuffer);
+        mBuffer.clear();
+    }
+
+    /**
+     * Write the fix the simplifier holds back and the buffered fixes to the log and force it
+     * to storage, e.g. when recording stops. Call on the consumer thread.
+     */
+    public void flush() {
+        if (mTrackLog != null) {
+            mTrackSimplifier.flush();
+            writeBuffer();
+            mTrackLog.flush();
+        }
+    }
+
+    @Override
+    public void onShutdown() {
+        if (mTrackLog != null) {
+            flush();
+            mTrackLog.close();
+            mTrackLog = null;
+            mTrackSimplifier = null;
+        }
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+}
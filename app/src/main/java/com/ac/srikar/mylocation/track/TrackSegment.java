@@ -0,0 +1,110 @@
+package com.ac.srikar.mylocation.track;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only, memory-mapped view of one {@link TrackLog} segment.
+ * <p>
+ * Records are accessed by index through absolute reads of the mapping, so a segment can be
+ * scanned column by column and shared between threads without copying or allocating.
+ * Only the records written when the segment was opened are visible.
+ */
+public class TrackSegment {
+
+    private final File mFile;
+    private final MappedByteBuffer mBuffer;
+    private final int mSize;
+
+    private TrackSegment(File file, MappedByteBuffer buffer, int size) {
+        mFile = file;
+        mBuffer = buffer;
+        mSize = size;
+    }
+
+    /**
+     * Map a segment file and count its valid records.
+     */
+    public static TrackSegment open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            if (length < TrackLog.HEADER_SIZE) {
+                return new TrackSegment(file, null, 0);
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                    length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) == 0) {
+                // Created but never written.
+                return new TrackSegment(file, buffer, 0);
+            }
+            if (buffer.getInt(0) != TrackLog.MAGIC || buffer.getInt(4) != TrackLog.VERSION
+                    || buffer.getInt(8) != TrackLog.RECORD_SIZE) {
+                throw new IOException("Not a track log segment: " + file);
+            }
+            int capacity = (int) ((length - TrackLog.HEADER_SIZE) / TrackLog.RECORD_SIZE);
+            return new TrackSegment(file, buffer, TrackLog.countValidRecords(buffer, capacity));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Open every segment of the log in {@code directory}, oldest first.
+     */
+    public static TrackSegment[] openAll(File directory) throws IOException {
+        File[] files = TrackLog.listSegments(directory);
+        TrackSegment[] segments = new TrackSegment[files.length];
+        for (int i = 0; i < files.length; i++) {
+            segments[i] = open(files[i]);
+        }
+        return segments;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Number of valid records.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    private int position(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + mSize);
+        }
+        return TrackLog.HEADER_SIZE + index * TrackLog.RECORD_SIZE;
+    }
+
+    public double getLatitude(int index) {
+        return mBuffer.getDouble(position(index) + TrackLog.LATITUDE_OFFSET);
+    }
+
+    public double getLongitude(int index) {
+        return mBuffer.getDouble(position(index) + TrackLog.LONGITUDE_OFFSET);
+    }
+
+    public double getAltitude(int index) {
+        return mBuffer.getDouble(position(index) + TrackLog.ALTITUDE_OFFSET);
+    }
+
+    public long getTime(int index) {
+        return mBuffer.getLong(position(index) + TrackLog.TIME_OFFSET);
+    }
+
+    public float getAccuracy(int index) {
+        return mBuffer.getFloat(position(index) + TrackLog.ACCURACY_OFFSET);
+    }
+
+    public float getSpeed(int index) {
+        return mBuffer.getFloat(position(index) + TrackLog.SPEED_OFFSET);
+    }
+}
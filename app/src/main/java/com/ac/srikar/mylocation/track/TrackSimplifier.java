@@ -0,0 +1,154 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixStage;
+import com.ac.srikar.mylocation.util.GeoMath;
+
+/**
+ * Online track simplification with an opening window.
+ * <p>
+ * The last retained fix is the anchor. Each new fix extends the window, as long as every
+ * fix since the anchor stays within {@link #getTolerance()} meters of the segment from the
+ * anchor to the new fix. When one does not, the previous fix is retained and becomes the new
+ * anchor. Unlike Douglas-Peucker this needs no complete track: every fix costs at most
+ * the configured window size in distance checks and memory is fixed. A full window forces a
+ * fix out, which also bounds how long a fix can wait.
+ * <p>
+ * As a {@link FixStage} the simplifier passes every fix on unchanged, so the UI still sees
+ * them all, and hands retained fixes to its downstream stage, typically a {@link TrackLog}.
+ * Retained fixes reach the downstream one fix late; call {@link #flush()} before closing it.
+ */
+public class TrackSimplifier implements FixStage {
+
+    // Default maximum distance in meters between a dropped fix and the simplified track.
+    public static final double DEFAULT_TOLERANCE_METERS = 5.0;
+
+    // Default number of fixes that may be pending since the anchor.
+    public static final int DEFAULT_WINDOW_SIZE = 64;
+
+    private final FixStage mDownstream;
+    private final double mTolerance;
+    private final double mToleranceSquared;
+
+    // Fixes since the anchor, in meters east and north of it. The last one is the candidate.
+    private final double[] mEast;
+    private final double[] mNorth;
+    private int mCount = 0;
+
+    private boolean mHasAnchor = false;
+    private double mAnchorLatitude;
+    private double mAnchorLongitude;
+    private double mMetersPerDegreeLongitude;
+
+    // Newest fix, retained when the next one breaks the tolerance.
+    private final Fix mCandidate = new Fix();
+    // Copy handed downstream, so that it cannot change the candidate.
+    private final Fix mOutput = new Fix();
+
+    private long mInputCount = 0;
+    private long mOutputCount = 0;
+
+    public TrackSimplifier(FixStage downstream) {
+        this(downstream, DEFAULT_TOLERANCE_METERS, DEFAULT_WINDOW_SIZE);
+    }
+
+    public TrackSimplifier(FixStage downstream, double toleranceMeters, int windowSize) {
+        if (toleranceMeters < 0 || windowSize < 1) {
+            throw new IllegalArgumentException("Invalid tolerance or window size");
+        }
+        mDownstream = downstream;
+        mTolerance = toleranceMeters;
+        mToleranceSquared = toleranceMeters * toleranceMeters;
+        mEast = new double[windowSize];
+        mNorth = new double[windowSize];
+    }
+
+    @Override
+    public boolean onFix(Fix fix) {
+        mInputCount++;
+        if (!mHasAnchor) {
+            // The first fix is always part of the track.
+            setAnchor(fix);
+            emit(fix);
+            return true;
+        }
+        double east = (fix.longitude - mAnchorLongitude) * mMetersPerDegreeLongitude;
+        double north = (fix.latitude - mAnchorLatitude) * GeoMath.METERS_PER_DEGREE;
+        if (mCount == mEast.length || (mCount > 0 && !isWindowWithinTolerance(east, north))) {
+            emit(mCandidate);
+            setAnchor(mCandidate);
+            east = (fix.longitude - mAnchorLongitude) * mMetersPerDegreeLongitude;
+            north = (fix.latitude - mAnchorLatitude) * GeoMath.METERS_PER_DEGREE;
+        }
+        mEast[mCount] = east;
+        mNorth[mCount] = north;
+        mCount++;
+        mCandidate.set(fix);
+        return true;
+    }
+
+    /**
+     * Whether all fixes since the anchor lie close enough to the segment from the anchor to
+     * (east, north).
+     */
+    private boolean isWindowWithinTolerance(double east, double north) {
+        double lengthSquared = east * east + north * north;
+        for (int i = 0; i < mCount; i++) {
+            double x = mEast[i];
+            double y = mNorth[i];
+            if (lengthSquared > 0) {
+                double t = (x * east + y * north) / lengthSquared;
+                t = Math.max(0, Math.min(1, t));
+                x -= t * east;
+                y -= t * north;
+            }
+            if (x * x + y * y > mToleranceSquared) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setAnchor(Fix fix) {
+        mHasAnchor = true;
+        mAnchorLatitude = fix.latitude;
+        mAnchorLongitude = fix.longitude;
+        mMetersPerDegreeLongitude = GeoMath.metersPerDegreeLongitude(fix.latitude);
+        mCount = 0;
+    }
+
+    private void emit(Fix fix) {
+        mOutputCount++;
+        mOutput.set(fix);
+        mDownstream.onFix(mOutput);
+    }
+
+    /**
+     * Hand the pending fix downstream, e.g. when recording stops, so that the track ends at
+     * the newest fix. Simplification continues from there.
+     */
+    public void flush() {
+        if (mCount > 0) {
+            emit(mCandidate);
+            setAnchor(mCandidate);
+        }
+    }
+
+    public double getTolerance() {
+        return mTolerance;
+    }
+
+    /**
+     * Number of fixes received.
+     */
+    public long getInputCount() {
+        return mInputCount;
+    }
+
+    /**
+     * Number of fixes handed downstream.
+     */
+    public long getOutputCount() {
+        return mOutputCount;
+    }
+}
@@ -0,0 +1,173 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.util.FixedFormatter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Base of the text exports, streaming fixes into a {@link WritableByteChannel}.
+ * <p>
+ * Text is assembled as ASCII straight into one reused byte buffer, numbers and times are
+ * formatted with {@link FixedFormatter}, and the buffer goes to the channel whenever it
+ * fills up. Nothing is allocated per fix and no more than the buffer is held in memory, so
+ * tracks of any length export with constant heap. Subclasses write the format specific
+ * header, fixes and footer with the {@code append} methods.
+ */
+public abstract class TrackTextWriter {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    // Decimals of latitude and longitude, about a centimeter.
+    static final int COORDINATE_DECIMALS = 7;
+
+    // Decimals of altitude in meters.
+    static final int ALTITUDE_DECIMALS = 1;
+
+    private final WritableByteChannel mChannel;
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] mBytes = mBuffer.array();
+    private int mPosition = 0;
+    private final char[] mChars = new char[FixedFormatter.MAX_LENGTH];
+
+    private boolean mStarted = false;
+    private boolean mFinished = false;
+    private long mCount = 0;
+
+    /**
+     * The writer buffers internally, the channel is written in large blocks.
+     */
+    protected TrackTextWriter(WritableByteChannel channel) {
+        mChannel = channel;
+    }
+
+    /**
+     * Append one fix.
+     */
+    public final void write(double latitude, double longitude, float accuracy, double altitude,
+                            float speed, long time) throws IOException {
+        if (mFinished) {
+            throw new IOException("Writer finished");
+        }
+        start();
+        writeFix(mCount, latitude, longitude, accuracy, altitude, speed, time);
+        mCount++;
+    }
+
+    /**
+     * Append every remaining fix of the reader.
+     *
+     * @return the number of fixes written
+     */
+    public long writeAll(TrackLogReader reader) throws IOException {
+        Fix fix = new Fix();
+        long count = 0;
+        while (reader.next(fix)) {
+            write(fix.latitude, fix.longitude, fix.accuracy, fix.altitude, fix.speed, fix.time);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Write the footer and everything still buffered. The channel is not closed.
+     */
+    public void finish() throws IOException {
+        if (mFinished) {
+            return;
+        }
+        start();
+        writeFooter(mCount);
+        mFinished = true;
+        flush();
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    private void start() throws IOException {
+        if (!mStarted) {
+            mStarted = true;
+            writeHeader();
+        }
+    }
+
+    protected abstract void writeHeader() throws IOException;
+
+    /**
+     * @param index number of fixes written before this one
+     */
+    protected abstract void writeFix(long index, double latitude, double longitude,
+                                     float accuracy, double altitude, float speed, long time)
+            throws IOException;
+
+    /**
+     * @param count number of fixes written
+     */
+    protected abstract void writeFooter(long count) throws IOException;
+
+    /**
+     * Bytes of a constant ASCII string, for the text around the values.
+     */
+    protected static byte[] ascii(String text) {
+        byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+
+    protected final void append(byte[] bytes) throws IOException {
+        if (bytes.length > BUFFER_SIZE - mPosition) {
+            flush();
+            if (bytes.length > BUFFER_SIZE) {
+                mChannel.write(ByteBuffer.wrap(bytes));
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, mBytes, mPosition, bytes.length);
+        mPosition += bytes.length;
+    }
+
+    protected final void appendFixed(double value, int decimals) throws IOException {
+        appendChars(FixedFormatter.formatFixed(value, decimals, mChars, 0));
+    }
+
+    protected final void appendLong(long value) throws IOException {
+        int length;
+        if (value < 0) {
+            mChars[0] = '-';
+            length = 1 + FixedFormatter.formatLong(-value, mChars, 1);
+        } else {
+            length = FixedFormatter.formatLong(value, mChars, 0);
+        }
+        appendChars(length);
+    }
+
+    protected final void appendIsoTime(long timeMillis) throws IOException {
+        appendChars(FixedFormatter.formatIsoTime(timeMillis, mChars, 0));
+    }
+
+    private void appendChars(int length) throws IOException {
+        if (length > BUFFER_SIZE - mPosition) {
+            flush();
+        }
+        for (int i = 0; i < length; i++) {
+            mBytes[mPosition + i] = (byte) mChars[i];
+        }
+        mPosition += length;
+    }
+
+    private void flush() throws IOException {
+        mBuffer.position(0);
+        mBuffer.limit(mPosition);
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+        mPosition = 0;
+    }
+}
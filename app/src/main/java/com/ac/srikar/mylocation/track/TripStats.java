@@ -0,0 +1,203 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.BatchFixStage;
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixBatch;
+import com.ac.srikar.mylocation.util.GeoMath;
+
+/**
+ * Live trip statistics, updated in constant time per fix from primitive accumulators.
+ * <p>
+ * Distance is counted from the last counted position once the device is further away from it
+ * than the fix accuracy, clamped to [{@link #MIN_STEP_METERS}, {@link #MAX_STEP_METERS}], so
+ * that position jitter at rest adds nothing. Moving time grows while the reported speed is at
+ * least {@link #MOVING_SPEED_THRESHOLD} m/s or a step was counted. Steps use the
+ * equirectangular distance, which is exact enough at this range and needs a single cosine.
+ * Elevation gain and loss only count changes of at least {@link #ELEVATION_THRESHOLD_METERS}
+ * from the last counted altitude, which filters altitude noise.
+ * <p>
+ * The stage methods and {@link #copyTo(TripStats)} may be called from different threads;
+ * the getters read the instance without locking, so read them from a copy on other threads.
+ */
+public class TripStats implements BatchFixStage {
+
+    // Minimum speed in m/s that counts as moving.
+    public static final double MOVING_SPEED_THRESHOLD = 0.5;
+
+    // Bounds of the distance from the last counted position that counts as a step.
+    public static final double MIN_STEP_METERS = 2.0;
+    public static final double MAX_STEP_METERS = 20.0;
+
+    // Minimum altitude change in meters counted as gain or loss.
+    public static final double ELEVATION_THRESHOLD_METERS = 3.0;
+
+    // Time between two fixes above which the gap does not count as moving time.
+    public static final long MAX_GAP_MILLIS = 60000;
+
+    private long mFixCount = 0;
+    private long mStartTime;
+    private long mLastTime;
+
+    // Last position counted towards the distance.
+    private double mAnchorLatitude;
+    private double mAnchorLongitude;
+
+    private double mDistance = 0;
+    private long mMovingMillis = 0;
+    private float mMaxSpeed = 0;
+
+    // Last altitude counted towards gain or loss, NaN until a fix has one.
+    private double mElevationReference = Double.NaN;
+    private double mElevationGain = 0;
+    private double mElevationLoss = 0;
+
+    @Override
+    public synchronized boolean onFix(Fix fix) {
+        add(fix.latitude, fix.longitude, fix.accuracy, fix.altitude, fix.speed, fix.time);
+        return true;
+    }
+
+    /**
+     * Add a whole batch under a single lock.
+     */
+    @Override
+    public synchronized void onFixes(FixBatch batch) {
+        for (int i = 0, n = batch.size(); i < n; i++) {
+            add(batch.latitude[i], batch.longitude[i], batch.accuracy[i], batch.altitude[i],
+                    batch.speed[i], batch.time[i]);
+        }
+    }
+
+    private void add(double latitude, double longitude, float accuracy, double altitude,
+                     float speed, long time) {
+        if (speed > mMaxSpeed) {
+            mMaxSpeed = speed;
+        }
+        updateElevation(altitude);
+        if (mFixCount++ == 0) {
+            mStartTime = time;
+            mLastTime = time;
+            mAnchorLatitude = latitude;
+            mAnchorLongitude = longitude;
+            return;
+        }
+        long dt = time - mLastTime;
+        if (dt <= 0) {
+            // Duplicate or out of order.
+            return;
+        }
+        mLastTime = time;
+        double step = GeoMath.fastDistance(mAnchorLatitude, mAnchorLongitude,
+                latitude, longitude);
+        boolean stepped = step >= Math.max(MIN_STEP_METERS,
+                Math.min(MAX_STEP_METERS, accuracy));
+        if (stepped) {
+            mDistance += step;
+            mAnchorLatitude = latitude;
+            mAnchorLongitude = longitude;
+        }
+        if ((stepped || speed >= MOVING_SPEED_THRESHOLD) && dt <= MAX_GAP_MILLIS) {
+            mMovingMillis += dt;
+        }
+    }
+
+    private void updateElevation(double altitude) {
+        // Providers report 0 when they have no altitude.
+        if (altitude == 0) {
+            return;
+        }
+        if (Double.isNaN(mElevationReference)) {
+            mElevationReference = altitude;
+        } else if (altitude - mElevationReference >= ELEVATION_THRESHOLD_METERS) {
+            mElevationGain += altitude - mElevationReference;
+            mElevationReference = altitude;
+        } else if (mElevationReference - altitude >= ELEVATION_THRESHOLD_METERS) {
+            mElevationLoss += mElevationReference - altitude;
+            mElevationReference = altitude;
+        }
+    }
+
+    /**
+     * Copy the statistics into {@code target}, e.g. to read them on another thread.
+     */
+    public synchronized void copyTo(TripStats target) {
+        target.mFixCount = mFixCount;
+        target.mStartTime = mStartTime;
+        target.mLastTime = mLastTime;
+        target.mAnchorLatitude = mAnchorLatitude;
+        target.mAnchorLongitude = mAnchorLongitude;
+        target.mDistance = mDistance;
+        target.mMovingMillis = mMovingMillis;
+        target.mMaxSpeed = mMaxSpeed;
+        target.mElevationReference = mElevationReference;
+        target.mElevationGain = mElevationGain;
+        target.mElevationLoss = mElevationLoss;
+    }
+
+    /**
+     * Start a new trip.
+     */
+    public synchronized void reset() {
+        mFixCount = 0;
+        mDistance = 0;
+        mMovingMillis = 0;
+        mMaxSpeed = 0;
+        mElevationReference = Double.NaN;
+        mElevationGain = 0;
+        mElevationLoss = 0;
+    }
+
+    public long getFixCount() {
+        return mFixCount;
+    }
+
+    /**
+     * Distance moved in meters.
+     */
+    public double getDistance() {
+        return mDistance;
+    }
+
+    /**
+     * Time spent moving in milliseconds.
+     */
+    public long getMovingTime() {
+        return mMovingMillis;
+    }
+
+    /**
+     * Time from the first to the newest fix in milliseconds.
+     */
+    public long getElapsedTime() {
+        return mFixCount == 0 ? 0 : mLastTime - mStartTime;
+    }
+
+    /**
+     * Average speed while moving in m/s.
+     */
+    public double getAverageSpeed() {
+        return mMovingMillis == 0 ? 0 : mDistance * 1000 / mMovingMillis;
+    }
+
+    /**
+     * Highest reported speed in m/s.
+     */
+    public float getMaxSpeed() {
+        return mMaxSpeed;
+    }
+
+    public double getElevationGain() {
+        return mElevationGain;
+    }
+
+    public double getElevationLoss() {
+        return mElevationLoss;
+    }
+
+    /**
+     * Moving time per kilometer in milliseconds, or 0 before any distance was covered.
+     */
+    public long getPace() {
+        return mDistance < 1 ? 0 : Math.round(mMovingMillis * 1000 / mDistance);
+    }
+}
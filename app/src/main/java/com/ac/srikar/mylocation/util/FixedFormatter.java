@@ -0,0 +1,198 @@
+package com.ac.srikar.mylocation.util;
+
+/**
+ * Fixed-precision number and time formatting into caller supplied char buffers.
+ * <p>
+ * Unlike {@link String#valueOf(double)} or {@link java.text.DateFormat} nothing here
+ * allocates, so it can run on every location fix.
+ */
+public final class FixedFormatter {
+
+    // Largest number of decimals supported by formatFixed().
+    public static final int MAX_DECIMALS = 9;
+
+    // Buffer length that fits any value written by the format methods.
+    public static final int MAX_LENGTH = 32;
+
+    private static final long[] POW10 = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L,
+            1000000000L
+    };
+
+    // Scaled values at or above this magnitude are printed as "Inf" to stay within a long.
+    private static final double MAX_SCALED = 9.0e17;
+
+    private static final char[] NAN = {'N', 'a', 'N'};
+    private static final char[] INF = {'I', 'n', 'f'};
+
+    private FixedFormatter() {
+    }
+
+    /**
+     * Rounds the value to the given number of decimals and returns it as a scaled long,
+     * e.g. {@code quantize(1.2345, 2) == 123}. Two values print the same text exactly when
+     * they quantize to the same long, which makes this the cheap dirty check for UI fields.
+     */
+    public static long quantize(double value, int decimals) {
+        if (Double.isNaN(value)) {
+            return Long.MIN_VALUE + 1;
+        }
+        return Math.round(value * POW10[decimals]);
+    }
+
+    /**
+     * Writes {@code value} with exactly {@code decimals} fraction digits into {@code out}
+     * starting at {@code offset}.
+     *
+     * @return the number of chars written
+     */
+    public static int formatFixed(double value, int decimals, char[] out, int offset) {
+        if (decimals < 0 || decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException("Unsupported decimals: " + decimals);
+        }
+        if (Double.isNaN(value)) {
+            System.arraycopy(NAN, 0, out, offset, NAN.length);
+            return NAN.length;
+        }
+        int pos = offset;
+        double magnitude = Math.abs(value) * POW10[decimals];
+        long scaled = Math.round(magnitude);
+        if (value < 0 && scaled != 0) {
+            out[pos++] = '-';
+        }
+        if (magnitude >= MAX_SCALED) {
+            System.arraycopy(INF, 0, out, pos, INF.length);
+            return pos + INF.length - offset;
+        }
+        long integer = scaled / POW10[decimals];
+        long fraction = scaled - integer * POW10[decimals];
+        pos += formatLong(integer, out, pos);
+        if (decimals > 0) {
+            out[pos++] = '.';
+            for (int i = decimals - 1; i >= 0; i--) {
+                out[pos + i] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            pos += decimals;
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Writes a non-negative long in decimal into {@code out} starting at {@code offset}.
+     *
+     * @return the number of chars written
+     */
+    public static int formatLong(long value, char[] out, int offset) {
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return digits;
+    }
+
+    /**
+     * Writes the wall clock time of {@code timeMillis} as {@code HH:mm:ss} into {@code out}
+     * starting at {@code offset}. {@code zoneOffsetMillis} is added to the UTC time, e.g. the
+     * value of {@link java.util.TimeZone#getOffset(long)}.
+     *
+     * @return the number of chars written, always 8
+     */
+    public static int formatTime(long timeMillis, int zoneOffsetMillis, char[] out, int offset) {
+        long localSeconds = floorDiv(timeMillis + zoneOffsetMillis, 1000);
+        int secondOfDay = (int) (localSeconds - floorDiv(localSeconds, 86400) * 86400);
+        int hours = secondOfDay / 3600;
+        int minutes = (secondOfDay / 60) % 60;
+        int seconds = secondOfDay % 60;
+        writeTwoDigits(hours, out, offset);
+        out[offset + 2] = ':';
+        writeTwoDigits(minutes, out, offset + 3);
+        out[offset + 5] = ':';
+        writeTwoDigits(seconds, out, offset + 6);
+        return 8;
+    }
+
+    /**
+     * Writes a non-negative duration as {@code m:ss}, or {@code h:mm:ss} from one hour on,
+     * into {@code out} starting at {@code offset}. Fractions of a second are dropped.
+     *
+     * @return the number of chars written
+     */
+    public static int formatDuration(long durationMillis, char[] out, int offset) {
+        long totalSeconds = Math.max(0, durationMillis) / 1000;
+        long hours = totalSeconds / 3600;
+        int minutes = (int) (totalSeconds / 60 % 60);
+        int seconds = (int) (totalSeconds % 60);
+        int pos = offset;
+        if (hours > 0) {
+            pos += formatLong(hours, out, pos);
+            out[pos++] = ':';
+            writeTwoDigits(minutes, out, pos);
+            pos += 2;
+        } else {
+            pos += formatLong(minutes, out, pos);
+        }
+        out[pos++] = ':';
+        writeTwoDigits(seconds, out, pos);
+        return pos + 2 - offset;
+    }
+
+    /**
+     * Writes the UTC time of {@code timeMillis} as ISO 8601, {@code yyyy-MM-ddTHH:mm:ssZ}, with
+     * {@code .SSS} before the Z if the time has a fraction of a second, into {@code out}
+     * starting at {@code offset}. Years must be within 0 to 9999.
+     *
+     * @return the number of chars written, 20 or 24
+     */
+    public static int formatIsoTime(long timeMillis, char[] out, int offset) {
+        long seconds = floorDiv(timeMillis, 1000);
+        int millis = (int) (timeMillis - seconds * 1000);
+        long days = floorDiv(seconds, 86400);
+        int secondOfDay = (int) (seconds - days * 86400);
+        // Civil date from days since the epoch, with years starting in March
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        writeTwoDigits(year / 100, out, offset);
+        writeTwoDigits(year % 100, out, offset + 2);
+        out[offset + 4] = '-';
+        writeTwoDigits(month, out, offset + 5);
+        out[offset + 7] = '-';
+        writeTwoDigits(day, out, offset + 8);
+        out[offset + 10] = 'T';
+        formatTime(secondOfDay * 1000L, 0, out, offset + 11);
+        int pos = offset + 19;
+        if (millis != 0) {
+            out[pos++] = '.';
+            out[pos++] = (char) ('0' + millis / 100);
+            writeTwoDigits(millis % 100, out, pos);
+            pos += 2;
+        }
+        out[pos++] = 'Z';
+        return pos - offset;
+    }
+
+    private static void writeTwoDigits(int value, char[] out, int offset) {
+        out[offset] = (char) ('0' + value / 10);
+        out[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            q--;
+        }
+        return q;
+    }
+}
@@ -0,0 +1,44 @@
+package com.ac.srikar.mylocation.util;
+
+/**
+ * Distance helpers for WGS84 coordinates on a spherical earth.
+ */
+public final class GeoMath {
+
+    // Mean earth radius in meters.
+    public static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    // Length of one degree of latitude, and of longitude at the equator.
+    public static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180;
+
+    private GeoMath() {
+    }
+
+    /**
+     * Length in meters of one degree of longitude at the given latitude.
+     */
+    public static double metersPerDegreeLongitude(double latitude) {
+        return METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+    }
+
+    /**
+     * Equirectangular approximation of the distance in meters. Cheap and accurate to well
+     * under a percent for the short hops between consecutive fixes.
+     */
+    public static double fastDistance(double lat1, double lon1, double lat2, double lon2) {
+        double x = (lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = lat2 - lat1;
+        return Math.sqrt(x * x + y * y) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * Great circle distance in meters, exact on the sphere at any distance.
+     */
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double sinLat = Math.sin(Math.toRadians(lat2 - lat1) / 2);
+        double sinLon = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        double a = sinLat * sinLat + Math.cos(Math.toRadians(lat1))
+                * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
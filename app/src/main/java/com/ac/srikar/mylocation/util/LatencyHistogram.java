@@ -0,0 +1,136 @@
+package com.ac.srikar.mylocation.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values, e.g. latencies, in log buckets.
+ * <p>
+ * Values below {@code 2 * SUB_BUCKETS} get a bucket each; above, every power of two is split
+ * into {@link #SUB_BUCKETS} linear buckets, so a bucket is never wider than 1/8 of its values
+ * and the whole long range takes a few hundred buckets. Recording is an atomic increment
+ * plus, rarely, a CAS for the maximum, so any number of threads may record without locks
+ * or allocation. Readers see a consistent enough view for monitoring, not a snapshot.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    // Linear buckets per power of two.
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKET_COUNT = bucketIndex(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Largest value that falls into the bucket.
+     */
+    static long bucketUpperBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        if (shift + SUB_BUCKET_BITS + 1 >= 63) {
+            return Long.MAX_VALUE;
+        }
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Record one value. Negative values, e.g. from clock adjustments, count as 0.
+     */
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    /**
+     * Record {@code count} occurrences of the value.
+     */
+    public void record(long value, long count) {
+        if (count <= 0) {
+            return;
+        }
+        if (value < 0) {
+            value = 0;
+        }
+        mCounts.addAndGet(bucketIndex(value), count);
+        mCount.addAndGet(count);
+        mSum.addAndGet(value * count);
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    public double getMean() {
+        long count = mCount.get();
+        return count == 0 ? 0 : (double) mSum.get() / count;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile, capped at the maximum, or 0 if
+     * nothing was recorded.
+     *
+     * @param percentile between 0 and 100
+     */
+    public long getPercentile(double percentile) {
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mCounts.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+    /**
+     * Forget everything recorded. Values recorded concurrently may survive partially.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts.set(i, 0);
+        }
+        mCount.set(0);
+        mSum.set(0);
+        mMax.set(0);
+    }
+
+    /**
+     * One line summary: count, mean, median, 90th and 99th percentile and maximum.
+     */
+    public String summary() {
+        return "count=" + getCount()
+                + " mean=" + Math.round(getMean())
+                + " p50=" + getPercentile(50)
+                + " p90=" + getPercentile(90)
+                + " p99=" + getPercentile(99)
+                + " max=" + getMax();
+    }
+}
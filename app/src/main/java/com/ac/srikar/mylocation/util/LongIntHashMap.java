@@ -0,0 +1,111 @@
+package com.ac.srikar.mylocation.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long to int without boxing.
+ * <p>
+ * Keys are stored in a single array with linear probing; {@link Long#MIN_VALUE} marks free
+ * slots and cannot be used as a key. Entries cannot be removed.
+ */
+public class LongIntHashMap {
+
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] mKeys;
+    private int[] mValues;
+    private int mMask;
+    private int mSize = 0;
+    private int mResizeThreshold;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        Arrays.fill(mKeys, FREE);
+        mValues = new int[capacity];
+        mMask = capacity - 1;
+        mResizeThreshold = capacity / 4 * 3;
+    }
+
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    /**
+     * Value of {@code key}, or {@code missing} if it is not in the map.
+     */
+    public int get(long key, int missing) {
+        int slot = hash(key) & mMask;
+        while (true) {
+            long k = mKeys[slot];
+            if (k == key) {
+                return mValues[slot];
+            }
+            if (k == FREE) {
+                return missing;
+            }
+            slot = (slot + 1) & mMask;
+        }
+    }
+
+    /**
+     * Associate {@code value} with {@code key}, replacing any previous value.
+     */
+    public void put(long key, int value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Reserved key");
+        }
+        int slot = hash(key) & mMask;
+        while (true) {
+            long k = mKeys[slot];
+            if (k == key) {
+                mValues[slot] = value;
+                return;
+            }
+            if (k == FREE) {
+                mKeys[slot] = key;
+                mValues[slot] = value;
+                if (++mSize > mResizeThreshold) {
+                    rehash();
+                }
+                return;
+            }
+            slot = (slot + 1) & mMask;
+        }
+    }
+
+    private void rehash() {
+        long[] keys = mKeys;
+        int[] values = mValues;
+        allocate(keys.length * 2);
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            if (key != FREE) {
+                int slot = hash(key) & mMask;
+                while (mKeys[slot] != FREE) {
+                    slot = (slot + 1) & mMask;
+                }
+                mKeys[slot] = key;
+                mValues[slot] = values[i];
+            }
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void clear() {
+        Arrays.fill(mKeys, FREE);
+        mSize = 0;
+    }
+}
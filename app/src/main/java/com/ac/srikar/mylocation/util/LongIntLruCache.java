@@ -0,0 +1,171 @@
+package com.ac.srikar.mylocation.util;
+
+import java.util.Arrays;
+
+/**
+ * Fixed capacity cache from long to int without boxing, evicting the least recently used
+ * entry when full.
+ * <p>
+ * Entries live in parallel arrays linked into a recency list; an open addressing table with
+ * linear probing maps keys to entries and is kept free of tombstones by shifting entries
+ * back on removal. Neither hits nor misses allocate. Not thread safe.
+ */
+public class LongIntLruCache {
+
+    private static final int NONE = -1;
+
+    private final long[] mKeys;
+    private final int[] mValues;
+    // Recency list, most recent first.
+    private final int[] mPrevious;
+    private final int[] mNext;
+    private int mHead = NONE;
+    private int mTail = NONE;
+    private int mSize = 0;
+
+    // Entry of every slot, or NONE.
+    private final int[] mTable;
+    private final int mMask;
+
+    private long mHits = 0;
+    private long mMisses = 0;
+
+    public LongIntLruCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+        mPrevious = new int[capacity];
+        mNext = new int[capacity];
+        // At most half full
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+        mTable = new int[tableSize];
+        Arrays.fill(mTable, NONE);
+        mMask = tableSize - 1;
+    }
+
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    private int findSlot(long key) {
+        int slot = hash(key) & mMask;
+        while (mTable[slot] != NONE && mKeys[mTable[slot]] != key) {
+            slot = (slot + 1) & mMask;
+        }
+        return slot;
+    }
+
+    /**
+     * Value of {@code key}, marking it as the most recently used, or {@code missing} if it is
+     * not cached.
+     */
+    public int get(long key, int missing) {
+        int entry = mTable[findSlot(key)];
+        if (entry == NONE) {
+            mMisses++;
+            return missing;
+        }
+        mHits++;
+        if (entry != mHead) {
+            unlink(entry);
+            linkFirst(entry);
+        }
+        return mValues[entry];
+    }
+
+    /**
+     * Associate {@code value} with {@code key}, evicting the least recently used entry if the
+     * cache is full.
+     */
+    public void put(long key, int value) {
+        int slot = findSlot(key);
+        int entry = mTable[slot];
+        if (entry != NONE) {
+            unlink(entry);
+        } else {
+            if (mSize < mKeys.length) {
+                entry = mSize++;
+            } else {
+                entry = mTail;
+                unlink(entry);
+                removeSlot(findSlot(mKeys[entry]));
+                // The removal may have shifted the free slot found for the key
+                slot = findSlot(key);
+            }
+            mKeys[entry] = key;
+            mTable[slot] = entry;
+        }
+        mValues[entry] = value;
+        linkFirst(entry);
+    }
+
+    /**
+     * Empty the slot and move back the entries probed past it, so lookups need no tombstones.
+     */
+    private void removeSlot(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mMask;
+        while (mTable[next] != NONE) {
+            int home = hash(mKeys[mTable[next]]) & mMask;
+            // Move the entry unless its home slot lies cyclically between the hole and it
+            if (((next - home) & mMask) >= ((next - hole) & mMask)) {
+                mTable[hole] = mTable[next];
+                hole = next;
+            }
+            next = (next + 1) & mMask;
+        }
+        mTable[hole] = NONE;
+    }
+
+    private void unlink(int entry) {
+        int previous = mPrevious[entry];
+        int next = mNext[entry];
+        if (previous != NONE) {
+            mNext[previous] = next;
+        } else {
+            mHead = next;
+        }
+        if (next != NONE) {
+            mPrevious[next] = previous;
+        } else {
+            mTail = previous;
+        }
+    }
+
+    private void linkFirst(int entry) {
+        mPrevious[entry] = NONE;
+        mNext[entry] = mHead;
+        if (mHead != NONE) {
+            mPrevious[mHead] = entry;
+        } else {
+            mTail = entry;
+        }
+        mHead = entry;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int capacity() {
+        return mKeys.length;
+    }
+
+    public long getHitCount() {
+        return mHits;
+    }
+
+    public long getMissCount() {
+        return mMisses;
+    }
+
+    public void clear() {
+        Arrays.fill(mTable, NONE);
+        mHead = NONE;
+        mTail = NONE;
+        mSize = 0;
+    }
+}
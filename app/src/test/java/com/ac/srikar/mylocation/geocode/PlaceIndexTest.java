@@ -0,0 +1,129 @@
+package com.ac.srikar.mylocation.geocode;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.util.GeoMath;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PlaceIndexTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("places", ".mlpi");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mFile.delete();
+    }
+
+    @Test
+    public void nearest_matchesLinearScan() throws Exception {
+        Random random = new Random(7);
+        PlaceIndexWriter writer = new PlaceIndexWriter(0.05);
+        double[][] places = new double[500][];
+        for (int i = 0; i < places.length; i++) {
+            places[i] = new double[]{47 + random.nextDouble() * 8, 5 + random.nextDouble() * 10};
+            writer.add(places[i][0], places[i][1], "Place " + i);
+        }
+        writer.write(mFile);
+        PlaceIndex index = PlaceIndex.open(mFile);
+        assertEquals(places.length, index.size());
+
+        for (int q = 0; q < 200; q++) {
+            // Also query outside of the grid
+            double latitude = 46 + random.nextDouble() * 10;
+            double longitude = 4 + random.nextDouble() * 12;
+            double bestDistance = 30000;
+            String expected = null;
+            for (int i = 0; i < places.length; i++) {
+                double distance = GeoMath.fastDistance(latitude, longitude, places[i][0],
+                        places[i][1]);
+                if (distance <= bestDistance) {
+                    bestDistance = distance;
+                    expected = "Place " + i;
+                }
+            }
+            int id = index.nearest(latitude, longitude, 30000);
+            if (expected == null) {
+                assertEquals(PlaceIndex.NO_PLACE, id);
+            } else {
+                assertEquals(expected, index.getLabel(id));
+            }
+        }
+    }
+
+    @Test
+    public void getLabel_decodesUtf8() throws Exception {
+        PlaceIndexWriter writer = new PlaceIndexWriter();
+        writer.add(48.137, 11.575, "M\u00fcnchen");
+        writer.add(52.52, 13.405, "Berlin");
+        writer.write(mFile);
+        PlaceIndex index = PlaceIndex.open(mFile);
+        assertEquals("M\u00fcnchen", index.getLabel(index.nearest(48.14, 11.58, 5000)));
+        assertEquals("Berlin", index.getLabel(index.nearest(52.5, 13.4, 5000)));
+        assertEquals(PlaceIndex.NO_PLACE, index.nearest(50, 12, 5000));
+        assertEquals(48.137, index.getLatitude(index.nearest(48.14, 11.58, 5000)), 1e-6);
+    }
+
+    @Test
+    public void empty_findsNothing() throws Exception {
+        new PlaceIndexWriter().write(mFile);
+        assertEquals(PlaceIndex.NO_PLACE, PlaceIndex.open(mFile).nearest(0, 0, 1e7));
+    }
+
+    @Test
+    public void reverseGeocoder_reportsPlaceChangesOnly() throws Exception {
+        PlaceIndexWriter writer = new PlaceIndexWriter();
+        writer.add(52.0, 13.0, "West");
+        writer.add(52.0, 13.1, "East");
+        writer.write(mFile);
+        final List<String> labels = new ArrayList<String>();
+        ReverseGeocoder geocoder = new ReverseGeocoder(mFile, 10000, 16,
+                new ReverseGeocoder.Listener() {
+                    @Override
+                    public void onPlaceChanged(String label) {
+                        labels.add(label);
+                    }
+                });
+        geocoder.onStart();
+        Fix fix = new Fix();
+        for (int i = 0; i <= 100; i++) {
+            geocoder.onFix(fix.set(52.0, 13.0 + 0.001 * i, 5f, 0, 10f, 1000L * i));
+        }
+        // Back west through cached cells, then far away
+        geocoder.onFix(fix.set(52.0, 13.0, 5f, 0, 10f, 200000));
+        geocoder.onFix(fix.set(53.0, 13.0, 5f, 0, 10f, 201000));
+        geocoder.onShutdown();
+        List<String> expected = new ArrayList<String>();
+        expected.add("West");
+        expected.add("East");
+        expected.add("West");
+        expected.add(null);
+        assertEquals(expected, labels);
+    }
+
+    @Test
+    public void reverseGeocoder_withoutIndexIgnoresFixes() throws Exception {
+        assertTrue(mFile.delete());
+        ReverseGeocoder geocoder = new ReverseGeocoder(mFile, new ReverseGeocoder.Listener() {
+            @Override
+            public void onPlaceChanged(String label) {
+                fail();
+            }
+        });
+        geocoder.onStart();
+        assertTrue(geocoder.onFix(new Fix().set(52, 13, 5f, 0, 0f, 0)));
+    }
+}
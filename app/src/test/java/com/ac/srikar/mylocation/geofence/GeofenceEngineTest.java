@@ -0,0 +1,116 @@
+package com.ac.srikar.mylocation.geofence;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.util.GeoMath;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GeofenceEngineTest {
+
+    private final List<String> mEvents = new ArrayList<String>();
+
+    private final GeofenceEngine.Listener mListener = new GeofenceEngine.Listener() {
+        @Override
+        public void onGeofenceTransition(int fenceId, int transition, Fix fix) {
+            String name = transition == GeofenceEngine.TRANSITION_ENTER ? "enter"
+                    : transition == GeofenceEngine.TRANSITION_EXIT ? "exit" : "dwell";
+            mEvents.add(name + " " + fenceId);
+        }
+    };
+
+    private final Fix mFix = new Fix();
+
+    private void fix(GeofenceEngine engine, double latitude, double longitude, long time) {
+        mFix.set(latitude, longitude, 5f, 0, 0f, time);
+        assertTrue(engine.onFix(mFix));
+    }
+
+    @Test
+    public void circle_reportsEnterDwellExit() throws Exception {
+        GeofenceEngine engine = new GeofenceEngine(mListener, GeofenceEngine.DEFAULT_CELL_DEGREES,
+                60000);
+        int fence = engine.addCircle(48.8584, 2.2945, 100);
+        double step = 50 / GeoMath.METERS_PER_DEGREE;
+        fix(engine, 48.8584 - 4 * step, 2.2945, 0);
+        fix(engine, 48.8584 - step, 2.2945, 10000);
+        fix(engine, 48.8584, 2.2945, 40000);
+        fix(engine, 48.8584 + step, 2.2945, 70000);
+        fix(engine, 48.8584 + step, 2.2945, 80000);
+        fix(engine, 48.8584 + 4 * step, 2.2945, 90000);
+        assertEquals("[enter 0, dwell 0, exit 0]", mEvents.toString());
+        assertEquals(0, fence);
+        assertFalse(engine.isInside(fence));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void circle_rejectsNaNRadius() throws Exception {
+        new GeofenceEngine(mListener).addCircle(0, 0, Double.NaN);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void circle_rejectsNegativeRadius() throws Exception {
+        new GeofenceEngine(mListener).addCircle(0, 0, -1);
+    }
+
+    @Test
+    public void polygon_handlesConcaveShape() throws Exception {
+        GeofenceEngine engine = new GeofenceEngine(mListener);
+        // U shape opening north, 0.02 degrees wide.
+        int fence = engine.addPolygon(
+                new double[]{0, 0, 0.02, 0.02, 0.005, 0.005, 0.02, 0.02},
+                new double[]{0, 0.02, 0.02, 0.015, 0.015, 0.005, 0.005, 0});
+        assertTrue(engine.contains(fence, 0.002, 0.01));
+        assertTrue(engine.contains(fence, 0.015, 0.002));
+        assertFalse(engine.contains(fence, 0.015, 0.01));
+        assertFalse(engine.contains(fence, 0.03, 0.01));
+    }
+
+    @Test
+    public void exit_isReportedAfterLeavingTheFenceCells() throws Exception {
+        GeofenceEngine engine = new GeofenceEngine(mListener);
+        engine.addCircle(10, 10, 50);
+        fix(engine, 10, 10, 0);
+        fix(engine, 11, 11, 1000);
+        assertEquals("[enter 0, exit 0]", mEvents.toString());
+        assertEquals(0, engine.getInsideCount());
+    }
+
+    @Test
+    public void overlappingFences_matchBruteForce() throws Exception {
+        GeofenceEngine engine = new GeofenceEngine(mListener);
+        Random random = new Random(11);
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            double latitude = 40 + random.nextDouble() * 0.5;
+            double longitude = -74 + random.nextDouble() * 0.5;
+            if (i % 2 == 0) {
+                engine.addCircle(latitude, longitude, 50 + random.nextDouble() * 2000);
+            } else {
+                double d = 0.001 + random.nextDouble() * 0.01;
+                engine.addPolygon(new double[]{latitude - d, latitude - d, latitude + d},
+                        new double[]{longitude - d, longitude + d, longitude});
+            }
+        }
+        assertEquals(count, engine.getFenceCount());
+        for (int f = 0; f < 300; f++) {
+            double latitude = 40 + random.nextDouble() * 0.5;
+            double longitude = -74 + random.nextDouble() * 0.5;
+            fix(engine, latitude, longitude, f * 1000L);
+            int inside = 0;
+            for (int id = 0; id < count; id++) {
+                boolean expected = engine.contains(id, latitude, longitude);
+                assertEquals(expected, engine.isInside(id));
+                if (expected) {
+                    inside++;
+                }
+            }
+            assertEquals(inside, engine.getInsideCount());
+        }
+    }
+}
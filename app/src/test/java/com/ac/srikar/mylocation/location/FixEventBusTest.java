@@ -0,0 +1,199 @@
+package com.ac.srikar.mylocation.location;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FixEventBusTest {
+
+    private FixEventBus mBus;
+
+    @After
+    public void tearDown() throws Exception {
+        if (mBus != null) {
+            mBus.shutdown();
+            assertTrue(mBus.awaitTermination(5000));
+        }
+    }
+
+    private static Fix fix(int i) {
+        Fix fix = new Fix();
+        fix.set(i, -i, 3f, 10, 1f, 1000L * i);
+        return fix;
+    }
+
+    /**
+     * Records the time of every fix it receives.
+     */
+    private static class Recorder implements FixStage, FixEventBus.Lifecycle {
+
+        final List<Long> mTimes = new ArrayList<Long>();
+        final CountDownLatch mShutdown = new CountDownLatch(1);
+        volatile boolean mStarted = false;
+        volatile long mDelayMillis = 0;
+
+        @Override
+        public void onStart() {
+            mStarted = true;
+        }
+
+        @Override
+        public synchronized boolean onFix(Fix fix) {
+            assertEquals(-fix.latitude, fix.longitude, 0);
+            assertEquals(1000L * (long) fix.latitude, fix.time);
+            mTimes.add(fix.time);
+            if (mDelayMillis > 0) {
+                try {
+                    Thread.sleep(mDelayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void onShutdown() {
+            mShutdown.countDown();
+        }
+
+        synchronized List<Long> times() {
+            return new ArrayList<Long>(mTimes);
+        }
+    }
+
+    @Test
+    public void capacity_roundsUpToPowerOfTwo() {
+        assertEquals(8, new FixEventBus(5).getCapacity());
+        assertEquals(16, new FixEventBus(16).getCapacity());
+    }
+
+    @Test
+    public void blockingConsumers_receiveEveryFixInOrder() throws Exception {
+        mBus = new FixEventBus(8);
+        Recorder fast = new Recorder();
+        Recorder slow = new Recorder();
+        slow.mDelayMillis = 1;
+        mBus.subscribe("fast", fast, FixEventBus.Backpressure.BLOCK);
+        FixEventBus.Subscription slowSubscription =
+                mBus.subscribe("slow", slow, FixEventBus.Backpressure.BLOCK);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, mBus.publish(fix(i)));
+        }
+        mBus.shutdown();
+        assertTrue(mBus.awaitTermination(5000));
+        mBus = null;
+
+        assertTrue(fast.mStarted);
+        assertEquals(0, fast.mShutdown.getCount());
+        assertEquals(100, fast.times().size());
+        assertEquals(100, slow.times().size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(1000L * i, (long) fast.times().get(i));
+            assertEquals(1000L * i, (long) slow.times().get(i));
+        }
+        assertEquals(0, slowSubscription.getDroppedCount());
+        assertEquals(0, slowSubscription.getBacklog());
+    }
+
+    @Test
+    public void droppingConsumer_doesNotHoldBackProducer() throws Exception {
+        mBus = new FixEventBus(4);
+        Recorder blocking = new Recorder();
+        Recorder dropping = new Recorder();
+        dropping.mDelayMillis = 50;
+        mBus.subscribe("blocking", blocking, FixEventBus.Backpressure.BLOCK);
+        FixEventBus.Subscription droppingSubscription =
+                mBus.subscribe("dropping", dropping, FixEventBus.Backpressure.DROP);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            mBus.publish(fix(i));
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        mBus.shutdown();
+        assertTrue(mBus.awaitTermination(5000));
+        mBus = null;
+
+        // Waiting for the dropping consumer would take 200 * 50 ms.
+        assertTrue(elapsedMillis < 5000);
+        assertEquals(200, blocking.times().size());
+        List<Long> times = dropping.times();
+        assertTrue(times.size() < 200);
+        assertEquals(200, times.size() + droppingSubscription.getDroppedCount());
+        for (int i = 1; i < times.size(); i++) {
+            assertTrue(times.get(i) > times.get(i - 1));
+        }
+        // Whatever was left in the ring at shutdown is still delivered.
+        assertEquals(199000L, (long) times.get(times.size() - 1));
+    }
+
+    @Test
+    public void post_runsBetweenFixesInOrder() throws Exception {
+        mBus = new FixEventBus(8);
+        final Recorder recorder = new Recorder();
+        recorder.mDelayMillis = 5;
+        FixEventBus.Subscription subscription = mBus.subscribe("tasks", recorder,
+                FixEventBus.Backpressure.BLOCK);
+        final List<Integer> seen = new ArrayList<Integer>();
+        for (int i = 0; i < 20; i++) {
+            mBus.publish(fix(i));
+            if (i % 5 == 4) {
+                subscription.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        seen.add(recorder.times().size());
+                    }
+                });
+            }
+        }
+        final CountDownLatch idle = new CountDownLatch(1);
+        subscription.post(new Runnable() {
+            @Override
+            public void run() {
+                idle.countDown();
+            }
+        });
+        assertTrue(idle.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(5, 10, 15, 20), seen);
+    }
+
+    @Test
+    public void subscribe_startsAfterPublishedFixes() throws Exception {
+        mBus = new FixEventBus(8);
+        mBus.publish(fix(0));
+        mBus.publish(fix(1));
+        Recorder recorder = new Recorder();
+        mBus.subscribe("late", recorder, FixEventBus.Backpressure.BLOCK);
+        mBus.publish(fix(2));
+        mBus.shutdown();
+        assertTrue(mBus.awaitTermination(5000));
+        mBus = null;
+
+        assertEquals(1, recorder.times().size());
+        assertEquals(2000L, (long) recorder.times().get(0));
+    }
+
+    @Test
+    public void unsubscribe_releasesProducer() throws Exception {
+        mBus = new FixEventBus(2);
+        Recorder recorder = new Recorder();
+        recorder.mDelayMillis = 1000;
+        FixEventBus.Subscription subscription =
+                mBus.subscribe("stuck", recorder, FixEventBus.Backpressure.BLOCK);
+        mBus.publish(fix(0));
+        mBus.unsubscribe(subscription);
+        for (int i = 1; i < 10; i++) {
+            mBus.publish(fix(i));
+        }
+        assertEquals(9, mBus.getCursor());
+    }
+}
@@ -0,0 +1,87 @@
+package com.ac.srikar.mylocation.location;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IntervalSchedulerTest {
+
+    // Roughly one meter in degrees of latitude.
+    private static final double METER = 1 / 111320.0;
+
+    private final List<UpdatePolicy> mChanges = new ArrayList<UpdatePolicy>();
+    private final Fix mFix = new Fix();
+    private IntervalScheduler mScheduler;
+    private long mTime;
+    private double mLatitude;
+
+    @Before
+    public void setUp() throws Exception {
+        mScheduler = new IntervalScheduler(UpdatePolicy.MOVING, new IntervalScheduler.Listener() {
+            @Override
+            public void onPolicyChanged(UpdatePolicy policy) {
+                mChanges.add(policy);
+            }
+        });
+    }
+
+    private void move(int fixes, long intervalMillis, float speed, float accuracy) {
+        for (int i = 0; i < fixes; i++) {
+            mTime += intervalMillis;
+            mLatitude += speed * intervalMillis / 1000.0 * METER;
+            mScheduler.onFix(mFix.set(mLatitude, 0, accuracy, 0, speed, mTime));
+        }
+    }
+
+    @Test
+    public void stationaryDevice_settlesOnStationary() throws Exception {
+        move(100, 5000, 0f, 5f);
+
+        assertEquals(2, mChanges.size());
+        assertEquals(UpdatePolicy.SLOW, mChanges.get(0));
+        assertEquals(UpdatePolicy.STATIONARY, mChanges.get(1));
+    }
+
+    @Test
+    public void fastDevice_switchesToFastAndBackWithHysteresis() throws Exception {
+        move(20, 5000, 20f, 5f);
+        assertEquals(UpdatePolicy.FAST, mScheduler.getPolicy());
+
+        // Between the down and up thresholds of FAST: no change.
+        move(20, 2000, 10f, 5f);
+        assertEquals(UpdatePolicy.FAST, mScheduler.getPolicy());
+
+        move(20, 2000, 5f, 5f);
+        assertEquals(UpdatePolicy.MOVING, mScheduler.getPolicy());
+        assertEquals(2, mChanges.size());
+    }
+
+    @Test
+    public void singleOutlier_doesNotChangePolicy() throws Exception {
+        move(20, 5000, 4f, 5f);
+        move(1, 5000, 60f, 5f);
+        move(20, 5000, 4f, 5f);
+
+        assertTrue(mChanges.isEmpty());
+    }
+
+    @Test
+    public void poorAccuracy_capsAtSlow() throws Exception {
+        move(20, 5000, 20f, 150f);
+
+        assertEquals(UpdatePolicy.SLOW, mScheduler.getPolicy());
+    }
+
+    @Test
+    public void leavingStationary_returnsToMovingPolicy() throws Exception {
+        move(60, 5000, 0f, 5f);
+        assertEquals(UpdatePolicy.STATIONARY, mScheduler.getPolicy());
+
+        move(30, 5000, 5f, 5f);
+        assertEquals(UpdatePolicy.MOVING, mScheduler.getPolicy());
+    }
+}
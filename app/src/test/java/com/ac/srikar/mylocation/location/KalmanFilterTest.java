@@ -0,0 +1,110 @@
+package com.ac.srikar.mylocation.location;
+
+import com.ac.srikar.mylocation.util.GeoMath;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class KalmanFilterTest {
+
+    private static final double LATITUDE = 37.422;
+    private static final double LONGITUDE = -122.084;
+
+    private final Fix mFix = new Fix();
+
+    @Test
+    public void stationaryNoise_isSmoothed() throws Exception {
+        KalmanFilter filter = new KalmanFilter(0.1);
+        Random random = new Random(42);
+        double rawError = 0;
+        double smoothedError = 0;
+        for (int i = 0; i < 200; i++) {
+            double north = random.nextGaussian() * 10;
+            double east = random.nextGaussian() * 10;
+            mFix.set(LATITUDE + north / GeoMath.METERS_PER_DEGREE,
+                    LONGITUDE + east / GeoMath.metersPerDegreeLongitude(LATITUDE),
+                    10f, 0, 0f, i * 1000L);
+            filter.onFix(mFix);
+            if (i >= 50) {
+                rawError += Math.hypot(north, east);
+                smoothedError += GeoMath.fastDistance(LATITUDE, LONGITUDE,
+                        mFix.latitude, mFix.longitude);
+            }
+        }
+        assertTrue(smoothedError < rawError / 2);
+        assertTrue(filter.getAccuracy() < 10);
+        assertEquals(mFix.accuracy, filter.getAccuracy(), 1e-6);
+    }
+
+    @Test
+    public void constantVelocity_isTracked() throws Exception {
+        KalmanFilter filter = new KalmanFilter();
+        for (int i = 0; i < 60; i++) {
+            // 10 m/s towards north.
+            mFix.set(LATITUDE + i * 10 / GeoMath.METERS_PER_DEGREE, LONGITUDE, 5f, 0, 0f,
+                    i * 1000L);
+            filter.onFix(mFix);
+        }
+        assertEquals(10, filter.getVelocityNorth(), 0.5);
+        assertEquals(0, filter.getVelocityEast(), 0.5);
+        assertEquals(10f, mFix.speed, 0.5f);
+        assertEquals(LATITUDE + 590 / GeoMath.METERS_PER_DEGREE, mFix.latitude, 2e-5);
+    }
+
+    @Test
+    public void largeJump_resetsToMeasurement() throws Exception {
+        KalmanFilter filter = new KalmanFilter();
+        for (int i = 0; i < 10; i++) {
+            filter.onFix(mFix.set(LATITUDE, LONGITUDE, 5f, 0, 0f, i * 1000L));
+        }
+        filter.onFix(mFix.set(LATITUDE + 0.1, LONGITUDE, 5f, 0, 0f, 10000L));
+
+        assertEquals(LATITUDE + 0.1, mFix.latitude, 1e-9);
+        assertEquals(5f, mFix.accuracy, 1e-3f);
+    }
+
+    @Test
+    public void farTravel_keepsPositionAcrossRecenter() throws Exception {
+        KalmanFilter filter = new KalmanFilter();
+        double latitude = LATITUDE;
+        for (int i = 0; i < 3000; i++) {
+            // 30 m/s for 90 km.
+            latitude += 30 / GeoMath.METERS_PER_DEGREE;
+            filter.onFix(mFix.set(latitude, LONGITUDE, 5f, 0, 30f, i * 1000L));
+        }
+        assertEquals(latitude, mFix.latitude, 1e-4);
+        assertEquals(LONGITUDE, mFix.longitude, 1e-6);
+    }
+
+    @Test
+    public void batch_matchesFixByFix() throws Exception {
+        KalmanFilter single = new KalmanFilter();
+        KalmanFilter batched = new KalmanFilter();
+        FixBatch batch = new FixBatch(4);
+        Random random = new Random(9);
+        Fix[] expected = new Fix[100];
+        for (int i = 0; i < expected.length; i++) {
+            double north = i * 1.5 + random.nextGaussian() * 5;
+            double east = random.nextGaussian() * 5;
+            mFix.set(LATITUDE + north / GeoMath.METERS_PER_DEGREE,
+                    LONGITUDE + east / GeoMath.metersPerDegreeLongitude(LATITUDE),
+                    8f, 12, i % 2 == 0 ? 1.5f : 0f, i * 1000L);
+            batch.add(mFix);
+            single.onFix(mFix);
+            expected[i] = new Fix().set(mFix);
+        }
+        batched.onFixes(batch);
+        assertEquals(expected.length, batch.size());
+        for (int i = 0; i < expected.length; i++) {
+            batch.get(i, mFix);
+            assertEquals(expected[i].latitude, mFix.latitude, 0);
+            assertEquals(expected[i].longitude, mFix.longitude, 0);
+            assertEquals(expected[i].accuracy, mFix.accuracy, 0);
+            assertEquals(expected[i].speed, mFix.speed, 0);
+            assertEquals(expected[i].time, mFix.time);
+        }
+    }
+}
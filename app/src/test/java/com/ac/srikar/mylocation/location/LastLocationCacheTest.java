@@ -0,0 +1,35 @@
+package com.ac.srikar.mylocation.location;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LastLocationCacheTest {
+
+    @Test
+    public void isFresh_checksAgeAndAccuracy() throws Exception {
+        LastLocationCache cache = new LastLocationCache(30000, 50f);
+        assertFalse(cache.isFresh(0));
+        assertNull(cache.get());
+
+        cache.update(new Fix().set(1, 2, 20f, 0, 0f, 100000));
+        assertTrue(cache.isFresh(100000));
+        assertTrue(cache.isFresh(130000));
+        assertFalse(cache.isFresh(130001));
+
+        cache.update(new Fix().set(1, 2, 80f, 0, 0f, 110000));
+        assertFalse(cache.isFresh(110000));
+    }
+
+    @Test
+    public void update_ignoresOlderFixes() throws Exception {
+        LastLocationCache cache = new LastLocationCache();
+        cache.update(new Fix().set(1, 2, 5f, 0, 0f, 2000));
+        cache.update(new Fix().set(3, 4, 5f, 0, 0f, 1000));
+        assertEquals(1, cache.get().latitude, 0);
+        assertEquals(2000, cache.get().time);
+
+        cache.clear();
+        assertNull(cache.get());
+    }
+}
@@ -0,0 +1,132 @@
+package com.ac.srikar.mylocation.location;
+
+import com.ac.srikar.mylocation.util.GeoMath;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StationaryFilterTest {
+
+    private static final double LATITUDE = 52.0;
+    private static final double LONGITUDE = 13.0;
+
+    private StationaryFilter mFilter;
+    private int mDwells = 0;
+    private int mDwellFixCount;
+    private long mDwellStartTime;
+    private long mDwellEndTime;
+    private double mDwellLatitude;
+
+    @Before
+    public void setUp() {
+        mFilter = new StationaryFilter(new StationaryFilter.Listener() {
+            @Override
+            public void onDwell(double latitude, double longitude, long startTime,
+                                long endTime, int fixCount) {
+                mDwells++;
+                mDwellLatitude = latitude;
+                mDwellStartTime = startTime;
+                mDwellEndTime = endTime;
+                mDwellFixCount = fixCount;
+            }
+        });
+    }
+
+    private boolean offer(double northMeters, float accuracy, float speed, long time) {
+        Fix fix = new Fix().set(LATITUDE + northMeters / GeoMath.METERS_PER_DEGREE, LONGITUDE,
+                accuracy, 0, speed, time);
+        return mFilter.onFix(fix);
+    }
+
+    @Test
+    public void parked_collapsesJitterAndReportsDwell() {
+        int passed = 0;
+        // Five minutes parked, a fix every 3 s jittering by a few meters.
+        for (int i = 0; i < 100; i++) {
+            if (offer((i % 5) - 2, 10f, 0f, 3000L * i)) {
+                passed++;
+            }
+        }
+        assertTrue(mFilter.isStationary());
+        assertEquals(100, mFilter.getDwellFixCount());
+        // The first fixes until stationary, then one per refresh interval.
+        assertTrue(passed <= 3 + 300000 / StationaryFilter.DEFAULT_REFRESH_MILLIS);
+        assertEquals(100 - passed, mFilter.getSuppressedCount());
+        assertEquals(0, mDwells);
+
+        // Drive off.
+        assertTrue(offer(100, 10f, 15f, 300000));
+        assertFalse(mFilter.isStationary());
+        assertEquals(1, mDwells);
+        assertEquals(100, mDwellFixCount);
+        assertEquals(0, mDwellStartTime);
+        assertEquals(297000, mDwellEndTime);
+        assertEquals(LATITUDE, mDwellLatitude, 1 / GeoMath.METERS_PER_DEGREE);
+    }
+
+    @Test
+    public void passNext_passesOneFixWhileStationary() {
+        offer(0, 10f, 0f, 0);
+        offer(4, 10f, 0f, 1000);
+        offer(-4, 10f, 0f, 2000);
+        assertTrue(mFilter.isStationary());
+        assertFalse(offer(1, 10f, 0f, 3000));
+
+        mFilter.passNext();
+        assertTrue(offer(1, 10f, 0f, 4000));
+        assertFalse(offer(1, 10f, 0f, 5000));
+        assertTrue(mFilter.isStationary());
+    }
+
+    @Test
+    public void refreshFix_isMovedToDwellCenter() {
+        offer(0, 10f, 0f, 0);
+        offer(4, 10f, 0f, 1000);
+        offer(-4, 10f, 0f, 2000);
+        Fix fix = new Fix().set(LATITUDE + 3 / GeoMath.METERS_PER_DEGREE, LONGITUDE, 10f, 0, 0f,
+                2000 + StationaryFilter.DEFAULT_REFRESH_MILLIS);
+        assertTrue(mFilter.onFix(fix));
+        assertEquals(mFilter.getDwellLatitude(), fix.latitude, 0);
+        assertEquals(LATITUDE, fix.latitude, 1 / GeoMath.METERS_PER_DEGREE);
+    }
+
+    @Test
+    public void moving_passesEveryFix() {
+        for (int i = 0; i < 50; i++) {
+            assertTrue(offer(1.4 * i, 5f, 1.4f, 1000L * i));
+        }
+        assertEquals(0, mFilter.getSuppressedCount());
+        assertEquals(0, mFilter.getRejectedCount());
+    }
+
+    @Test
+    public void outliers_areRejected() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(offer(1.4 * i, 5f, 1.4f, 1000L * i));
+        }
+        // Accuracy spike.
+        assertFalse(offer(14, 300f, 1.4f, 10000));
+        // 5 km in a second.
+        assertFalse(offer(5000, 5f, 1.4f, 10500));
+        // Not newer than the last accepted fix.
+        assertTrue(offer(15.4, 5f, 1.4f, 11000));
+        assertFalse(offer(15.4, 5f, 1.4f, 11000));
+        assertEquals(3, mFilter.getRejectedCount());
+        assertTrue(offer(16.8, 5f, 1.4f, 12000));
+    }
+
+    @Test
+    public void outliersInRow_startOver() {
+        assertTrue(offer(0, 5f, 1f, 0));
+        assertTrue(offer(1, 5f, 1f, 1000));
+        for (int i = 0; i < 3; i++) {
+            assertFalse(offer(20000 + i, 5f, 1f, 2000 + 1000L * i));
+        }
+        // The device really is somewhere else now.
+        assertTrue(offer(20003, 5f, 1f, 5000));
+        assertTrue(offer(20004, 5f, 1f, 6000));
+        assertEquals(3, mFilter.getRejectedCount());
+    }
+}
@@ -0,0 +1,109 @@
+package com.ac.srikar.mylocation.location.replay;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixBatch;
+import com.ac.srikar.mylocation.location.LocationSource;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class TraceReadersTest {
+
+    private final Fix mFix = new Fix();
+
+    @Test
+    public void csv_readsFixesAndSkipsHeader() throws Exception {
+        TraceReader reader = new CsvTraceReader(new StringReader(
+                "time,latitude,longitude,accuracy,altitude,speed\n"
+                        + "# comment\n"
+                        + "1457082597000,37.4220055,-122.084095,4.5,12.25,1.5\r\n"
+                        + "\n"
+                        + "2016-03-04T09:09:58.500Z,37.4221,-122.0841\n"));
+
+        assertTrue(reader.next(mFix));
+        assertEquals(1457082597000L, mFix.time);
+        assertEquals(37.4220055, mFix.latitude, 1e-12);
+        assertEquals(-122.084095, mFix.longitude, 1e-12);
+        assertEquals(4.5f, mFix.accuracy, 0);
+        assertEquals(12.25, mFix.altitude, 0);
+        assertEquals(1.5f, mFix.speed, 0);
+
+        assertTrue(reader.next(mFix));
+        assertEquals(1457082598500L, mFix.time);
+        assertEquals(TraceReader.DEFAULT_ACCURACY, mFix.accuracy, 0);
+        assertFalse(reader.next(mFix));
+    }
+
+    @Test
+    public void nmea_combinesGgaAndRmc() throws Exception {
+        TraceReader reader = new NmeaTraceReader(new StringReader(
+                "$GPGGA,123519,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,*47\n"
+                        + "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A\n"
+                        + "$GPRMC,123520,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*00\n"));
+
+        assertTrue(reader.next(mFix));
+        assertEquals(764426119000L, mFix.time);
+        assertEquals(48.1173, mFix.latitude, 1e-9);
+        assertEquals(11.516666667, mFix.longitude, 1e-8);
+        assertEquals(592.3, mFix.altitude, 1e-9);
+        assertEquals(4.5f, mFix.accuracy, 1e-6f);
+        assertEquals(11.5235f, mFix.speed, 1e-3f);
+        // The second RMC has a wrong checksum.
+        assertFalse(reader.next(mFix));
+    }
+
+    @Test
+    public void gpx_readsTrackPoints() throws Exception {
+        TraceReader reader = new GpxTraceReader(new StringReader(
+                "<?xml version=\"1.0\"?>\n<gpx version=\"1.1\"><trk><trkseg>\n"
+                        + "<trkpt lat=\"37.5\" lon=\"-122.25\"><ele>10.5</ele>"
+                        + "<time>2016-03-04T14:39:57+05:30</time><hdop>2</hdop></trkpt>\n"
+                        + "<trkpt lon='1' lat='2'/>\n"
+                        + "<trkpt lon=\"3\" lat=\"4\">\n  <time> 2016-03-04T09:09:59Z </time>\n"
+                        + "</trkpt></trkseg></trk></gpx>"));
+
+        assertTrue(reader.next(mFix));
+        assertEquals(37.5, mFix.latitude, 0);
+        assertEquals(-122.25, mFix.longitude, 0);
+        assertEquals(10.5, mFix.altitude, 0);
+        assertEquals(1457082597000L, mFix.time);
+        assertEquals(10f, mFix.accuracy, 0);
+
+        // The point without a time is skipped.
+        assertTrue(reader.next(mFix));
+        assertEquals(4.0, mFix.latitude, 0);
+        assertEquals(1457082599000L, mFix.time);
+        assertFalse(reader.next(mFix));
+    }
+
+    @Test
+    public void replay_deliversEveryFixInOrder() throws Exception {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            csv.append(i * 1000L).append(',').append(i * 0.001).append(",0\n");
+        }
+        ReplayLocationSource source = new ReplayLocationSource(
+                new CsvTraceReader(new StringReader(csv.toString())),
+                ReplayLocationSource.AS_FAST_AS_POSSIBLE);
+        final long[] lastTime = {-1};
+        source.setCallback(new LocationSource.Callback() {
+            @Override
+            public void onFix(Fix fix) {
+                assertTrue(fix.time > lastTime[0]);
+                lastTime[0] = fix.time;
+            }
+
+            @Override
+            public void onFixes(FixBatch batch) {
+                fail("Replay delivers single fixes");
+            }
+        });
+
+        assertEquals(1000, source.replay());
+        assertTrue(source.isFinished());
+        assertEquals(999000L, lastTime[0]);
+    }
+}
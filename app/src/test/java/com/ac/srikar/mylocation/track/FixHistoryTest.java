@@ -0,0 +1,83 @@
+package com.ac.srikar.mylocation.track;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FixHistoryTest {
+
+    private static void addFixes(FixHistory history, int count) {
+        for (int i = 0; i < count; i++) {
+            history.add(i, -i, i, 10 * i, i / 2f, 1000L * i);
+        }
+    }
+
+    @Test
+    public void capacity_isRoundedToPowerOfTwo() throws Exception {
+        assertEquals(8, new FixHistory(5).capacity());
+        assertEquals(8, new FixHistory(8).capacity());
+    }
+
+    @Test
+    public void add_overwritesOldestWhenFull() throws Exception {
+        FixHistory history = new FixHistory(4);
+        addFixes(history, 6);
+
+        assertEquals(4, history.size());
+        assertEquals(2, history.firstSequence());
+        assertEquals(5, history.lastSequence());
+        assertEquals(5.0, history.getLatitude(5), 0);
+        assertEquals(5000L, history.getTime(5));
+        assertFalse(history.contains(1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_overwrittenSequenceThrows() throws Exception {
+        FixHistory history = new FixHistory(4);
+        addFixes(history, 6);
+        history.getLatitude(0);
+    }
+
+    @Test
+    public void cursor_skipsAheadWhenLapped() throws Exception {
+        FixHistory history = new FixHistory(4);
+        addFixes(history, 2);
+        FixHistory.Cursor cursor = history.newCursor();
+        assertTrue(cursor.moveToNext());
+        assertEquals(0, cursor.getSequence());
+
+        addFixes(history, 8);
+        assertTrue(cursor.moveToNext());
+        assertEquals(6, cursor.getSequence());
+        int visited = 1;
+        while (cursor.moveToNext()) {
+            visited++;
+        }
+        assertEquals(4, visited);
+    }
+
+    @Test
+    public void readWindow_copiesRequestedColumns() throws Exception {
+        FixHistory history = new FixHistory(8);
+        addFixes(history, 5);
+        double[] latitude = new double[3];
+        long[] time = new long[3];
+
+        int n = history.readWindow(3, 3, latitude, null, null, null, null, time);
+
+        assertEquals(2, n);
+        assertEquals(3.0, latitude[0], 0);
+        assertEquals(4000L, time[1]);
+    }
+
+    @Test
+    public void clear_emptiesHistory() throws Exception {
+        FixHistory history = new FixHistory(4);
+        addFixes(history, 3);
+        history.clear();
+
+        assertTrue(history.isEmpty());
+        assertEquals(-1, history.lastSequence());
+        assertFalse(history.newCursor().moveToNext());
+    }
+}
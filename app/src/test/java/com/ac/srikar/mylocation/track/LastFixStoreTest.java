@@ -0,0 +1,78 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.Fix;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class LastFixStoreTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("lastfix", "");
+        assertTrue(mFile.delete());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mFile.delete();
+    }
+
+    @Test
+    public void load_returnsFalseWithoutFile() throws Exception {
+        assertFalse(new LastFixStore(mFile).load(new Fix()));
+    }
+
+    @Test
+    public void save_roundTrips() throws Exception {
+        LastFixStore store = new LastFixStore(mFile);
+        Fix fix = new Fix().set(37.4220055, -122.084095, 4.5f, 12.25, 1.5f, 1457082597000L);
+        store.onFix(fix);
+        Fix loaded = new Fix();
+        assertTrue(new LastFixStore(mFile).load(loaded));
+        assertEquals(fix.latitude, loaded.latitude, 0);
+        assertEquals(fix.longitude, loaded.longitude, 0);
+        assertEquals(fix.accuracy, loaded.accuracy, 0);
+        assertEquals(fix.altitude, loaded.altitude, 0);
+        assertEquals(fix.speed, loaded.speed, 0);
+        assertEquals(fix.time, loaded.time);
+    }
+
+    @Test
+    public void onFix_throttlesWrites() throws Exception {
+        LastFixStore store = new LastFixStore(mFile);
+        Fix fix = new Fix();
+        store.onFix(fix.set(1, 1, 5f, 0, 0f, 0));
+        store.onFix(fix.set(2, 2, 5f, 0, 0f, 1000));
+        Fix loaded = new Fix();
+        assertTrue(store.load(loaded));
+        assertEquals(1, loaded.latitude, 0);
+
+        store.save();
+        assertTrue(store.load(loaded));
+        assertEquals(2, loaded.latitude, 0);
+
+        store.onFix(fix.set(3, 3, 5f, 0, 0f, 1000 + LastFixStore.SAVE_INTERVAL_MILLIS));
+        assertTrue(store.load(loaded));
+        assertEquals(3, loaded.latitude, 0);
+    }
+
+    @Test
+    public void load_rejectsDamagedFile() throws Exception {
+        LastFixStore store = new LastFixStore(mFile);
+        store.onFix(new Fix().set(1, 1, 5f, 0, 0f, 0));
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.seek(10);
+        file.write(0x55);
+        file.close();
+        assertFalse(store.load(new Fix()));
+    }
+}
@@ -0,0 +1,134 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.util.GeoMath;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SpatialIndexTest {
+
+    private static final int COUNT = 20000;
+
+    private final SpatialIndex mIndex = new SpatialIndex();
+    private final double[] mLatitude = new double[COUNT];
+    private final double[] mLongitude = new double[COUNT];
+
+    private static class Collect implements SpatialIndex.Visitor {
+        final List<Integer> ids = new ArrayList<Integer>();
+
+        @Override
+        public boolean visit(int id) {
+            ids.add(id);
+            return true;
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        // A city sized cloud plus a few far away points.
+        Random random = new Random(3);
+        for (int i = 0; i < COUNT; i++) {
+            if (i % 1000 == 0) {
+                mLatitude[i] = random.nextDouble() * 160 - 80;
+                mLongitude[i] = random.nextDouble() * 360 - 180;
+            } else {
+                mLatitude[i] = 52.5 + random.nextGaussian() * 0.05;
+                mLongitude[i] = 13.4 + random.nextGaussian() * 0.08;
+            }
+            assertEquals(i, mIndex.add(mLatitude[i], mLongitude[i]));
+        }
+    }
+
+    private double distance(int id, double latitude, double longitude) {
+        return GeoMath.distance(latitude, longitude, mIndex.getLatitude(id),
+                mIndex.getLongitude(id));
+    }
+
+    @Test
+    public void queryRadius_matchesLinearScan() throws Exception {
+        double[][] queries = {{52.5, 13.4, 300}, {52.52, 13.31, 1500}, {0, 0, 5e6}};
+        for (double[] q : queries) {
+            List<Integer> expected = new ArrayList<Integer>();
+            for (int id = 0; id < COUNT; id++) {
+                if (distance(id, q[0], q[1]) <= q[2]) {
+                    expected.add(id);
+                }
+            }
+            Collect collect = new Collect();
+            assertEquals(expected.size(), mIndex.queryRadius(q[0], q[1], q[2], collect));
+            Collections.sort(collect.ids);
+            assertEquals(expected, collect.ids);
+        }
+    }
+
+    @Test
+    public void queryRadius_crossesAntimeridian() throws Exception {
+        SpatialIndex index = new SpatialIndex();
+        int east = index.add(-17.0, 179.9995);
+        int west = index.add(-17.0, -179.9995);
+        index.add(-17.0, 179.9);
+        Collect collect = new Collect();
+        assertEquals(2, index.queryRadius(-17.0, 180.0, 200, collect));
+        assertTrue(collect.ids.contains(east));
+        assertTrue(collect.ids.contains(west));
+    }
+
+    @Test
+    public void queryBox_matchesLinearScan() throws Exception {
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int id = 0; id < COUNT; id++) {
+            if (mIndex.getLatitude(id) >= 52.49 && mIndex.getLatitude(id) <= 52.51
+                    && mIndex.getLongitude(id) >= 13.38 && mIndex.getLongitude(id) <= 13.42) {
+                expected.add(id);
+            }
+        }
+        Collect collect = new Collect();
+        mIndex.queryBox(52.49, 13.38, 52.51, 13.42, collect);
+        Collections.sort(collect.ids);
+        assertEquals(expected, collect.ids);
+        assertFalse(expected.isEmpty());
+    }
+
+    @Test
+    public void query_stopsWhenVisitorAsks() throws Exception {
+        assertEquals(1, mIndex.queryRadius(52.5, 13.4, 5000, new SpatialIndex.Visitor() {
+            @Override
+            public boolean visit(int id) {
+                return false;
+            }
+        }));
+    }
+
+    @Test
+    public void nearest_matchesLinearScan() throws Exception {
+        Random random = new Random(5);
+        for (int q = 0; q < 200; q++) {
+            double latitude = q % 10 == 0 ? random.nextDouble() * 160 - 80
+                    : 52.5 + random.nextGaussian() * 0.1;
+            double longitude = q % 10 == 0 ? random.nextDouble() * 360 - 180
+                    : 13.4 + random.nextGaussian() * 0.1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int id = 0; id < COUNT; id++) {
+                best = Math.min(best, distance(id, latitude, longitude));
+            }
+            int id = mIndex.nearest(latitude, longitude, Double.POSITIVE_INFINITY);
+            assertEquals(best, distance(id, latitude, longitude), 1e-6);
+        }
+    }
+
+    @Test
+    public void nearest_respectsMaxDistance() throws Exception {
+        SpatialIndex index = new SpatialIndex();
+        assertEquals(-1, index.nearest(10, 10, Double.POSITIVE_INFINITY));
+        index.add(10, 10.01);
+        assertEquals(-1, index.nearest(10, 10, 1000));
+        assertEquals(0, index.nearest(10, 10, 1100));
+    }
+}
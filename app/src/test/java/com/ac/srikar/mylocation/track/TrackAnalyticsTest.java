@@ -0,0 +1,143 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.util.GeoMath;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class TrackAnalyticsTest {
+
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+
+    // Starts an hour before midnight UTC.
+    private static final long START = 20000 * TrackAnalytics.DAY_MILLIS - 3600 * 1000;
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = File.createTempFile("trackanalytics", "");
+        assertTrue(mDirectory.delete());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    /**
+     * Drives east at 10 m/s for two hours, parks for half an hour, then drives on.
+     */
+    private static Fix fix(Fix fix, int i) {
+        double step = 10 / GeoMath.metersPerDegreeLongitude(52);
+        if (i < 7200) {
+            return fix.set(52, 13 + i * step, 5f, 0, 10f, START + i * 1000L);
+        }
+        if (i < 9000) {
+            return fix.set(52, 13 + 7200 * step, 5f, 0, 0f, START + i * 1000L);
+        }
+        return fix.set(52, 13 + (i - 1800) * step, 5f, 0, 10f, START + i * 1000L);
+    }
+
+    private TrackSegment[] record(int count) throws Exception {
+        TrackLog log = TrackLog.open(mDirectory, SEGMENT_SIZE);
+        Fix fix = new Fix();
+        for (int i = 0; i < count; i++) {
+            log.onFix(fix(fix, i));
+        }
+        log.close();
+        return TrackSegment.openAll(mDirectory);
+    }
+
+    private static void assertSameResult(TrackAnalytics.Result expected,
+                                         TrackAnalytics.Result actual) {
+        assertEquals(expected.getFixCount(), actual.getFixCount());
+        assertEquals(expected.getDistance(), actual.getDistance(), 1e-3);
+        assertArrayEquals(expected.getSpeedHistogram(), actual.getSpeedHistogram());
+        assertEquals(expected.getFirstDay(), actual.getFirstDay());
+        assertEquals(expected.getDayCount(), actual.getDayCount());
+        for (int i = 0; i < expected.getDayCount(); i++) {
+            assertEquals(expected.getDayDistance(i), actual.getDayDistance(i), 1e-3);
+        }
+        assertEquals(expected.getHeatmapSize(), actual.getHeatmapSize());
+        for (int i = 0; i < expected.getHeatmapSize(); i++) {
+            assertEquals(expected.getHeatmapCount(i), actual.getHeatmapCount(i));
+        }
+        assertEquals(expected.getDwellSize(), actual.getDwellSize());
+    }
+
+    @Test
+    public void analyze_countsEveryFixAndStep() throws Exception {
+        int count = 60000;
+        TrackSegment[] segments = record(count);
+        assertTrue(segments.length > 1);
+        TrackAnalytics analytics = new TrackAnalytics(TimeZone.getTimeZone("UTC"));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        TrackAnalytics.Result result = analytics.analyze(segments, pool);
+        pool.shutdown();
+
+        assertEquals(count, result.getFixCount());
+        double expectedDistance = 0;
+        Fix previous = fix(new Fix(), 0);
+        Fix fix = new Fix();
+        for (int i = 1; i < count; i++) {
+            fix(fix, i);
+            expectedDistance += GeoMath.fastDistance(previous.latitude, previous.longitude,
+                    fix.latitude, fix.longitude);
+            previous.set(fix);
+        }
+        assertEquals(expectedDistance, result.getDistance(), 1e-3);
+
+        // The first hour falls on the day before
+        assertEquals(20000 - 1, result.getFirstDay());
+        assertEquals(2, result.getDayCount());
+        assertEquals(3600 * 10, result.getDayDistance(0), 1);
+
+        long[] speeds = result.getSpeedHistogram();
+        assertEquals(1800, speeds[0]);
+        assertEquals(count - 1800, speeds[(int) (10 / TrackAnalytics.SPEED_BIN_WIDTH)]);
+
+        long heatmapTotal = 0;
+        for (int i = 0; i < result.getHeatmapSize(); i++) {
+            heatmapTotal += result.getHeatmapCount(i);
+        }
+        assertEquals(count, heatmapTotal);
+
+        assertEquals(1, result.getDwellSize());
+        assertEquals(1800 * 1000L, result.getDwellMillis(0), 1000);
+        assertEquals(52, result.getDwellLatitude(0), TrackAnalytics.DWELL_CELL_DEGREES);
+    }
+
+    @Test
+    public void analyzeSequentially_matchesForkJoin() throws Exception {
+        TrackSegment[] segments = record(50000);
+        TrackAnalytics analytics = new TrackAnalytics(TimeZone.getTimeZone("GMT+02:00"));
+        ForkJoinPool pool = new ForkJoinPool(3);
+        assertSameResult(analytics.analyzeSequentially(segments),
+                analytics.analyze(segments, pool));
+        pool.shutdown();
+    }
+
+    @Test
+    public void analyze_emptyLog() throws Exception {
+        TrackAnalytics.Result result = new TrackAnalytics(TimeZone.getTimeZone("UTC"))
+                .analyzeSequentially(new TrackSegment[0]);
+        assertEquals(0, result.getFixCount());
+        assertEquals(0, result.getDayCount());
+        assertEquals(0, result.getHeatmapSize());
+    }
+}
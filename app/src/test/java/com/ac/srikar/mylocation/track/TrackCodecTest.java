@@ -0,0 +1,125 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.Fix;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TrackCodecTest {
+
+    private static byte[] encode(double[][] fixes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TrackEncoder encoder = new TrackEncoder(out);
+        for (double[] f : fixes) {
+            encoder.write(f[0], f[1], (float) f[2], f[3], (float) f[4], (long) f[5]);
+        }
+        encoder.flush();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void roundTrip_keepsValuesAtQuantizedPrecision() throws Exception {
+        double[][] fixes = {
+                {37.4220055, -122.0840950, 4.7, 12.34, 1.25, 1457082597000L},
+                {37.4220631, -122.0841502, 5.2, 12.9, 1.31, 1457082602000L},
+                {-33.8688197, 151.2092955, 15.0, -3.2, 0, 1457082601000L},
+        };
+        TrackDecoder decoder = new TrackDecoder(new ByteArrayInputStream(encode(fixes)));
+        Fix fix = new Fix();
+        for (double[] f : fixes) {
+            assertTrue(decoder.next(fix));
+            assertEquals(f[0], fix.latitude, 1e-6);
+            assertEquals(f[1], fix.longitude, 1e-6);
+            assertEquals(f[2], fix.accuracy, 0.05);
+            assertEquals(f[3], fix.altitude, 0.05);
+            assertEquals(f[4], fix.speed, 0.005);
+            assertEquals((long) f[5], fix.time);
+        }
+        assertFalse(decoder.next(fix));
+    }
+
+    @Test
+    public void roundTrip_doesNotAccumulateRounding() throws Exception {
+        int count = 10000;
+        double[][] fixes = new double[count][];
+        for (int i = 0; i < count; i++) {
+            // Steps of 0.37 units, so every delta is rounded.
+            fixes[i] = new double[]{48.0 + i * 0.37e-6, 2.0 - i * 0.37e-6, 5, 35, 1.4,
+                    1000L * i};
+        }
+        TrackDecoder decoder = new TrackDecoder(new ByteArrayInputStream(encode(fixes)));
+        Fix fix = new Fix();
+        for (int i = 0; i < count; i++) {
+            assertTrue(decoder.next(fix));
+        }
+        assertEquals(fixes[count - 1][0], fix.latitude, 1e-6);
+        assertEquals(fixes[count - 1][1], fix.longitude, 1e-6);
+    }
+
+    @Test
+    public void encoding_isCompactForRegularFixes() throws Exception {
+        int count = 1000;
+        double[][] fixes = new double[count][];
+        for (int i = 0; i < count; i++) {
+            // Walking north at about 1.4 m/s, one fix every 5 s.
+            fixes[i] = new double[]{48.0 + i * 6.3e-5, 2.0, 4.8, 35 + (i % 3), 1.4, 5000L * i};
+        }
+        byte[] encoded = encode(fixes);
+        assertTrue("size " + encoded.length, encoded.length < count * 12);
+        assertTrue(encoded.length < count * TrackLog.RECORD_SIZE / 3);
+    }
+
+    @Test
+    public void decoder_readsTrackLog() throws Exception {
+        File dir = File.createTempFile("trackcodec", "");
+        assertTrue(dir.delete());
+        TrackLog log = TrackLog.open(dir);
+        for (int i = 0; i < 100; i++) {
+            log.append(10 + i * 1e-4, 20 - i * 1e-4, 3, 100, 2, 1000L * i);
+        }
+        log.close();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TrackEncoder encoder = new TrackEncoder(out);
+        assertEquals(100, encoder.writeAll(TrackLogReader.open(dir)));
+        encoder.flush();
+
+        TrackDecoder decoder = new TrackDecoder(new ByteArrayInputStream(out.toByteArray()));
+        Fix fix = new Fix();
+        int count = 0;
+        while (decoder.next(fix)) {
+            assertEquals(10 + count * 1e-4, fix.latitude, 1e-6);
+            assertEquals(1000L * count, fix.time);
+            count++;
+        }
+        assertEquals(100, count);
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void decoder_rejectsTruncatedFix() throws Exception {
+        byte[] encoded = encode(new double[][]{{1, 2, 3, 4, 5, 1457082597000L}});
+        TrackDecoder decoder = new TrackDecoder(new ByteArrayInputStream(
+                Arrays.copyOf(encoded, encoded.length - 1)));
+        try {
+            decoder.next(new Fix());
+            fail();
+        } catch (EOFException expected) {
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void decoder_rejectsForeignData() throws Exception {
+        new TrackDecoder(new ByteArrayInputStream("time,lat,lon\n".getBytes("US-ASCII")));
+    }
+}
@@ -0,0 +1,113 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.Fix;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class TrackLogTest {
+
+    // Room for exactly 10 records per segment.
+    private static final int SEGMENT_SIZE = TrackLog.HEADER_SIZE + 10 * TrackLog.RECORD_SIZE;
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = File.createTempFile("tracklog", "");
+        assertTrue(mDirectory.delete());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    private static void append(TrackLog log, int from, int count) throws IOException {
+        for (int i = from; i < from + count; i++) {
+            log.append(i, -i, 1.5f, 100 + i, 2.5f, 1000L * i);
+        }
+    }
+
+    @Test
+    public void append_rollsOverSegmentsAndReadsBackInOrder() throws Exception {
+        TrackLog log = TrackLog.open(mDirectory, SEGMENT_SIZE);
+        append(log, 0, 25);
+        log.close();
+
+        assertEquals(3, TrackLog.listSegments(mDirectory).length);
+        TrackLogReader reader = TrackLogReader.open(mDirectory);
+        assertEquals(25, reader.size());
+        Fix fix = new Fix();
+        for (int i = 0; i < 25; i++) {
+            assertTrue(reader.next(fix));
+            assertEquals(i, fix.latitude, 0);
+            assertEquals(-i, fix.longitude, 0);
+            assertEquals(100 + i, fix.altitude, 0);
+            assertEquals(1000L * i, fix.time);
+        }
+        assertFalse(reader.next(fix));
+    }
+
+    @Test
+    public void open_resumesAfterLastRecord() throws Exception {
+        TrackLog log = TrackLog.open(mDirectory, SEGMENT_SIZE);
+        append(log, 0, 15);
+        log.close();
+
+        log = TrackLog.open(mDirectory, SEGMENT_SIZE);
+        assertEquals(15, log.getRecordCount());
+        append(log, 15, 10);
+        log.close();
+
+        TrackSegment[] segments = TrackSegment.openAll(mDirectory);
+        assertEquals(3, segments.length);
+        assertEquals(10, segments[1].size());
+        assertEquals(24000L, segments[2].getTime(4));
+    }
+
+    @Test
+    public void open_dropsTornTail() throws Exception {
+        TrackLog log = TrackLog.open(mDirectory, SEGMENT_SIZE);
+        append(log, 0, 6);
+        log.close();
+
+        // Corrupt the longitude of the fifth record, as if the write was cut short.
+        File segment = TrackLog.listSegments(mDirectory)[0];
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        raf.seek(TrackLog.HEADER_SIZE + 4 * TrackLog.RECORD_SIZE + TrackLog.LONGITUDE_OFFSET);
+        raf.writeLong(0x1234L);
+        raf.close();
+
+        log = TrackLog.open(mDirectory, SEGMENT_SIZE);
+        assertEquals(4, log.getRecordCount());
+        append(log, 100, 1);
+        log.close();
+
+        TrackSegment[] segments = TrackSegment.openAll(mDirectory);
+        assertEquals(5, segments[0].size());
+        assertEquals(100.0, segments[0].getLatitude(4), 0);
+    }
+
+    @Test
+    public void onFix_afterClose_keepsError() throws Exception {
+        TrackLog log = TrackLog.open(mDirectory, SEGMENT_SIZE);
+        log.close();
+
+        assertTrue(log.onFix(new Fix()));
+        assertNotNull(log.getLastError());
+    }
+}
@@ -0,0 +1,149 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.Fix;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class TrackRecorderTest {
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = File.createTempFile("trackrecorder", "");
+        assertTrue(mDirectory.delete());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    private static long recorded(File directory) throws Exception {
+        File[] segments = TrackLog.listSegments(directory);
+        if (segments == null || segments.length == 0) {
+            return 0;
+        }
+        return TrackLogReader.open(directory).size();
+    }
+
+    /**
+     * Zig-zag far beyond the simplifier tolerance, so it retains every fix.
+     */
+    private static Fix zigZag(int i) {
+        return new Fix().set(52 + 0.001 * i, 13 + (i % 2) * 0.001, 5f, 0, 10f, 1000L * i);
+    }
+
+    @Test
+    public void onFix_writesInBatches() throws Exception {
+        TrackRecorder recorder = new TrackRecorder(mDirectory, 8);
+        recorder.onStart();
+        recorder.setRecording(true);
+        for (int i = 0; i < 5; i++) {
+            recorder.onFix(zigZag(i));
+        }
+        assertEquals(0, recorded(mDirectory));
+        for (int i = 5; i < 20; i++) {
+            recorder.onFix(zigZag(i));
+        }
+        long written = recorded(mDirectory);
+        assertTrue(written > 0 && written % 8 == 0);
+
+        recorder.onShutdown();
+        assertEquals(20, recorded(mDirectory));
+    }
+
+    @Test
+    public void onFix_writesBufferOlderThanMaximum() throws Exception {
+        TrackRecorder recorder = new TrackRecorder(mDirectory, 1000);
+        recorder.onStart();
+        recorder.setRecording(true);
+        int i = 0;
+        for (; i * 1000L < TrackRecorder.MAX_BUFFER_MILLIS + 10000; i++) {
+            recorder.onFix(zigZag(i));
+        }
+        assertTrue(recorded(mDirectory) > 0);
+        recorder.onShutdown();
+        assertEquals(i, recorded(mDirectory));
+    }
+
+    @Test
+    public void flush_writesPendingFixes() throws Exception {
+        TrackRecorder recorder = new TrackRecorder(mDirectory, 1000);
+        recorder.onStart();
+        recorder.setRecording(true);
+        for (int i = 0; i < 5; i++) {
+            recorder.onFix(zigZag(i));
+        }
+        assertEquals(0, recorded(mDirectory));
+        recorder.flush();
+        assertEquals(5, recorded(mDirectory));
+
+        // Recording goes on after a flush
+        recorder.onFix(zigZag(5));
+        recorder.onShutdown();
+        assertEquals(6, recorded(mDirectory));
+    }
+
+    @Test
+    public void onFix_ignoresFixesWhileNotRecording() throws Exception {
+        TrackRecorder recorder = new TrackRecorder(mDirectory, 1000);
+        recorder.onStart();
+        recorder.onFix(zigZag(0));
+        recorder.setRecording(true);
+        for (int i = 1; i < 4; i++) {
+            recorder.onFix(zigZag(i));
+        }
+        recorder.setRecording(false);
+        recorder.flush();
+        recorder.onFix(zigZag(4));
+        recorder.onShutdown();
+
+        assertEquals(3, recorded(mDirectory));
+        Fix fix = new Fix();
+        TrackLogReader reader = TrackLogReader.open(mDirectory);
+        assertTrue(reader.next(fix));
+        assertEquals(1000L, fix.time);
+    }
+
+    @Test
+    public void indexedLog_idsAreRecordNumbers() throws Exception {
+        TrackRecorder recorder = new TrackRecorder(mDirectory, 8);
+        recorder.onStart();
+        recorder.setRecording(true);
+        for (int i = 0; i < 10; i++) {
+            recorder.onFix(zigZag(i));
+        }
+        recorder.onShutdown();
+
+        // A new session appends after the records of the previous one
+        recorder = new TrackRecorder(mDirectory, 8);
+        recorder.onStart();
+        recorder.setRecording(true);
+        for (int i = 10; i < 20; i++) {
+            recorder.onFix(zigZag(i));
+        }
+        recorder.onShutdown();
+
+        SpatialIndex index = new SpatialIndex();
+        index.addAll(TrackLogReader.open(recorder.getDirectory()));
+        assertEquals(recorded(mDirectory), index.size());
+        TrackLogReader reader = TrackLogReader.open(mDirectory);
+        Fix fix = new Fix();
+        for (int id = 0; reader.next(fix); id++) {
+            assertEquals(id, index.nearest(fix.latitude, fix.longitude, 1));
+        }
+    }
+}
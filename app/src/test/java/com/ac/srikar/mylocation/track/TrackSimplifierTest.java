@@ -0,0 +1,131 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixStage;
+import com.ac.srikar.mylocation.util.GeoMath;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TrackSimplifierTest {
+
+    // Collects retained fixes as meters east and north of (0, 0).
+    private static class Collector implements FixStage {
+        final FixHistory history = new FixHistory(1 << 16);
+
+        @Override
+        public boolean onFix(Fix fix) {
+            return history.onFix(fix);
+        }
+
+        int size() {
+            return history.size();
+        }
+
+        double east(int i) {
+            return history.getLongitude(history.firstSequence() + i) * GeoMath.METERS_PER_DEGREE;
+        }
+
+        double north(int i) {
+            return history.getLatitude(history.firstSequence() + i) * GeoMath.METERS_PER_DEGREE;
+        }
+    }
+
+    private final Collector mCollector = new Collector();
+    private final Fix mFix = new Fix();
+
+    private void feed(TrackSimplifier simplifier, double east, double north, long time) {
+        mFix.set(north / GeoMath.METERS_PER_DEGREE, east / GeoMath.METERS_PER_DEGREE, 5f, 0,
+                1f, time);
+        assertTrue(simplifier.onFix(mFix));
+    }
+
+    private static double distanceToSegment(double x, double y, double ax, double ay,
+                                            double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0
+                : Math.max(0, Math.min(1, ((x - ax) * dx + (y - ay) * dy) / lengthSquared));
+        return Math.hypot(x - ax - t * dx, y - ay - t * dy);
+    }
+
+    @Test
+    public void straightLine_keepsEndpoints() throws Exception {
+        TrackSimplifier simplifier = new TrackSimplifier(mCollector);
+        for (int i = 0; i < 50; i++) {
+            feed(simplifier, i * 7, i * 3, 1000L * i);
+        }
+        assertEquals(1, mCollector.size());
+        simplifier.flush();
+        assertEquals(2, mCollector.size());
+        assertEquals(49 * 7, mCollector.east(1), 1e-6);
+        assertEquals(50, simplifier.getInputCount());
+        assertEquals(2, simplifier.getOutputCount());
+    }
+
+    @Test
+    public void corner_isRetained() throws Exception {
+        TrackSimplifier simplifier = new TrackSimplifier(mCollector);
+        for (int i = 0; i <= 10; i++) {
+            feed(simplifier, i * 10, 0, 1000L * i);
+        }
+        for (int i = 1; i <= 10; i++) {
+            feed(simplifier, 100, i * 10, 10000L + 1000L * i);
+        }
+        simplifier.flush();
+        assertEquals(3, mCollector.size());
+        assertEquals(100, mCollector.east(1), 1e-6);
+        assertEquals(0, mCollector.north(1), 1e-6);
+    }
+
+    @Test
+    public void fullWindow_forcesFixOut() throws Exception {
+        TrackSimplifier simplifier = new TrackSimplifier(mCollector, 5, 8);
+        for (int i = 0; i < 100; i++) {
+            feed(simplifier, i, 0, 1000L * i);
+        }
+        // The first fix, then one every 8 fixes.
+        assertEquals(1 + 99 / 8, mCollector.size());
+    }
+
+    @Test
+    public void noisyTrack_staysWithinTolerance() throws Exception {
+        double tolerance = 5;
+        TrackSimplifier simplifier = new TrackSimplifier(mCollector, tolerance, 64);
+        Random random = new Random(7);
+        int count = 2000;
+        double[] east = new double[count];
+        double[] north = new double[count];
+        double heading = 0;
+        double x = 0;
+        double y = 0;
+        for (int i = 0; i < count; i++) {
+            heading += random.nextGaussian() * 0.05;
+            x += 1.4 * Math.cos(heading);
+            y += 1.4 * Math.sin(heading);
+            east[i] = x + random.nextGaussian() * 0.5;
+            north[i] = y + random.nextGaussian() * 0.5;
+            feed(simplifier, east[i], north[i], 1000L * i);
+        }
+        simplifier.flush();
+        int retained = mCollector.size();
+        assertTrue("retained " + retained, retained < count / 5);
+
+        // Every input fix lies within the tolerance of the segment it was folded into.
+        int segment = 0;
+        for (int i = 0; i < count; i++) {
+            while (segment < retained - 2 && Math.abs(mCollector.east(segment + 1) - east[i])
+                    < 1e-6 && Math.abs(mCollector.north(segment + 1) - north[i]) < 1e-6) {
+                segment++;
+            }
+            double d = distanceToSegment(east[i], north[i],
+                    mCollector.east(segment), mCollector.north(segment),
+                    mCollector.east(segment + 1), mCollector.north(segment + 1));
+            assertTrue("fix " + i + " is " + d + " m away", d <= tolerance + 1e-3);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.ac.srikar.mylocation.track;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import static org.junit.Assert.*;
+
+public class TrackTextWriterTest {
+
+    /**
+     * Counts bytes without keeping them, like a file that is too large to hold.
+     */
+    private static class CountingChannel implements WritableByteChannel {
+
+        long mBytes = 0;
+        int mWrites = 0;
+
+        @Override
+        public int write(ByteBuffer buffer) {
+            int remaining = buffer.remaining();
+            buffer.position(buffer.limit());
+            mBytes += remaining;
+            mWrites++;
+            return remaining;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static String write(TrackTextWriter writer, ByteArrayOutputStream out)
+            throws IOException {
+        writer.write(52.5200066, 13.404954, 5f, 34.56, 1.5f, 1457082597000L);
+        writer.write(-33.8688197, -151.2092955, 5f, 0, 0f, 1457082598250L);
+        writer.finish();
+        return new String(out.toByteArray(), "US-ASCII");
+    }
+
+    @Test
+    public void gpx_writesTrackPoints() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String gpx = write(new GpxWriter(Channels.newChannel(out)), out);
+
+        assertTrue(gpx.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<gpx "));
+        assertTrue(gpx.contains("<trkpt lat=\"52.5200066\" lon=\"13.4049540\"><ele>34.6</ele>"
+                + "<time>2016-03-04T09:09:57Z</time></trkpt>\n"));
+        assertTrue(gpx.contains("<trkpt lat=\"-33.8688197\" lon=\"-151.2092955\">"
+                + "<time>2016-03-04T09:09:58.250Z</time></trkpt>\n"));
+        assertTrue(gpx.endsWith("</trkseg>\n</trk>\n</gpx>\n"));
+    }
+
+    @Test
+    public void geoJson_writesLineString() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String json = write(new GeoJsonWriter(Channels.newChannel(out)), out);
+
+        assertEquals("{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":["
+                + "\n[13.4049540,52.5200066,34.6],\n[-151.2092955,-33.8688197]]},\n"
+                + "\"properties\":{\"name\":\"My Location\","
+                + "\"startTime\":\"2016-03-04T09:09:57Z\","
+                + "\"endTime\":\"2016-03-04T09:09:58.250Z\",\"count\":2}}\n", json);
+    }
+
+    @Test
+    public void geoJson_withoutFixes_isValid() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GeoJsonWriter writer = new GeoJsonWriter(Channels.newChannel(out));
+        writer.finish();
+
+        assertEquals("{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":["
+                        + "]},\n\"properties\":{\"name\":\"My Location\",\"count\":0}}\n",
+                new String(out.toByteArray(), "US-ASCII"));
+    }
+
+    @Test
+    public void largeTrack_streamsInBufferSizedWrites() throws Exception {
+        CountingChannel channel = new CountingChannel();
+        GpxWriter writer = new GpxWriter(channel);
+        for (int i = 0; i < 100000; i++) {
+            writer.write(52 + i * 1e-6, 13, 5f, 30, 1f, 1457082597000L + 1000L * i);
+        }
+        writer.finish();
+
+        assertEquals(100000, writer.getCount());
+        // Every fix takes more than 80 bytes, written in a few large blocks.
+        assertTrue(channel.mBytes > 100000 * 80);
+        assertTrue(channel.mWrites <= channel.mBytes / TrackTextWriter.BUFFER_SIZE + 2);
+    }
+
+    @Test(expected = IOException.class)
+    public void write_afterFinish_fails() throws Exception {
+        GpxWriter writer = new GpxWriter(new CountingChannel());
+        writer.finish();
+        writer.write(0, 0, 0f, 0, 0f, 0);
+    }
+}
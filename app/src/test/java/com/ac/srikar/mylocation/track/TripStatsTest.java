@@ -0,0 +1,72 @@
+package com.ac.srikar.mylocation.track;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.util.GeoMath;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TripStatsTest {
+
+    private final TripStats mStats = new TripStats();
+    private final Fix mFix = new Fix();
+
+    private void fix(double northMeters, double altitude, float speed, long time) {
+        mFix.set(45 + northMeters / GeoMath.METERS_PER_DEGREE, 7, 5f, altitude, speed, time);
+        assertTrue(mStats.onFix(mFix));
+    }
+
+    @Test
+    public void walking_accumulatesDistanceTimeAndPace() throws Exception {
+        // 1.5 m/s for 10 minutes, one fix per second.
+        for (int i = 0; i <= 600; i++) {
+            fix(1.5 * i, 100, 1.5f, 1000L * i);
+        }
+        // Counted in steps of the 5 m accuracy.
+        assertEquals(900, mStats.getDistance(), 5);
+        assertEquals(600000, mStats.getMovingTime());
+        assertEquals(600000, mStats.getElapsedTime());
+        assertEquals(1.5, mStats.getAverageSpeed(), 0.02);
+        assertEquals(1.5f, mStats.getMaxSpeed(), 0);
+        // 1000 m / 1.5 m/s = 11:07.
+        assertEquals(666667, mStats.getPace(), 5000);
+    }
+
+    @Test
+    public void jitterAtRest_isNotDistance() throws Exception {
+        Random random = new Random(1);
+        for (int i = 0; i <= 300; i++) {
+            fix(random.nextGaussian() * 0.5, 100, 0f, 5000L * i);
+        }
+        assertEquals(0, mStats.getDistance(), 1);
+        assertEquals(0, mStats.getMovingTime());
+        assertEquals(1500000, mStats.getElapsedTime());
+    }
+
+    @Test
+    public void elevation_ignoresNoiseBelowThreshold() throws Exception {
+        double[] altitudes = {100, 101, 99.5, 101.5, 104, 110, 108, 109, 105, 0, 100};
+        for (int i = 0; i < altitudes.length; i++) {
+            fix(i * 10, altitudes[i], 2f, 1000L * i);
+        }
+        // Counted: 100 -> 104 -> 110 gain 10, 110 -> 105 -> 100 loss 10; 0 is missing.
+        assertEquals(10, mStats.getElevationGain(), 1e-9);
+        assertEquals(10, mStats.getElevationLoss(), 1e-9);
+    }
+
+    @Test
+    public void copyTo_snapshotsAndResetStartsOver() throws Exception {
+        fix(0, 0, 3f, 0);
+        fix(30, 0, 3f, 10000);
+        TripStats copy = new TripStats();
+        mStats.copyTo(copy);
+        mStats.reset();
+        assertEquals(30, copy.getDistance(), 0.01);
+        assertEquals(3f, copy.getMaxSpeed(), 0);
+        assertEquals(0, mStats.getDistance(), 0);
+        assertEquals(0, mStats.getFixCount());
+    }
+}
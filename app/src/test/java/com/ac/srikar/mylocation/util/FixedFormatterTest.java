@@ -0,0 +1,78 @@
+package com.ac.srikar.mylocation.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FixedFormatterTest {
+
+    private final char[] mBuffer = new char[FixedFormatter.MAX_LENGTH];
+
+    private String fixed(double value, int decimals) {
+        return new String(mBuffer, 0, FixedFormatter.formatFixed(value, decimals, mBuffer, 0));
+    }
+
+    private String time(long millis, int offset) {
+        return new String(mBuffer, 0, FixedFormatter.formatTime(millis, offset, mBuffer, 0));
+    }
+
+    @Test
+    public void formatFixed_roundsToDecimals() throws Exception {
+        assertEquals("37.422006", fixed(37.4220055, 6));
+        assertEquals("-122.084095", fixed(-122.0840950, 6));
+        assertEquals("12.0", fixed(11.96f, 1));
+        assertEquals("5", fixed(4.5, 0));
+        assertEquals("0.05", fixed(0.05, 2));
+    }
+
+    @Test
+    public void formatFixed_dropsSignOfNegativeZero() throws Exception {
+        assertEquals("0.0", fixed(-0.01, 1));
+    }
+
+    @Test
+    public void formatFixed_handlesNonFiniteValues() throws Exception {
+        assertEquals("NaN", fixed(Double.NaN, 2));
+        assertEquals("-Inf", fixed(Double.NEGATIVE_INFINITY, 2));
+    }
+
+    @Test
+    public void quantize_matchesPrintedText() throws Exception {
+        assertEquals(FixedFormatter.quantize(1.04, 1), FixedFormatter.quantize(0.96, 1));
+        assertTrue(FixedFormatter.quantize(1.06, 1) != FixedFormatter.quantize(1.04, 1));
+    }
+
+    private String duration(long millis) {
+        return new String(mBuffer, 0, FixedFormatter.formatDuration(millis, mBuffer, 0));
+    }
+
+    @Test
+    public void formatDuration_omitsZeroHours() throws Exception {
+        assertEquals("0:00", duration(999));
+        assertEquals("11:07", duration(667000));
+        assertEquals("1:02:03", duration(3723000));
+        assertEquals("27:00:00", duration(27 * 3600000L));
+    }
+
+    @Test
+    public void formatTime_appliesZoneOffset() throws Exception {
+        // 2016-03-04T09:09:57Z
+        long millis = 1457082597000L;
+        assertEquals("09:09:57", time(millis, 0));
+        assertEquals("14:39:57", time(millis, 19800000));
+        assertEquals("23:59:59", time(-1000L, 0));
+    }
+
+    @Test
+    public void formatIsoTime_writesUtcDate() throws Exception {
+        char[] out = mBuffer;
+        assertEquals("2016-03-04T09:09:57Z",
+                new String(out, 0, FixedFormatter.formatIsoTime(1457082597000L, out, 0)));
+        assertEquals("2016-02-29T23:59:59.007Z",
+                new String(out, 0, FixedFormatter.formatIsoTime(1456790399007L, out, 0)));
+        assertEquals("1970-01-01T00:00:00Z",
+                new String(out, 0, FixedFormatter.formatIsoTime(0, out, 0)));
+        assertEquals("1969-12-31T23:59:59.999Z",
+                new String(out, 0, FixedFormatter.formatIsoTime(-1, out, 0)));
+    }
+}
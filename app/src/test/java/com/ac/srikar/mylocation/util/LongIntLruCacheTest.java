@@ -0,0 +1,63 @@
+package com.ac.srikar.mylocation.util;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongIntLruCacheTest {
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        LongIntLruCache cache = new LongIntLruCache(2);
+        cache.put(1, 10);
+        cache.put(2, 20);
+        assertEquals(10, cache.get(1, -1));
+        cache.put(3, 30);
+        assertEquals(-1, cache.get(2, -1));
+        assertEquals(10, cache.get(1, -1));
+        assertEquals(30, cache.get(3, -1));
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void put_replacesValue() {
+        LongIntLruCache cache = new LongIntLruCache(4);
+        cache.put(7, 1);
+        cache.put(7, 2);
+        assertEquals(2, cache.get(7, -1));
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(-1, cache.get(7, -1));
+    }
+
+    @Test
+    public void randomOperations_matchLinkedHashMap() {
+        final int capacity = 37;
+        Map<Long, Integer> expected = new LinkedHashMap<Long, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+                return size() > capacity;
+            }
+        };
+        LongIntLruCache cache = new LongIntLruCache(capacity);
+        Random random = new Random(3);
+        for (int i = 0; i < 100000; i++) {
+            // Clustered keys collide in the table and exercise the backward shift
+            long key = random.nextInt(100) * 1024L;
+            if (random.nextBoolean()) {
+                Integer value = expected.get(key);
+                assertEquals(value == null ? -1 : value, cache.get(key, -1));
+            } else {
+                expected.put(key, i);
+                cache.put(key, i);
+            }
+            assertEquals(expected.size(), cache.size());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+#!/bin/sh
+# Runs the benchmarks of the working tree against the app sources of another revision,
+# e.g. the commit before a change, then against the working tree, and compares both.
+# Exits with status 1 if a benchmark regressed by more than the threshold.
+#
+# Benchmark classes that do not compile against the older app sources, e.g. because the
+# class they measure was added later, are left out of the baseline run and reported as new.
+# The benchmark inputs (Traces, TraceState) need FixBatch and the trace readers, so the
+# revision must at least contain those.
+#
+#   benchmark/baseline.sh [revision, default HEAD] [benchmark regex] [threshold]
+set -e
+
+REVISION=${1:-HEAD}
+FILTER=${2:-.*}
+THRESHOLD=${3:-0.1}
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+RESULTS="$ROOT/benchmark/build/jmh"
+BASELINE=$(mktemp -d)
+LOG=$(mktemp)
+
+cleanup() {
+    rm -rf "$BASELINE" "$LOG"
+    git -C "$ROOT" worktree prune
+}
+trap cleanup EXIT
+
+git -C "$ROOT" worktree add --detach "$BASELINE" "$REVISION"
+# The same benchmarks over the old app sources
+rm -rf "$BASELINE/benchmark"
+cp -R "$ROOT/benchmark" "$BASELINE/benchmark"
+rm -rf "$BASELINE/benchmark/build"
+cp "$ROOT/settings.gradle" "$BASELINE/settings.gradle"
+if [ -f "$ROOT/local.properties" ]; then
+    cp "$ROOT/local.properties" "$BASELINE/local.properties"
+fi
+
+# Drop the benchmarks of classes the revision does not have, until the rest compiles
+while ! (cd "$BASELINE" && ./gradlew -q :benchmark:classes) >"$LOG" 2>&1; do
+    FAILED=$(sed -n 's|^\(.*/benchmark/src/main/java/.*\.java\):[0-9]*: error:.*|\1|p' "$LOG" \
+        | sort -u)
+    if [ -z "$FAILED" ]; then
+        cat "$LOG" >&2
+        echo "The app sources of $REVISION do not build for the benchmarks" >&2
+        exit 1
+    fi
+    for SOURCE in $FAILED; do
+        case $(basename "$SOURCE") in
+            Traces.java|TraceState.java)
+                cat "$LOG" >&2
+                echo "The benchmark inputs do not compile against $REVISION" >&2
+                exit 1
+                ;;
+        esac
+        echo "Skipping $(basename "$SOURCE" .java), it does not compile against $REVISION" >&2
+        rm "$SOURCE"
+    done
+done
+
+mkdir -p "$RESULTS"
+(cd "$BASELINE" && ./gradlew :benchmark:jmh -Pjmh="$FILTER" -PjmhResults="$RESULTS/baseline.csv")
+(cd "$ROOT" && ./gradlew :benchmark:jmh -Pjmh="$FILTER" -PjmhResults="$RESULTS/current.csv")
+(cd "$ROOT" && ./gradlew -q :benchmark:jmhCompare -Pbaseline="$RESULTS/baseline.csv" \
+    -Pcurrent="$RESULTS/current.csv" -Pthreshold="$THRESHOLD")
@@ -0,0 +1,74 @@
+package com.ac.srikar.mylocation.benchmark;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.track.TrackAnalytics;
+import com.ac.srikar.mylocation.track.TrackLog;
+import com.ac.srikar.mylocation.track.TrackSegment;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analyzing a whole recorded track log, as the analytics dump does. The log holds one pass
+ * of the trace and is written once per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class AnalyticsBenchmark {
+
+    private final TrackAnalytics mTrackAnalytics =
+            new TrackAnalytics(TimeZone.getTimeZone("UTC"));
+
+    private File mDirectory;
+    private TrackSegment[] mSegments;
+
+    @Setup(Level.Trial)
+    public void record(TraceState trace) throws IOException {
+        mDirectory = File.createTempFile("trackanalytics", "");
+        if (!mDirectory.delete()) {
+            throw new IOException("Cannot create " + mDirectory);
+        }
+        TrackLog trackLog = TrackLog.open(mDirectory);
+        Fix fix = new Fix();
+        for (int i = 0; i < trace.batch.size(); i++) {
+            trackLog.onFix(trace.batch.get(i, fix));
+        }
+        trackLog.close();
+        mSegments = TrackSegment.openAll(mDirectory);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Benchmark
+    public TrackAnalytics.Result analyze() {
+        return mTrackAnalytics.analyze(mSegments);
+    }
+}
@@ -0,0 +1,168 @@
+package com.ac.srikar.mylocation.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written with {@code -rf csv}, e.g. of a baseline revision
+ * and of the working tree, and exits with status 1 if any benchmark regressed.
+ * <p>
+ * Times and allocated bytes per operation regress when they grow by more than the
+ * threshold; throughput when it shrinks by more. Allocation changes of less than
+ * {@link #ALLOCATION_SLACK_BYTES} are ignored, so a benchmark that does not allocate does
+ * not fail on profiler noise.
+ * <pre>
+ * CompareResults baseline.csv current.csv [threshold, default 0.1]
+ * </pre>
+ */
+public final class CompareResults {
+
+    public static final double DEFAULT_THRESHOLD = 0.10;
+
+    public static final double ALLOCATION_SLACK_BYTES = 1;
+
+    // The only secondary result compared.
+    private static final String ALLOCATION_SUFFIX = "gc.alloc.rate.norm";
+
+    private static class Score {
+        String mode;
+        double score;
+        String unit;
+    }
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareResults baseline.csv current.csv [threshold]");
+            System.exit(2);
+        }
+        Map<String, Score> baseline = read(new File(args[0]));
+        Map<String, Score> current = read(new File(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+
+        int regressions = 0;
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score after = entry.getValue();
+            Score before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.println(String.format(Locale.US, "%-100s %12s %12.3f %9s %s",
+                        entry.getKey(), "-", after.score, "new", after.unit));
+                continue;
+            }
+            boolean higherIsBetter = "thrpt".equals(after.mode)
+                    && !entry.getKey().contains(ALLOCATION_SUFFIX);
+            double change = before.score == 0 ? (after.score == 0 ? 0 : Double.POSITIVE_INFINITY)
+                    : (after.score - before.score) / before.score;
+            boolean regression = higherIsBetter ? change < -threshold : change > threshold;
+            if (entry.getKey().contains(ALLOCATION_SUFFIX)
+                    && after.score - before.score < ALLOCATION_SLACK_BYTES) {
+                regression = false;
+            }
+            if (regression) {
+                regressions++;
+            }
+            System.out.println(String.format(Locale.US, "%-100s %12.3f %12.3f %+8.1f%% %s%s",
+                    entry.getKey(), before.score, after.score, change * 100, after.unit,
+                    regression ? "  REGRESSION" : ""));
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.println(String.format(Locale.US, "%-100s %9s", key, "removed"));
+            }
+        }
+        System.out.println(regressions + " regression(s) above " + Math.round(threshold * 100)
+                + "%");
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Primary and allocation scores by benchmark name and parameters.
+     */
+    static Map<String, Score> read(File file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<String, Score>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), "UTF-8"));
+        try {
+            List<String> header = split(reader.readLine());
+            int benchmark = header.indexOf("Benchmark");
+            int mode = header.indexOf("Mode");
+            int score = header.indexOf("Score");
+            int unit = header.indexOf("Unit");
+            if (benchmark < 0 || mode < 0 || score < 0 || unit < 0) {
+                throw new IOException("Not a JMH CSV result file: " + file);
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> columns = split(line);
+                if (columns.size() != header.size()) {
+                    continue;
+                }
+                String name = columns.get(benchmark);
+                if (name.contains(":") && !name.endsWith(ALLOCATION_SUFFIX)) {
+                    continue;
+                }
+                StringBuilder key = new StringBuilder(name);
+                for (int i = 0; i < header.size(); i++) {
+                    if (header.get(i).startsWith("Param: ")) {
+                        key.append(' ').append(header.get(i).substring(7)).append('=')
+                                .append(columns.get(i));
+                    }
+                }
+                Score result = new Score();
+                result.mode = columns.get(mode);
+                result.unit = columns.get(unit);
+                try {
+                    result.score = Double.parseDouble(columns.get(score));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                scores.put(key.toString(), result);
+            }
+        } finally {
+            reader.close();
+        }
+        return scores;
+    }
+
+    /**
+     * Split a CSV line, removing the quotes around values.
+     */
+    private static List<String> split(String line) {
+        List<String> columns = new ArrayList<String>();
+        if (line == null) {
+            return columns;
+        }
+        StringBuilder column = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    column.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                columns.add(column.toString());
+                column.setLength(0);
+            } else {
+                column.append(c);
+            }
+        }
+        columns.add(column.toString());
+        return columns;
+    }
+}
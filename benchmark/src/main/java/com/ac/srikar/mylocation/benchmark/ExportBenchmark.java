@@ -0,0 +1,96 @@
+package com.ac.srikar.mylocation.benchmark;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.track.GeoJsonWriter;
+import com.ac.srikar.mylocation.track.GpxWriter;
+import com.ac.srikar.mylocation.track.TrackEncoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding fixes for sharing, into sinks that discard the bytes so only the encoders are
+ * measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ExportBenchmark {
+
+    private static final OutputStream NULL_STREAM = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private static final WritableByteChannel NULL_CHANNEL = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) {
+            int count = src.remaining();
+            src.position(src.limit());
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private TrackEncoder mTrackEncoder;
+    private GpxWriter mGpxWriter;
+    private GeoJsonWriter mGeoJsonWriter;
+
+    @Setup
+    public void setUp() throws IOException {
+        mTrackEncoder = new TrackEncoder(NULL_STREAM);
+        mGpxWriter = new GpxWriter(NULL_CHANNEL);
+        mGeoJsonWriter = new GeoJsonWriter(NULL_CHANNEL);
+    }
+
+    @Benchmark
+    public void trackEncoder(TraceState trace) throws IOException {
+        Fix fix = trace.next();
+        mTrackEncoder.write(fix.latitude, fix.longitude, fix.accuracy, fix.altitude,
+                fix.speed, fix.time);
+    }
+
+    @Benchmark
+    public void gpx(TraceState trace) throws IOException {
+        Fix fix = trace.next();
+        mGpxWriter.write(fix.latitude, fix.longitude, fix.accuracy, fix.altitude, fix.speed,
+                fix.time);
+    }
+
+    @Benchmark
+    public void geoJson(TraceState trace) throws IOException {
+        Fix fix = trace.next();
+        mGeoJsonWriter.write(fix.latitude, fix.longitude, fix.accuracy, fix.altitude,
+                fix.speed, fix.time);
+    }
+}
@@ -0,0 +1,94 @@
+package com.ac.srikar.mylocation.benchmark;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixStage;
+import com.ac.srikar.mylocation.location.IntervalScheduler;
+import com.ac.srikar.mylocation.location.KalmanFilter;
+import com.ac.srikar.mylocation.location.StationaryFilter;
+import com.ac.srikar.mylocation.location.UpdatePolicy;
+import com.ac.srikar.mylocation.track.FixHistory;
+import com.ac.srikar.mylocation.track.TrackSimplifier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The filtering stages, alone and chained in the order the LocationTracker registers them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class FilterBenchmark {
+
+    private static final FixStage DISCARD = new FixStage() {
+        @Override
+        public boolean onFix(Fix fix) {
+            return true;
+        }
+    };
+
+    private static final IntervalScheduler.Listener IGNORE_POLICY =
+            new IntervalScheduler.Listener() {
+                @Override
+                public void onPolicyChanged(UpdatePolicy policy) {
+                }
+            };
+
+    private KalmanFilter mKalmanFilter;
+    private StationaryFilter mStationaryFilter;
+    private TrackSimplifier mTrackSimplifier;
+    private FixStage[] mStages;
+
+    @Setup
+    public void setUp() {
+        mKalmanFilter = new KalmanFilter();
+        mStationaryFilter = new StationaryFilter(null);
+        mTrackSimplifier = new TrackSimplifier(DISCARD);
+        mStages = new FixStage[]{
+                new StationaryFilter(null),
+                new KalmanFilter(),
+                new FixHistory(),
+                new IntervalScheduler(UpdatePolicy.MOVING, IGNORE_POLICY),
+                new TrackSimplifier(DISCARD)
+        };
+    }
+
+    @Benchmark
+    public boolean kalmanFilter(TraceState trace) {
+        return mKalmanFilter.onFix(trace.next());
+    }
+
+    @Benchmark
+    public boolean stationaryFilter(TraceState trace) {
+        return mStationaryFilter.onFix(trace.next());
+    }
+
+    @Benchmark
+    public boolean trackSimplifier(TraceState trace) {
+        return mTrackSimplifier.onFix(trace.next());
+    }
+
+    @Benchmark
+    public boolean stages(TraceState trace) {
+        Fix fix = trace.next();
+        for (FixStage stage : mStages) {
+            if (!stage.onFix(fix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
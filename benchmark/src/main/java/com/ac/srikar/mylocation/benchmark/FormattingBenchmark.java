@@ -0,0 +1,68 @@
+package com.ac.srikar.mylocation.benchmark;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.util.FixedFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting a fix for display the way MainActivity.displayLocationUI does through its
+ * FieldRenderers: a quantized dirty check per field, then fixed-point formatting into a
+ * reused char buffer. {@link #stringValueOf} is the allocating reference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class FormattingBenchmark {
+
+    private final char[] mBuffer = new char[FixedFormatter.MAX_LENGTH];
+    private final long[] mShown = new long[5];
+
+    private int render(int field, double value, int decimals) {
+        long quantized = FixedFormatter.quantize(value, decimals);
+        if (quantized == mShown[field]) {
+            return 0;
+        }
+        mShown[field] = quantized;
+        return FixedFormatter.formatFixed(value, decimals, mBuffer, 0);
+    }
+
+    @Benchmark
+    public int renderFields(TraceState trace) {
+        Fix fix = trace.next();
+        return render(0, fix.latitude, 6)
+                + render(1, fix.longitude, 6)
+                + render(2, fix.accuracy, 1)
+                + render(3, fix.altitude, 1)
+                + render(4, fix.speed, 1)
+                + FixedFormatter.formatTime(fix.time, 3600000, mBuffer, 0);
+    }
+
+    @Benchmark
+    public int formatIsoTime(TraceState trace) {
+        return FixedFormatter.formatIsoTime(trace.next().time, mBuffer, 0);
+    }
+
+    @Benchmark
+    public int stringValueOf(TraceState trace) {
+        Fix fix = trace.next();
+        return String.valueOf(fix.latitude).length()
+                + String.valueOf(fix.longitude).length()
+                + String.valueOf(fix.accuracy).length()
+                + String.valueOf(fix.altitude).length()
+                + String.valueOf(fix.speed).length();
+    }
+}
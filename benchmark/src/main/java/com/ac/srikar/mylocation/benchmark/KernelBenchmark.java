@@ -0,0 +1,68 @@
+package com.ac.srikar.mylocation.benchmark;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.track.TripStats;
+import com.ac.srikar.mylocation.util.GeoMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distance and trip statistics kernels, one fix per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class KernelBenchmark {
+
+    private final TripStats mTripStats = new TripStats();
+    private final TripStats mSnapshot = new TripStats();
+    private double mLatitude;
+    private double mLongitude;
+
+    @Benchmark
+    public double fastDistance(TraceState trace) {
+        Fix fix = trace.next();
+        double distance = GeoMath.fastDistance(mLatitude, mLongitude, fix.latitude,
+                fix.longitude);
+        mLatitude = fix.latitude;
+        mLongitude = fix.longitude;
+        return distance;
+    }
+
+    @Benchmark
+    public double greatCircleDistance(TraceState trace) {
+        Fix fix = trace.next();
+        double distance = GeoMath.distance(mLatitude, mLongitude, fix.latitude, fix.longitude);
+        mLatitude = fix.latitude;
+        mLongitude = fix.longitude;
+        return distance;
+    }
+
+    @Benchmark
+    public boolean tripStats(TraceState trace) {
+        return mTripStats.onFix(trace.next());
+    }
+
+    /**
+     * Adding a fix and taking the snapshot the UI renders, as on every displayed fix.
+     */
+    @Benchmark
+    public double tripStatsSnapshot(TraceState trace) {
+        mTripStats.onFix(trace.next());
+        mTripStats.copyTo(mSnapshot);
+        return mSnapshot.getDistance();
+    }
+}
@@ -0,0 +1,100 @@
+package com.ac.srikar.mylocation.benchmark;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixBatch;
+import com.ac.srikar.mylocation.track.FixHistory;
+import com.ac.srikar.mylocation.track.TrackLog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appending fixes to the in-memory buffers and to the memory-mapped track log.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class StorageBenchmark {
+
+    // Fixes appended to the log per measured shot, about 4 MB.
+    private static final int LOG_BATCH = 100000;
+
+    private final FixHistory mFixHistory = new FixHistory();
+    private final FixBatch mBatch = new FixBatch(64);
+
+    @Benchmark
+    public long fixHistory(TraceState trace) {
+        Fix fix = trace.next();
+        return mFixHistory.add(fix.latitude, fix.longitude, fix.accuracy, fix.altitude,
+                fix.speed, fix.time);
+    }
+
+    /**
+     * Filling a batch as the provider's buffered deliveries do.
+     */
+    @Benchmark
+    public int fixBatch(TraceState trace) {
+        if (mBatch.size() == 64) {
+            mBatch.clear();
+        }
+        mBatch.add(trace.next());
+        return mBatch.size();
+    }
+
+    /**
+     * A fresh log for every shot, so the disk use stays bounded.
+     */
+    @State(Scope.Thread)
+    public static class LogState {
+
+        File directory;
+        TrackLog trackLog;
+
+        @Setup(Level.Iteration)
+        public void open() throws IOException {
+            directory = File.createTempFile("tracklog", "");
+            if (!directory.delete()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            trackLog = TrackLog.open(directory);
+        }
+
+        @TearDown(Level.Iteration)
+        public void delete() {
+            trackLog.close();
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5, batchSize = LOG_BATCH)
+    @Measurement(iterations = 10, batchSize = LOG_BATCH)
+    public boolean trackLog(TraceState trace, LogState log) {
+        return log.trackLog.onFix(trace.next());
+    }
+}
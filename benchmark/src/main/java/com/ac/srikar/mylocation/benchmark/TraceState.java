@@ -0,0 +1,59 @@
+package com.ac.srikar.mylocation.benchmark;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixBatch;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * The trace a benchmark replays, one fix per operation.
+ * <p>
+ * Fixes are taken in a loop; every pass shifts the times past the previous pass so stages
+ * keep seeing time move forward. The size sets the working set, the rate the distance and
+ * time between fixes, which changes what the filters keep or drop.
+ */
+@State(Scope.Thread)
+public class TraceState {
+
+    @Param({"synthetic", "replay"})
+    public String source;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"1", "10"})
+    public int rateHz;
+
+    public FixBatch batch;
+
+    private final Fix mFix = new Fix();
+    private int mIndex = 0;
+    private long mTimeOffset = 0;
+    private long mSpanMillis;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        batch = "replay".equals(source) ? Traces.replay(size, rateHz)
+                : Traces.synthetic(size, rateHz, 1);
+        mSpanMillis = batch.time[batch.size() - 1] - batch.time[0] + 1000 / rateHz;
+    }
+
+    /**
+     * The next fix of the loop, in an instance reused for every call.
+     */
+    public Fix next() {
+        batch.get(mIndex, mFix);
+        mFix.time += mTimeOffset;
+        if (++mIndex == batch.size()) {
+            mIndex = 0;
+            mTimeOffset += mSpanMillis;
+        }
+        return mFix;
+    }
+}
@@ -0,0 +1,124 @@
+package com.ac.srikar.mylocation.benchmark;
+
+import com.ac.srikar.mylocation.location.Fix;
+import com.ac.srikar.mylocation.location.FixBatch;
+import com.ac.srikar.mylocation.location.replay.TraceReader;
+import com.ac.srikar.mylocation.location.replay.TraceReaders;
+import com.ac.srikar.mylocation.util.GeoMath;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Benchmark inputs: synthetic drives and replayed trace files.
+ */
+public final class Traces {
+
+    // System property naming a CSV, NMEA or GPX trace to replay instead of a synthetic one.
+    public static final String TRACE_PROPERTY = "benchmark.trace";
+
+    private static final long START_TIME = 1458000000000L;
+
+    private Traces() {
+    }
+
+    /**
+     * A drive through town: stretches of driving with turns and speed changes, stops at
+     * lights and a long park, with GPS-like position and accuracy noise.
+     *
+     * @param rateHz fixes per second
+     */
+    public static FixBatch synthetic(int size, int rateHz, long seed) {
+        Random random = new Random(seed);
+        FixBatch batch = new FixBatch(size);
+        double latitude = 52.52;
+        double longitude = 13.405;
+        double heading = random.nextDouble() * 2 * Math.PI;
+        double speed = 0;
+        long stopUntil = 0;
+        long intervalMillis = 1000 / rateHz;
+        for (int i = 0; i < size; i++) {
+            long time = START_TIME + i * intervalMillis;
+            if (time < stopUntil) {
+                speed = 0;
+            } else if (random.nextInt(600 * rateHz) == 0) {
+                // Park for up to half an hour, or wait at a light
+                stopUntil = time + (random.nextBoolean() ? 1800000 : 30000)
+                        * random.nextInt(60) / 60;
+            } else {
+                speed = Math.max(0, Math.min(25, speed + random.nextGaussian() / rateHz));
+                heading += random.nextGaussian() * 0.05 / rateHz;
+            }
+            double step = speed / rateHz;
+            latitude += step * Math.cos(heading) / GeoMath.METERS_PER_DEGREE;
+            longitude += step * Math.sin(heading) / GeoMath.metersPerDegreeLongitude(latitude);
+            float accuracy = (float) (4 + Math.abs(random.nextGaussian()) * 6);
+            double noise = random.nextGaussian() * accuracy / 2 / GeoMath.METERS_PER_DEGREE;
+            batch.add(latitude + noise, longitude + noise, accuracy,
+                    35 + random.nextGaussian() * 3, (float) speed, time);
+        }
+        return batch;
+    }
+
+    /**
+     * Fixes of a trace file, repeated until there are {@code size} of them.
+     */
+    public static FixBatch replay(File file, int size) throws IOException {
+        FixBatch batch = new FixBatch(size);
+        Fix fix = new Fix();
+        long offset = 0;
+        while (batch.size() < size) {
+            TraceReader reader = TraceReaders.open(file);
+            try {
+                int before = batch.size();
+                while (batch.size() < size && reader.next(fix)) {
+                    fix.time += offset;
+                    batch.add(fix);
+                }
+                if (batch.size() == before) {
+                    throw new IOException("Empty trace: " + file);
+                }
+                offset = batch.time[batch.size() - 1] - batch.time[0] + 1000;
+            } finally {
+                reader.close();
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * The trace named by {@link #TRACE_PROPERTY}, or else a synthetic drive written as CSV
+     * and read back, so the replay path and its parser are measured either way.
+     */
+    public static FixBatch replay(int size, int rateHz) throws IOException {
+        String trace = System.getProperty(TRACE_PROPERTY);
+        if (trace != null) {
+            return replay(new File(trace), size);
+        }
+        File file = File.createTempFile("trace", ".csv");
+        try {
+            writeCsv(synthetic(size, rateHz, 2), file);
+            return replay(file, size);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void writeCsv(FixBatch batch, File file) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("time,latitude,longitude,accuracy,altitude,speed\n");
+            for (int i = 0; i < batch.size(); i++) {
+                writer.write(batch.time[i] + "," + batch.latitude[i] + "," + batch.longitude[i]
+                        + "," + batch.accuracy[i] + "," + batch.altitude[i] + ","
+                        + batch.speed[i] + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}